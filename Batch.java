@@ -0,0 +1,324 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Runs a script of gitlet commands, in the format of the .in test
+ *  scripts, one after another in this JVM and reports the latency of
+ *  each kind of command. Usage: java gitlet.Main batch [--src=DIR]
+ *  [FILE].
+ *  @author Super Stressed McSad */
+class Batch {
+
+    /** Percentiles of the latencies reported. */
+    private static final int[] PERCENTILES = {50, 90, 99};
+
+    /** A ${NAME} in a script line. */
+    private static final Pattern VARIABLE =
+            Pattern.compile("\\$\\{(\\w+)\\}");
+
+    /** Runs the script given by the options in ARGS and reports on it.
+     *  The script is read from standard input if no file or "-" is
+     *  given, and source files from the folder src next to it unless
+     *  --src names another. Returns the number of checks that failed. */
+    static int run(String... args) {
+        File script = null;
+        File src = null;
+        for (String arg : args) {
+            if (arg.startsWith("--src=")) {
+                src = new File(arg.substring("--src=".length()));
+            } else if (script == null && !arg.startsWith("--")) {
+                script = arg.equals("-") ? null : new File(arg);
+            } else {
+                throw Utils.error("Incorrect operands.");
+            }
+        }
+        if (script != null && !script.isFile()) {
+            throw Utils.error("No script at %s.", script.getPath());
+        }
+        File dir = script == null ? Main.CWD : script.getAbsoluteFile()
+                .getParentFile();
+        Batch batch = new Batch(src != null ? src
+                : Utils.join(dir, "src"));
+        if (script == null) {
+            try {
+                batch.play(null, new String(System.in.readAllBytes(),
+                        StandardCharsets.UTF_8));
+            } catch (IOException excp) {
+                throw Utils.error("Cannot read the script.");
+            }
+        } else {
+            batch.play(script, Utils.readContentsAsString(script));
+        }
+        batch.report();
+        return batch._failures;
+    }
+
+    /** A run of a script taking source files from SRC. */
+    private Batch(File src) {
+        _src = src;
+    }
+
+    /** Runs the lines of TEXT, the script in FILE, or in standard input
+     *  if FILE is null. A line "> COMMAND" has its output checked against
+     *  the lines up to <<<, or up to <<<* against a regular expression
+     *  whose groups become ${1}, ${2}...; other lines not starting with
+     *  a step are commands whose output is printed. */
+    private void play(File file, String text) {
+        String where = file == null ? "<stdin>" : file.getPath();
+        String[] lines = text.split("\r?\n");
+        for (int i = 0; i < lines.length; i += 1) {
+            String line = lines[i];
+            _line = where + ":" + (i + 1);
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            } else if (line.startsWith("> ")) {
+                ArrayList<String> expected = new ArrayList<>();
+                int start = i;
+                for (i += 1; i < lines.length
+                         && !lines[i].startsWith("<<<"); i += 1) {
+                    expected.add(lines[i]);
+                }
+                if (i == lines.length) {
+                    throw Utils.error("%s: no <<< after the command.",
+                            _line);
+                }
+                _line = where + ":" + (start + 1);
+                check(line.substring(2), String.join("\n", expected),
+                        lines[i].equals("<<<*"));
+            } else if (line.length() > 1 && line.charAt(1) == ' '
+                    && "+-E*=ID".indexOf(line.charAt(0)) >= 0) {
+                step(file, line.charAt(0), split(line.substring(2)));
+            } else {
+                System.out.print(execute(line));
+            }
+        }
+    }
+
+    /** Does the step OP of a script in FILE with the operands ARGS.
+     *  + copies a source file, - deletes a file, E and * check that one
+     *  does or does not exist, = compares one with a source file, I runs
+     *  another script and D defines a ${NAME}. */
+    private void step(File file, char op, String[] args) {
+        if (args.length != ("+=D".indexOf(op) >= 0 ? 2 : 1)) {
+            throw Utils.error("%s: incorrect operands.", _line);
+        }
+        File name = Utils.join(Main.CWD, args[0]);
+        switch (op) {
+        case '+':
+            Utils.writeContents(name, Utils.readContents(source(args[1])));
+            break;
+        case '-':
+            name.delete();
+            break;
+        case 'E':
+            expect(name.exists(), "%s does not exist.", args[0]);
+            break;
+        case '*':
+            expect(!name.exists(), "%s exists.", args[0]);
+            break;
+        case '=':
+            expect(name.isFile() && Arrays.equals(Utils.readContents(name),
+                    Utils.readContents(source(args[1]))),
+                    "%s does not match %s.", args[0], args[1]);
+            break;
+        case 'I':
+            File included = new File(args[0]);
+            if (!included.isAbsolute() && file != null) {
+                included = Utils.join(file.getAbsoluteFile()
+                        .getParentFile(), args[0]);
+            }
+            if (!included.isFile()) {
+                throw Utils.error("%s: no script at %s.", _line, args[0]);
+            }
+            String line = _line;
+            play(included, Utils.readContentsAsString(included));
+            _line = line;
+            break;
+        default:
+            _variables.put(args[0], args[1]);
+            break;
+        }
+    }
+
+    /** Runs COMMAND and checks that its output matches EXPECTED, as a
+     *  regular expression if PATTERN. */
+    private void check(String command, String expected, boolean pattern) {
+        String output = normalize(execute(command));
+        expected = normalize(substitute(expected));
+        if (pattern) {
+            Matcher matcher = Pattern.compile(expected,
+                    Pattern.DOTALL).matcher(output);
+            if (matcher.matches()) {
+                for (int g = 1; g <= matcher.groupCount(); g += 1) {
+                    _variables.put(String.valueOf(g), matcher.group(g));
+                }
+                return;
+            }
+        } else if (output.equals(expected)) {
+            return;
+        }
+        expect(false, "wrong output from > %s%nExpected:%n%s%nGot:%n%s",
+                command, expected, output);
+    }
+
+    /** Runs the command line COMMAND, timing it, and returns what it
+     *  printed. */
+    private String execute(String command) {
+        String[] args = split(command);
+        if (args.length == 0) {
+            throw Utils.error("%s: no command.", _line);
+        }
+        long start = System.nanoTime();
+        byte[] output = Daemon.execute(args);
+        long time = System.nanoTime() - start;
+        _times.computeIfAbsent(args[0], c -> new ArrayList<>()).add(time);
+        return new String(output, StandardCharsets.UTF_8);
+    }
+
+    /** Counts a failed check unless OK, printing the message made from
+     *  FORMAT and ARGS. */
+    private void expect(boolean ok, String format, Object... args) {
+        if (!ok) {
+            _failures += 1;
+            System.out.println(_line + ": " + String.format(format, args));
+        }
+    }
+
+    /** Prints the number of commands run and checks failed, and the
+     *  percentiles of the latency of each command and of all of them. */
+    private void report() {
+        ArrayList<Long> all = new ArrayList<>();
+        for (List<Long> times : _times.values()) {
+            all.addAll(times);
+        }
+        System.out.printf("Ran %d commands in %.3f ms; %d checks failed.%n",
+                all.size(), all.stream().mapToLong(t -> t).sum() / 1e6,
+                _failures);
+        if (all.isEmpty()) {
+            return;
+        }
+        System.out.printf("%-12s %6s", "command", "count");
+        for (int p : PERCENTILES) {
+            System.out.printf(" %9s", "p" + p + "-ms");
+        }
+        System.out.printf(" %9s%n", "max-ms");
+        for (Map.Entry<String, List<Long>> times : _times.entrySet()) {
+            printRow(times.getKey(), times.getValue());
+        }
+        printRow("all", all);
+    }
+
+    /** Prints the latency percentiles of TIMES under NAME. */
+    private static void printRow(String name, List<Long> times) {
+        long[] sorted = times.stream().mapToLong(t -> t).sorted()
+                .toArray();
+        System.out.printf("%-12s %6d", name, sorted.length);
+        for (int p : PERCENTILES) {
+            System.out.printf(" %9.3f", percentile(sorted, p) / 1e6);
+        }
+        System.out.printf(" %9.3f%n", sorted[sorted.length - 1] / 1e6);
+    }
+
+    /** Returns the Pth percentile of SORTED, by nearest rank. */
+    static long percentile(long[] sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    /** Returns the source file NAME. */
+    private File source(String name) {
+        File file = Utils.join(_src, name);
+        if (!file.isFile()) {
+            throw Utils.error("%s: no source file %s.", _line,
+                    file.getPath());
+        }
+        return file;
+    }
+
+    /** Returns LINE split into words at white space, after replacing its
+     *  variables, keeping quoted text together without its quotes. */
+    private String[] split(String line) {
+        line = substitute(line);
+        ArrayList<String> words = new ArrayList<>();
+        StringBuilder word = null;
+        char quote = 0;
+        for (char c : line.toCharArray()) {
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    word.append(c);
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (word != null) {
+                    words.add(word.toString());
+                    word = null;
+                }
+            } else {
+                if (word == null) {
+                    word = new StringBuilder();
+                }
+                if (c == '"' || c == '\'') {
+                    quote = c;
+                } else {
+                    word.append(c);
+                }
+            }
+        }
+        if (quote != 0) {
+            throw Utils.error("%s: unmatched quote.", _line);
+        }
+        if (word != null) {
+            words.add(word.toString());
+        }
+        return words.toArray(new String[0]);
+    }
+
+    /** Returns TEXT with each ${NAME} replaced by its value. */
+    private String substitute(String text) {
+        Matcher matcher = VARIABLE.matcher(text);
+        StringBuilder result = new StringBuilder();
+        while (matcher.find()) {
+            String value = _variables.get(matcher.group(1));
+            if (value == null) {
+                throw Utils.error("%s: undefined variable %s.", _line,
+                        matcher.group(1));
+            }
+            matcher.appendReplacement(result,
+                    Matcher.quoteReplacement(value));
+        }
+        return matcher.appendTail(result).toString();
+    }
+
+    /** Returns OUTPUT without white space at the ends of lines or blank
+     *  lines at either end. */
+    private static String normalize(String output) {
+        return output.replaceAll("[ \t]+(?=\r?\n|$)", "")
+                .replace("\r\n", "\n").strip();
+    }
+
+    /** Where source files are taken from. */
+    private final File _src;
+
+    /** The values of the variables, by name. */
+    private final HashMap<String, String> _variables = new HashMap<>();
+
+    /** The latencies of the commands run, in nanoseconds, by command. */
+    private final TreeMap<String, List<Long>> _times = new TreeMap<>();
+
+    /** The script and line being run, for messages. */
+    private String _line;
+
+    /** Number of checks that failed. */
+    private int _failures;
+}
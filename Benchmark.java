@@ -0,0 +1,774 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/** Benchmarks for gitlet, each run in a scratch repository in the
+ *  current directory, which must not hold a .gitlet folder. Usage: java
+ *  gitlet.Benchmark NAME [OPTIONS...].
+ *  @author Super Stressed McSad */
+public class Benchmark {
+
+    /** The .gitlet folder of the scratch repository. */
+    private static final File GITLET = Utils.join(Main.CWD, ".gitlet");
+
+    /** Number of times a query is repeated when timing it. */
+    private static final int REPEATS = 5;
+
+    /** Delta chain depths compared by the delta benchmark. */
+    private static final int[] DEPTHS = {0, 1, 5, 10, 50};
+
+    /** Runs the benchmark named by ARGS[0] with the options in ARGS. */
+    public static void main(String... args) {
+        if (args.length == 0) {
+            Utils.message("Please name a benchmark.");
+            System.exit(0);
+        }
+        if (GITLET.exists()) {
+            Utils.message("Benchmarks must be run outside of a gitlet"
+                    + " directory.");
+            System.exit(0);
+        }
+        switch (args[0]) {
+        case "delta":
+            delta(intArg(args, 1, 50), intArg(args, 2, 1024));
+            break;
+        case "status":
+            status(intArgs(args, 1, 1000, 10000, 100000));
+            break;
+        case "index":
+            index(intArg(args, 1, 2000));
+            break;
+        case "checkout":
+            checkout(intArg(args, 1, 50000), intArg(args, 2, 10));
+            break;
+        case "add":
+            add(intArg(args, 1, 10000), intArg(args, 2, 4));
+            break;
+        case "daemon":
+            daemon(intArg(args, 1, 20));
+            break;
+        case "codec":
+            codec(intArgs(args, 1, 10, 100, 1000));
+            break;
+        case "cache":
+            cache(intArg(args, 1, 200), intArg(args, 2, 100));
+            break;
+        case "diff":
+            diff(intArg(args, 1, 20000), intArg(args, 2, 5000));
+            break;
+        case "gc":
+            gc(intArg(args, 1, 500), intArg(args, 2, 2000));
+            break;
+        case "fsck":
+            fsck(intArg(args, 1, 5000), intArg(args, 2, 16));
+            break;
+        case "sync":
+            sync(intArg(args, 1, 2000), intArg(args, 2, 100));
+            break;
+        case "suite":
+            BenchmarkSuite.run(Arrays.copyOfRange(args, 1, args.length));
+            break;
+        case "merge3":
+            merge3(intArgs(args, 1, 1000, 10000, 100000));
+            break;
+        default:
+            Utils.message("No benchmark with that name exists.");
+        }
+    }
+
+    /** Commits VERSIONS one line edits of a file of SIZEKB kilobytes for
+     *  each delta chain depth, then reports the size of the repository
+     *  and how long it takes to check out each version. */
+    static void delta(int versions, int sizeKB) {
+        System.out.printf("%-6s %14s %12s %12s%n", "depth", "repo-bytes",
+                "mean-ms", "max-ms");
+        File file = Utils.join(Main.CWD, "bench.txt");
+        for (int depth : DEPTHS) {
+            ObjectStore.setMaxDepth(depth);
+            Commands.init();
+            ArrayList<String> lines = textLines(sizeKB * 1024);
+            ArrayList<String> ids = new ArrayList<>();
+            for (int v = 0; v < versions; v += 1) {
+                lines.set((v * 7919) % lines.size(),
+                        "edited in version " + v);
+                Utils.writeContents(file, String.join("\n", lines));
+                Commands.add(file.getName());
+                Commands.commit("version " + v, null, null);
+                ids.add(headId());
+            }
+            long bytes = sizeOf(GITLET);
+
+            long total = 0;
+            long max = 0;
+            for (String id : ids) {
+                long start = System.nanoTime();
+                Commands.checkoutFile(file.getName(), id);
+                long elapsed = System.nanoTime() - start;
+                total += elapsed;
+                max = Math.max(max, elapsed);
+            }
+            System.out.printf("%-6d %14d %12.3f %12.3f%n", depth, bytes,
+                    total / 1e6 / ids.size(), max / 1e6);
+            file.delete();
+            delete(GITLET);
+        }
+        ObjectStore.setMaxDepth(ObjectStore.DEFAULT_DEPTH);
+    }
+
+    /** Commits working trees of each size in COUNTS and times status,
+     *  first with nothing in the index and then warm. */
+    static void status(int... counts) {
+        System.out.printf("%-8s %12s %12s%n", "files", "cold-ms", "warm-ms");
+        for (int count : counts) {
+            Commands.init();
+            Commands.add(writeFiles(count));
+            Commands.commit("add " + count + " files", null, null);
+            Utils.join(GITLET, "index").delete();
+            settle();
+
+            long cold = timeQuietly(Commands::status);
+            StatCache.save();
+            settle();
+            long warm = timeQuietly(Commands::status);
+            StatCache.save();
+            System.out.printf("%-8d %12.3f %12.3f%n", count, cold / 1e6,
+                    warm / 1e6);
+
+            for (int i = 0; i < count; i += 1) {
+                Utils.join(Main.CWD, "file" + i + ".txt").delete();
+            }
+            delete(GITLET);
+        }
+    }
+
+    /** Makes COUNT commits, then times find and global-log through the
+     *  commit index against a scan of every commit object. Each query is
+     *  the best of REPEATS runs so class loading and JIT warm up are not
+     *  counted. */
+    static void index(int count) {
+        Commands.init();
+        File file = Utils.join(Main.CWD, "bench.txt");
+        for (int i = 0; i < count; i += 1) {
+            Utils.writeContents(file, "version " + i + "\n");
+            Commands.add(file.getName());
+            Commands.commit("commit number " + i, null, null);
+        }
+        String msg = "commit number " + (count / 2);
+
+        System.out.printf("%-12s %12s %12s%n", "query", "index-ms",
+                "scan-ms");
+        long index = bestOf(() -> Commands.find(msg));
+        long scan = bestOf(() -> {
+            ObjectStore.COMMITS.clear();
+            for (String id : ObjectStore.commitIds()) {
+                if (ObjectStore.readCommit(id).getMsg().equals(msg)) {
+                    System.out.println(id);
+                }
+            }
+        });
+        System.out.printf("%-12s %12.3f %12.3f%n", "find", index / 1e6,
+                scan / 1e6);
+        index = bestOf(Commands::gloablLog);
+        scan = bestOf(() -> {
+            ObjectStore.COMMITS.clear();
+            for (String id : ObjectStore.commitIds()) {
+                Commit commit = ObjectStore.readCommit(id);
+                System.out.println(id + " " + commit.getDate() + " "
+                        + commit.getMsg());
+            }
+        });
+        System.out.printf("%-12s %12.3f %12.3f%n", "global-log",
+                index / 1e6, scan / 1e6);
+        file.delete();
+        delete(GITLET);
+    }
+
+    /** Adds a tree of FILES files of SIZEKB kilobytes each, spread over
+     *  nested directories, to a fresh repository with 1, 4 and 16 threads
+     *  and reports the rate at which files and bytes were added. */
+    static void add(int files, int sizeKB) {
+        File root = Utils.join(Main.CWD, "bench");
+        String body = String.join("\n", textLines(sizeKB * 1024));
+        long bytes = 0;
+        for (int i = 0; i < files; i += 1) {
+            File file = Utils.join(root, "d" + (i % 10), "d" + (i % 100),
+                    "file" + i + ".txt");
+            file.getParentFile().mkdirs();
+            Utils.writeContents(file, i + " " + body);
+            bytes += file.length();
+        }
+        System.out.printf("%-8s %12s %12s %12s%n", "threads", "ms",
+                "files/s", "MB/s");
+        for (int threads : new int[] {1, 4, 16}) {
+            WorkingTree.setThreads(threads);
+            Commands.init();
+            long time = timeQuietly(() -> Commands.add("bench"));
+            System.out.printf("%-8d %12.3f %12.0f %12.2f%n", threads,
+                    time / 1e6, files * 1e9 / time, bytes * 1e3 / time);
+            delete(GITLET);
+        }
+        WorkingTree.setThreads(WorkingTree.DEFAULT_THREADS);
+        delete(root);
+    }
+
+    /** Times RUNS launches of the gitlet CLI for status, log and add,
+     *  first running each command in its own JVM and then handing it to
+     *  a daemon, which this benchmark runs on a thread of its own. */
+    static void daemon(int runs) {
+        Commands.init();
+        File file = Utils.join(Main.CWD, "bench.txt");
+        for (int i = 0; i < 20; i += 1) {
+            Utils.writeContents(file, "version " + i + "\n");
+            Commands.add(file.getName());
+            Commands.commit("version " + i, null, null);
+        }
+        String[][] commands = {{"status"}, {"log"}, {"add", "bench.txt"}};
+        double[] cold = new double[commands.length];
+        for (int c = 0; c < commands.length; c += 1) {
+            cold[c] = launch(runs, commands[c]);
+        }
+        Thread server = new Thread(Daemon::serve);
+        server.start();
+        File socket = Utils.join(GITLET, "daemon.sock");
+        while (!socket.exists()) {
+            Thread.onSpinWait();
+        }
+        System.out.printf("%-8s %12s %12s%n", "command", "cli-ms",
+                "daemon-ms");
+        for (int c = 0; c < commands.length; c += 1) {
+            System.out.printf("%-8s %12.3f %12.3f%n", commands[c][0],
+                    cold[c], launch(runs, commands[c]));
+        }
+        timeQuietly(() -> Daemon.forward("daemon", "stop"));
+        try {
+            server.join();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+        file.delete();
+        delete(GITLET);
+    }
+
+    /** Returns the mean milliseconds taken by RUNS launches of the gitlet
+     *  CLI with ARGS, in a JVM like this one. */
+    static double launch(int runs, String... args) {
+        ArrayList<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin",
+                "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("gitlet.Main");
+        command.addAll(Arrays.asList(args));
+        long total = 0;
+        for (int i = 0; i < runs; i += 1) {
+            long start = System.nanoTime();
+            try {
+                new ProcessBuilder(command).directory(Main.CWD)
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start().waitFor();
+            } catch (IOException excp) {
+                throw Utils.error("Cannot launch gitlet.");
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            }
+            total += System.nanoTime() - start;
+        }
+        return total / 1e6 / runs;
+    }
+
+    /** Writes COUNT small files into the working directory and returns
+     *  their names. */
+    static String[] writeFiles(int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i += 1) {
+            names[i] = "file" + i + ".txt";
+            Utils.writeContents(Utils.join(Main.CWD, names[i]),
+                    "contents of " + names[i] + "\n");
+        }
+        return names;
+    }
+
+    /** Commits FILES files on one branch and changes CHANGED of them on
+     *  another, then times switching between the two branches and counts
+     *  the files each switch rewrote. */
+    static void checkout(int files, int changed) {
+        Commands.init();
+        Commands.add(writeFiles(files));
+        Commands.commit("add " + files + " files", null, null);
+        Commands.branch("other");
+        Commands.checkoutBranch("other");
+        for (int i = 0; i < changed; i += 1) {
+            String name = "file" + (i * 7919 % files) + ".txt";
+            Utils.writeContents(Utils.join(Main.CWD, name), "changed\n");
+            Commands.add(name);
+        }
+        Commands.commit("change " + changed + " files", null, null);
+        StatCache.save();
+        settle();
+
+        System.out.printf("%-10s %12s %10s%n", "switch", "ms", "writes");
+        for (String branch : new String[] {"master", "other"}) {
+            long before = System.currentTimeMillis() - 1000;
+            for (int i = 0; i < files; i += 1) {
+                Utils.join(Main.CWD, "file" + i + ".txt")
+                        .setLastModified(before);
+            }
+            long time = timeQuietly(() -> Commands.checkoutBranch(branch));
+            int writes = 0;
+            for (int i = 0; i < files; i += 1) {
+                if (Utils.join(Main.CWD, "file" + i + ".txt").lastModified()
+                        != before) {
+                    writes += 1;
+                }
+            }
+            System.out.printf("%-10s %12.3f %10d%n", "to " + branch,
+                    time / 1e6, writes);
+        }
+
+        for (int i = 0; i < files; i += 1) {
+            Utils.join(Main.CWD, "file" + i + ".txt").delete();
+        }
+        delete(GITLET);
+    }
+
+    /** For commits tracking each number of files in COUNTS, reports the
+     *  size and the encode and decode rates of the binary commit
+     *  encoding. Each rate is taken over about a second of work after an
+     *  equal warm up. */
+    static void codec(int... counts) {
+        System.out.printf("%-8s %-8s %10s %14s %14s%n", "files", "format",
+                "bytes", "encode-ops/s", "decode-ops/s");
+        for (int count : counts) {
+            HashMap<String, String> blobs = new HashMap<>();
+            for (int i = 0; i < count; i += 1) {
+                blobs.put("file" + i + ".txt", Utils.sha1("blob " + i));
+            }
+            Commit commit = new Commit("benchmark commit", "master",
+                    new Date(), "MP", Commands.SHA1_INITIAL_COMMIT, null,
+                    blobs, new HashSet<>());
+            byte[] binary = CommitCodec.encode(commit);
+            System.out.printf("%-8d %-8s %10d %14.0f %14.0f%n", count,
+                    "binary", binary.length,
+                    rate(() -> CommitCodec.encode(commit)),
+                    rate(() -> CommitCodec.decode(binary)));
+        }
+    }
+
+    /** Builds two branches of COMMITS commits each over FILES files,
+     *  where both sides change one shared file, then merges them with
+     *  cold object caches and reports how many commit, tree and blob
+     *  reads the caches answered. */
+    static void cache(int commits, int files) {
+        Commands.init();
+        String[] names = writeFiles(files);
+        Commands.add(names);
+        Commands.commit("add " + files + " files", null, null);
+        Commands.branch("other");
+        for (String branch : new String[] {"other", "master"}) {
+            Commands.checkoutBranch(branch);
+            for (int i = 0; i < commits; i += 1) {
+                String name = names[i % names.length];
+                Utils.writeContents(Utils.join(Main.CWD, name),
+                        branch + " " + i + "\n");
+                Commands.add(name);
+                Commands.commit(branch + " " + i, null, null);
+            }
+        }
+        ObjectCache<?>[] caches = {ObjectStore.COMMITS, ObjectStore.TREES,
+                                   ObjectStore.BLOBS};
+        long[] before = new long[2 * caches.length];
+        for (int i = 0; i < caches.length; i += 1) {
+            caches[i].clear();
+            before[2 * i] = caches[i].hits();
+            before[2 * i + 1] = caches[i].misses();
+        }
+        long time = timeQuietly(() -> Commands.merge("other"));
+        System.out.printf("merge of %d commits: %.3f ms%n", 2 * commits,
+                time / 1e6);
+        System.out.printf("%-8s %10s %10s%n", "object", "hits", "misses");
+        String[] kinds = {"commit", "tree", "blob"};
+        for (int i = 0; i < caches.length; i += 1) {
+            System.out.printf("%-8s %10d %10d%n", kinds[i],
+                    caches[i].hits() - before[2 * i],
+                    caches[i].misses() - before[2 * i + 1]);
+        }
+        for (String name : names) {
+            Utils.join(Main.CWD, name).delete();
+        }
+        delete(GITLET);
+    }
+
+    /** Commits FILES files spread over directories, then COMMITS edits
+     *  of them on a branch that is deleted afterwards, each edit staged
+     *  twice so the first version is left behind, and reports how long
+     *  gc takes to mark and sweep, first as a dry run and then for
+     *  real, along with what it removed. */
+    static void gc(int commits, int files) {
+        Commands.init();
+        String[] names = new String[files];
+        for (int i = 0; i < files; i += 1) {
+            names[i] = "bench/d" + (i % 64) + "/file" + i + ".txt";
+            File file = Utils.join(Main.CWD, names[i]);
+            file.getParentFile().mkdirs();
+            Utils.writeContents(file, "file " + i + "\n");
+        }
+        Commands.add("bench");
+        Commands.commit("add " + files + " files", null, null);
+        Commands.branch("other");
+        Commands.checkoutBranch("other");
+        for (int i = 0; i < commits; i += 1) {
+            File file = Utils.join(Main.CWD, names[i % files]);
+            Utils.writeContents(file, "draft " + i + "\n");
+            Commands.add(names[i % files]);
+            Utils.writeContents(file, "edit " + i + "\n");
+            Commands.add(names[i % files]);
+            Commands.commit("edit " + i, null, null);
+        }
+        Commands.checkoutBranch("master");
+        Commands.rmBranch("other");
+        settle();
+        GcReport[] report = new GcReport[1];
+        for (boolean dryRun : new boolean[] {true, false}) {
+            long time = timeQuietly(() -> report[0] = Gc.collect(0, dryRun));
+            System.out.printf("%-8s %8.3f ms  %d commits, %d trees, %d blobs,"
+                    + " %d bytes%n", dryRun ? "dry run" : "gc", time / 1e6,
+                    report[0].getCommits(), report[0].getTrees(),
+                    report[0].getBlobs(), report[0].getBytes());
+        }
+        delete(Utils.join(Main.CWD, "bench"));
+        delete(GITLET);
+    }
+
+    /** Commits FILES files of SIZEKB kilobytes spread over directories
+     *  and reports how long a full fsck takes with the objects loose and
+     *  then packed, and how long an incremental one takes after a
+     *  further commit of a single file. */
+    static void fsck(int files, int sizeKB) {
+        Commands.init();
+        String text = String.join("\n", textLines(sizeKB * 1024)) + "\n";
+        for (int i = 0; i < files; i += 1) {
+            File file = Utils.join(Main.CWD, "bench/d" + (i % 64)
+                    + "/file" + i + ".txt");
+            file.getParentFile().mkdirs();
+            Utils.writeContents(file, i + "\n" + text);
+        }
+        Commands.add("bench");
+        Commands.commit("add " + files + " files", null, null);
+        FsckReport[] report = new FsckReport[1];
+        long time = timeQuietly(() -> report[0] = Fsck.run(false));
+        System.out.printf("full, loose   %10.3f ms  %d objects%n",
+                time / 1e6, report[0].getChecked());
+        ObjectStore.repack();
+        time = timeQuietly(() -> report[0] = Fsck.run(false));
+        System.out.printf("full, packed  %10.3f ms  %d objects%n",
+                time / 1e6, report[0].getChecked());
+        settle();
+        Utils.writeContents(Utils.join(Main.CWD, "bench/d0/file0.txt"),
+                "changed\n");
+        Commands.add("bench/d0/file0.txt");
+        Commands.commit("change one file", null, null);
+        time = timeQuietly(() -> report[0] = Fsck.run(true));
+        System.out.printf("incremental   %10.3f ms  %d objects%n",
+                time / 1e6, report[0].getChecked());
+        delete(Utils.join(Main.CWD, "bench"));
+        delete(GITLET);
+    }
+
+    /** Runs a bulk add of FILES files and its commit, and then a merge
+     *  of two branches that each changed CHANGED of them, under each sync
+     *  mode, and reports how long each took and how many files and
+     *  folders it synced. A first, unreported round warms up the JIT. */
+    static void sync(int files, int changed) {
+        System.out.printf("%-6s %12s %8s %12s %8s %12s %8s%n", "mode",
+                "add ms", "syncs", "commit ms", "syncs", "merge ms",
+                "syncs");
+        ArrayList<Durable.Mode> modes = new ArrayList<>();
+        modes.add(Durable.Mode.BATCH);
+        modes.addAll(Arrays.asList(Durable.Mode.values()));
+        for (int round = 0; round < modes.size(); round += 1) {
+            Durable.Mode mode = modes.get(round);
+            Durable.setMode(mode);
+            Commands.init();
+            String[] names = writeFiles(files);
+            long[] add = timeSyncs(() -> {
+                Commands.add(names);
+                Durable.sync();
+            });
+            long[] commit = timeSyncs(() ->
+                    Commands.commit("add " + files + " files", null, null));
+            Commands.branch("other");
+            for (String branch : new String[] {"other", "master"}) {
+                Commands.checkoutBranch(branch);
+                for (int i = 0; i < changed; i += 1) {
+                    int pick = branch.equals("other") ? i : files - 1 - i;
+                    Utils.writeContents(Utils.join(Main.CWD, names[pick]),
+                            branch + " " + i + "\n");
+                    Commands.add(names[pick]);
+                }
+                Commands.commit("change " + branch, null, null);
+            }
+            long[] merge = timeSyncs(() -> Commands.merge("other"));
+            if (round > 0) {
+                System.out.printf("%-6s %12.3f %8d %12.3f %8d %12.3f %8d%n",
+                        mode.toString().toLowerCase(), add[0] / 1e6,
+                        add[1], commit[0] / 1e6, commit[1], merge[0] / 1e6,
+                        merge[1]);
+            }
+            for (String name : names) {
+                Utils.join(Main.CWD, name).delete();
+            }
+            delete(GITLET);
+        }
+    }
+
+    /** Runs COMMAND quietly and returns the time it took in nanoseconds
+     *  and the number of files and folders it synced. */
+    static long[] timeSyncs(Runnable command) {
+        long syncs = Durable.syncs();
+        long time = timeQuietly(command);
+        return new long[] {time, Durable.syncs() - syncs};
+    }
+
+    /** Commits FILES files of about a hundred lines spread over
+     *  directories, changes a line in CHANGED of them, commits again and
+     *  reports how fast diff writes out the changes between the two
+     *  commits, as the best of REPEATS runs. */
+    static void diff(int files, int changed) {
+        Commands.init();
+        String[] names = new String[files];
+        String text = String.join("\n", textLines(100 * 50)) + "\n";
+        for (int i = 0; i < files; i += 1) {
+            names[i] = "bench/d" + (i % 64) + "/file" + i + ".txt";
+            File file = Utils.join(Main.CWD, names[i]);
+            file.getParentFile().mkdirs();
+            Utils.writeContents(file, i + "\n" + text);
+        }
+        Commands.add("bench");
+        String from = Commands.commit("add " + files + " files", null, null);
+        long bytes = 0;
+        for (int i = 0; i < changed; i += 1) {
+            int pick = (int) ((long) i * files / changed);
+            File file = Utils.join(Main.CWD, names[pick]);
+            Utils.writeContents(file, "changed " + pick + "\n" + text);
+            bytes += 2 * file.length();
+        }
+        Commands.add("bench");
+        String to = Commands.commit("change " + changed + " files", null,
+                null);
+        CountingStream out = new CountingStream();
+        long best = bestOf(() -> {
+            out._count = 0;
+            Commands.diffCommits(from, to, out);
+        });
+        System.out.printf("%d of %d files changed: %.3f ms, %.0f files/s,"
+                + " %.1f MB/s in, %.1f MB/s out%n", changed, files,
+                best / 1e6, changed / (best / 1e9), bytes / (best / 1e3),
+                out._count / (best / 1e3));
+        delete(Utils.join(Main.CWD, "bench"));
+        delete(GITLET);
+    }
+
+    /** An output stream that only counts what is written to it. */
+    private static class CountingStream extends OutputStream {
+        @Override
+        public void write(int b) {
+            _count += 1;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            _count += len;
+        }
+
+        /** Number of bytes written. */
+        private long _count;
+    }
+
+    /** For files of each number of lines in COUNTS, merges two versions
+     *  that each change every hundredth line, at different places, plus
+     *  one line changed on both sides, and reports the best time of
+     *  REPEATS merges and the peak heap used while merging. */
+    static void merge3(int... counts) {
+        System.out.printf("%-8s %12s %10s %10s%n", "lines", "merge-ms",
+                "conflict", "peak-MB");
+        for (int count : counts) {
+            StringBuilder base = new StringBuilder();
+            StringBuilder ours = new StringBuilder();
+            StringBuilder theirs = new StringBuilder();
+            for (int i = 0; i < count; i += 1) {
+                String line = "line " + i + " of a merged file\n";
+                base.append(line);
+                ours.append(i % 100 == 0 || i == count / 2
+                        ? "ours " + line : line);
+                theirs.append(i % 100 == 50 || i == count / 2
+                        ? "theirs " + line : line);
+            }
+            byte[] b = base.toString().getBytes();
+            byte[] o = ours.toString().getBytes();
+            byte[] t = theirs.toString().getBytes();
+            boolean[] conflict = new boolean[1];
+            Runnable merge = () -> {
+                try {
+                    conflict[0] = Merge3.merge(b, o, t,
+                            OutputStream.nullOutputStream());
+                } catch (IOException excp) {
+                    throw Utils.error("Cannot merge.");
+                }
+            };
+            long best = bestOf(merge);
+            System.gc();
+            for (MemoryPoolMXBean pool
+                     : ManagementFactory.getMemoryPoolMXBeans()) {
+                pool.resetPeakUsage();
+            }
+            long before = heapPeak();
+            merge.run();
+            System.out.printf("%-8d %12.3f %10s %10.1f%n", count, best / 1e6,
+                    conflict[0], (heapPeak() - before) / 1e6);
+        }
+    }
+
+    /** Returns the sum of the peak usage of every heap memory pool since
+     *  the peaks were last reset. */
+    static long heapPeak() {
+        long total = 0;
+        for (MemoryPoolMXBean pool
+                 : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                total += pool.getPeakUsage().getUsed();
+            }
+        }
+        return total;
+    }
+
+    /** Returns how many times per second OPERATION runs, measured over
+     *  about a second after a warm up of the same length. */
+    static double rate(Runnable operation) {
+        for (int pass = 0; pass < 2; pass += 1) {
+            long start = System.nanoTime();
+            long ops = 0;
+            while (System.nanoTime() - start < 1_000_000_000L) {
+                operation.run();
+                ops += 1;
+            }
+            if (pass == 1) {
+                return ops * 1e9 / (System.nanoTime() - start);
+            }
+        }
+        return 0;
+    }
+
+    /** Waits until files written so far are no longer racy. */
+    static void settle() {
+        try {
+            Thread.sleep(2100);
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Returns the fewest nanoseconds COMMAND took over REPEATS runs. */
+    static long bestOf(Runnable command) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < REPEATS; i += 1) {
+            best = Math.min(best, timeQuietly(command));
+        }
+        return best;
+    }
+
+    /** Returns the nanoseconds taken by COMMAND, discarding anything it
+     *  prints. */
+    static long timeQuietly(Runnable command) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            long start = System.nanoTime();
+            command.run();
+            return System.nanoTime() - start;
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /** Returns deterministic lines of text adding up to about BYTES. */
+    static ArrayList<String> textLines(int bytes) {
+        ArrayList<String> lines = new ArrayList<>();
+        int total = 0;
+        while (total < bytes || lines.isEmpty()) {
+            String line = "line " + lines.size()
+                    + " of a file that gitlet is benchmarked against";
+            lines.add(line);
+            total += line.length() + 1;
+        }
+        return lines;
+    }
+
+    /** Returns the sha1 of the commit the current branch points to. */
+    static String headId() {
+        File refs = Utils.join(GITLET, "refs");
+        String branch = Utils.readObject(Utils.join(GITLET, "HEAD_REF"),
+                String.class);
+        return Utils.readObject(Utils.join(refs, branch), String.class);
+    }
+
+    /** Returns the total number of bytes in the files under DIR. */
+    static long sizeOf(File dir) {
+        long total = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                total += file.isDirectory() ? sizeOf(file) : file.length();
+            }
+        }
+        return total;
+    }
+
+    /** Deletes DIR and everything beneath it. */
+    static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                delete(file);
+            }
+        }
+        dir.delete();
+    }
+
+    /** Returns ARGS from I onwards as integers, or DEFAULTS if there are
+     *  none. */
+    static int[] intArgs(String[] args, int i, int... defaults) {
+        if (args.length <= i) {
+            return defaults;
+        }
+        int[] result = new int[args.length - i];
+        for (int k = 0; k < result.length; k += 1) {
+            result[k] = intArg(args, i + k, 0);
+        }
+        return result;
+    }
+
+    /** Returns ARGS[I] as an integer, or DEFAULTVALUE if it is absent. */
+    static int intArg(String[] args, int i, int defaultValue) {
+        if (args.length <= i) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(args[i]);
+        } catch (NumberFormatException excp) {
+            throw Utils.error("Incorrect operands.");
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/** The standard benchmark suite, which times common commands against a
+ *  generated repository and can compare the medians with a baseline.
+ *  Usage: java gitlet.Benchmark suite [--NAME=VALUE...].
+ *  @author Super Stressed McSad */
+class BenchmarkSuite {
+
+    /** The options that shape the generated repository. Results are only
+     *  comparable if these match. */
+    private static final String[] SHAPE = {"files", "size", "commits",
+        "branches", "merges", "seed"};
+
+    /** The header line of the results. */
+    private static final String HEADER =
+            "benchmark,runs,mean-ms,median-ms,min-ms,max-ms";
+
+    /** Runs the suite with the options in ARGS. */
+    static void run(String... args) {
+        BenchmarkSuite suite = new BenchmarkSuite(args);
+        suite.measureAll();
+        suite.report();
+    }
+
+    /** A run of the suite with the options in ARGS, each --NAME=VALUE
+     *  for one of files, size, commits, branches, merges, seed, warmup,
+     *  runs, threshold, out and baseline. */
+    private BenchmarkSuite(String... args) {
+        _options.put("files", 1000L);
+        _options.put("size", 2048L);
+        _options.put("commits", 100L);
+        _options.put("branches", 4L);
+        _options.put("merges", 25L);
+        _options.put("seed", 1L);
+        _options.put("warmup", 3L);
+        _options.put("runs", 10L);
+        _options.put("threshold", 10L);
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw Utils.error("Incorrect operands.");
+            }
+            String key = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            if (key.equals("out")) {
+                _out = new File(value);
+            } else if (key.equals("baseline")) {
+                _baseline = new File(value);
+            } else if (_options.containsKey(key)) {
+                try {
+                    _options.put(key, Long.parseLong(value));
+                } catch (NumberFormatException excp) {
+                    throw Utils.error("Incorrect operands.");
+                }
+            } else {
+                throw Utils.error("Incorrect operands.");
+            }
+        }
+        if (_baseline != null && !_baseline.isFile()) {
+            throw Utils.error("No baseline at %s.", _baseline.getPath());
+        }
+    }
+
+    /** Generates the repository, times every benchmark against it and
+     *  removes it again. */
+    private void measureAll() {
+        RepoGenerator gen = new RepoGenerator(option("files"),
+                option("size"), option("commits"), option("branches"),
+                option("merges"), _options.get("seed"));
+        long start = System.nanoTime();
+        int merges = gen.generate();
+        System.out.printf("Generated %d files with %d commits and %d merges"
+                + " on %d branches in %.0f ms.%n", option("files"),
+                option("commits"), merges, gen.branches().size(),
+                (System.nanoTime() - start) / 1e6);
+
+        measure("add", i -> _paths = gen.edit(0),
+                i -> Commands.add(_paths));
+        Commands.commit("benchmark add", null, null);
+        measure("commit", i -> Commands.add(gen.edit(0)),
+                i -> Commands.commit("benchmark commit " + i, null,
+                        null));
+        measure("status", i -> { }, i -> Commands.status());
+        measure("log", i -> { }, i -> Commands.log());
+
+        String other;
+        if (gen.branches().size() > 1) {
+            other = gen.branches().get(1);
+        } else {
+            other = "benchmark-checkout";
+            Commands.branch(other);
+            Commands.checkoutBranch(other);
+            gen.commit(0, "benchmark checkout");
+            Commands.checkoutBranch("master");
+        }
+        measure("checkout", i -> { },
+                i -> Commands.checkoutBranch(i % 2 == 0 ? other
+                        : "master"));
+        if (Utils.readObject(Utils.join(GITLET, "HEAD_REF"), String.class)
+                .equals(other)) {
+            Commands.checkoutBranch("master");
+        }
+
+        int slice = 1 % gen.branches().size();
+        ArrayList<String> branches = new ArrayList<>();
+        measure("merge", i -> {
+            String branch = "benchmark-merge" + i;
+            branches.add(branch);
+            Commands.branch(branch);
+            Commands.checkoutBranch(branch);
+            gen.commit(slice, "benchmark merge " + i);
+            Commands.checkoutBranch("master");
+            gen.commit(0, "benchmark master " + i);
+        }, i -> Commands.merge(branches.get(branches.size() - 1)));
+        for (String branch : branches) {
+            Commands.rmBranch(branch);
+        }
+
+        Benchmark.delete(Utils.join(Main.CWD, RepoGenerator.ROOT));
+        Benchmark.delete(GITLET);
+    }
+
+    /** Runs SETUP and then times OPERATION, each given the number of the
+     *  run, first for the warm up runs and then for the timed ones, and
+     *  keeps the times under NAME. */
+    private void measure(String name, IntConsumer setup,
+                         IntConsumer operation) {
+        int warmup = option("warmup");
+        int runs = option("runs");
+        if (runs < 1 || warmup < 0) {
+            throw Utils.error("Incorrect operands.");
+        }
+        long[] times = new long[runs];
+        for (int i = 0; i < warmup + runs; i += 1) {
+            int run = i;
+            setup.accept(run);
+            long time = Benchmark.timeQuietly(() -> operation.accept(run));
+            if (i >= warmup) {
+                times[i - warmup] = time;
+            }
+        }
+        Arrays.sort(times);
+        _results.put(name, times);
+    }
+
+    /** Prints the results, compared with the baseline if there is one,
+     *  and writes them out if asked to. Exits with status 1 if any
+     *  median has slowed down by more than the threshold. */
+    private void report() {
+        LinkedHashMap<String, Double> baseline = new LinkedHashMap<>();
+        if (_baseline != null) {
+            baseline = readBaseline();
+        }
+        StringBuilder csv = new StringBuilder();
+        for (Map.Entry<String, Long> option : _options.entrySet()) {
+            csv.append("# ").append(option.getKey()).append('=')
+                    .append(option.getValue()).append('\n');
+        }
+        csv.append("# java=").append(System.getProperty("java.version"))
+                .append('\n').append(HEADER).append('\n');
+
+        System.out.printf("%-10s %6s %10s %10s %10s %10s", "benchmark",
+                "runs", "mean-ms", "median-ms", "min-ms", "max-ms");
+        System.out.printf(baseline.isEmpty() ? "%n" : " %12s %8s%n",
+                "baseline-ms", "change");
+        int regressed = 0;
+        for (Map.Entry<String, long[]> result : _results.entrySet()) {
+            long[] times = result.getValue();
+            double mean = Arrays.stream(times).average().orElse(0) / 1e6;
+            double median = times[times.length / 2] / 1e6;
+            double min = times[0] / 1e6;
+            double max = times[times.length - 1] / 1e6;
+            csv.append(String.format("%s,%d,%.3f,%.3f,%.3f,%.3f%n",
+                    result.getKey(), times.length, mean, median, min, max));
+            System.out.printf("%-10s %6d %10.3f %10.3f %10.3f %10.3f",
+                    result.getKey(), times.length, mean, median, min, max);
+            Double base = baseline.get(result.getKey());
+            if (base == null) {
+                System.out.println();
+                continue;
+            }
+            double change = (median - base) / base * 100;
+            boolean slower = change > option("threshold");
+            regressed += slower ? 1 : 0;
+            System.out.printf(" %12.3f %+7.1f%%%s%n", base, change,
+                    slower ? "  slower" : "");
+        }
+        if (_out != null) {
+            Utils.writeContents(_out, csv.toString());
+        }
+        if (regressed > 0) {
+            System.out.printf("%d of %d benchmarks slowed down by more than"
+                    + " %d%%.%n", regressed, _results.size(),
+                    option("threshold"));
+            System.exit(1);
+        }
+    }
+
+    /** Returns the medians in the baseline file, by benchmark, after
+     *  checking that it was run on a repository of the same shape. */
+    private LinkedHashMap<String, Double> readBaseline() {
+        LinkedHashMap<String, Double> medians = new LinkedHashMap<>();
+        for (String line
+                 : Utils.readContentsAsString(_baseline).split("\n")) {
+            if (line.startsWith("# ")) {
+                String[] option = line.substring(2).split("=", 2);
+                if (Arrays.asList(SHAPE).contains(option[0])
+                        && !option[1].equals(String.valueOf(
+                                _options.get(option[0])))) {
+                    System.out.printf("Warning: the baseline was run with"
+                            + " %s=%s.%n", option[0], option[1]);
+                }
+            } else if (!line.isEmpty() && !line.equals(HEADER)) {
+                String[] fields = line.split(",");
+                try {
+                    medians.put(fields[0], Double.parseDouble(fields[3]));
+                } catch (ArrayIndexOutOfBoundsException
+                         | NumberFormatException excp) {
+                    throw Utils.error("Malformed baseline line: %s", line);
+                }
+            }
+        }
+        return medians;
+    }
+
+    /** Returns the option NAME as an int. */
+    private int option(String name) {
+        return _options.get(name).intValue();
+    }
+
+    /** The .gitlet folder of the generated repository. */
+    private static final File GITLET = Utils.join(Main.CWD, ".gitlet");
+
+    /** The numeric options, by name. */
+    private final LinkedHashMap<String, Long> _options =
+            new LinkedHashMap<>();
+
+    /** Where to write the results, or null. */
+    private File _out;
+
+    /** Earlier results to compare with, or null. */
+    private File _baseline;
+
+    /** The files edited for the next add. */
+    private String[] _paths;
+
+    /** The sorted times of each benchmark, in nanoseconds, by name. */
+    private final LinkedHashMap<String, long[]> _results =
+            new LinkedHashMap<>();
+}
@@ -0,0 +1,125 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Carries out checkout plans, which map each path that has to change
+ *  to its new blob, or to null if it should be deleted. New files are
+ *  written under .gitlet and renamed into place.
+ *  @author Super Stressed McSad */
+class Checkout {
+
+    /** Largest number of threads used to carry out a plan. */
+    private static final int THREADS = Math.max(2,
+            Math.min(16, 2 * Runtime.getRuntime().availableProcessors()));
+
+    /** Plans with fewer paths than this run on the calling thread. */
+    private static final int PARALLEL_MIN = 8;
+
+    /** Folder the new files are written in before being renamed into
+     *  place. */
+    private static final File TMP = Utils.join(Main.CWD, ".gitlet", "tmp");
+
+    /** Carries out PLAN and records the new state of each path it
+     *  touched in the stat cache. Folders left empty by deleted files
+     *  are removed. */
+    static void apply(Map<String, String> plan) {
+        Stats.Phase phase = Stats.phase("checkout");
+        try {
+            sweep();
+            if (plan.size() < PARALLEL_MIN) {
+                for (Map.Entry<String, String> step : plan.entrySet()) {
+                    apply(step.getKey(), step.getValue());
+                }
+            } else {
+                ExecutorService pool = Executors.newFixedThreadPool(
+                        Math.min(THREADS, plan.size()));
+                try {
+                    ArrayList<Future<?>> steps = new ArrayList<>();
+                    for (Map.Entry<String, String> step : plan.entrySet()) {
+                        steps.add(pool.submit(() -> apply(step.getKey(),
+                                step.getValue())));
+                    }
+                    for (Future<?> step : steps) {
+                        step.get();
+                    }
+                } catch (ExecutionException excp) {
+                    if (excp.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) excp.getCause();
+                    }
+                    throw Utils.error("Cannot update the working directory.");
+                } catch (InterruptedException excp) {
+                    Thread.currentThread().interrupt();
+                    throw Utils.error("Cannot update the working directory.");
+                } finally {
+                    pool.shutdownNow();
+                }
+            }
+            for (Map.Entry<String, String> step : plan.entrySet()) {
+                if (step.getValue() == null) {
+                    StatCache.forget(step.getKey());
+                    prune(step.getKey());
+                } else {
+                    StatCache.record(step.getKey(), step.getValue());
+                }
+            }
+        } finally {
+            phase.close();
+        }
+    }
+
+    /** Replaces the working file NAME with the blob ID, or deletes it if
+     *  ID is null. */
+    private static void apply(String name, String id) {
+        File target = Utils.join(Main.CWD, name);
+        try {
+            if (id == null) {
+                Files.deleteIfExists(target.toPath());
+                return;
+            }
+            target.getAbsoluteFile().getParentFile().mkdirs();
+            File tmp = File.createTempFile("checkout-", null, TMP);
+            try {
+                byte[] data = ObjectStore.readBlob(id);
+                Files.write(tmp.toPath(), data);
+                Stats.wrote(data.length);
+                Files.move(tmp.toPath(), target.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                tmp.delete();
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot check out %s.", name);
+        }
+    }
+
+    /** Deletes files left in TMP by a checkout that did not finish, and
+     *  makes sure TMP exists. */
+    private static void sweep() {
+        File[] stale = TMP.listFiles();
+        if (stale != null) {
+            for (File file : stale) {
+                file.delete();
+            }
+        }
+        TMP.mkdirs();
+    }
+
+    /** Removes the folders holding the deleted file NAME, innermost
+     *  first, for as long as they are empty. */
+    private static void prune(String name) {
+        File dir = new File(name).getParentFile();
+        while (dir != null && Utils.join(Main.CWD, dir.getPath()).delete()) {
+            dir = dir.getParentFile();
+        }
+    }
+}
@@ -1,17 +1,32 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.FilenameFilter;
-import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
 
 /** Contains all the commands that gitlet is capable of utilizing.
  *  @author Super Stressed McSad */
 public class Commands {
 
+    /** Initial commit when a .gitlet repository is verse instantiated.
+     *  Kept here rather than in Main so that handing a command to the
+     *  daemon never has to build it. */
+    public static final Commit INITIAL_COMMIT = new Commit();
+
+    /** Sha1 identifier for the initial commit. */
+    public static final String SHA1_INITIAL_COMMIT =
+            CommitCodec.sha1(INITIAL_COMMIT);
+
     /** The .gitlet foler. */
     private static File gitlet = Utils.join(Main.CWD, ".gitlet");
 
@@ -19,9 +34,6 @@ public class Commands {
      * the commits that have been made. */
     private static File commits = Utils.join(gitlet, "commits");
 
-    /** The staging folder. */
-    private static File stage = Utils.join(gitlet, "stage");
-
     /** The current branch. */
     private static File headRef = Utils.join(gitlet, "HEAD_REF");
 
@@ -40,123 +52,130 @@ public class Commands {
     public static void init() {
 
         if (gitlet.exists()) {
-            Utils.message("A Gitlet version-control system "
+            throw new RejectedException("A Gitlet version-control system "
                     + "already exists in the current directory.");
-            System.exit(0);
         } else {
             gitlet.mkdirs();
 
-            stage.mkdirs();
-
             blobs.mkdirs();
 
             commits.mkdirs();
-            File initialCommit = Utils.join(commits, Main.SHA1_INITIAL_COMMIT);
-            Utils.writeObject(initialCommit, Main.INITIAL_COMMIT);
+            ObjectStore.writeCommit(SHA1_INITIAL_COMMIT,
+                    INITIAL_COMMIT);
+            CommitGraph.append(SHA1_INITIAL_COMMIT, INITIAL_COMMIT);
+            CommitIndex.append(SHA1_INITIAL_COMMIT, INITIAL_COMMIT);
 
             refs.mkdirs();
-            File master = Utils.join(refs, "master");
-            Utils.writeObject(master, Main.SHA1_INITIAL_COMMIT);
-
-            Utils.writeObject(headRef, "master");
-
-            Utils.writeObject(head, Main.INITIAL_COMMIT);
+            Durable.Update update = new Durable.Update();
+            update.put(Utils.join(refs, "master"),
+                    Utils.serialize(SHA1_INITIAL_COMMIT));
+            update.put(headRef, Utils.serialize("master"));
+            update.put(head, CommitCodec.encode(INITIAL_COMMIT));
+            update.commit();
         }
 
     }
 
-    /** Adds a file NAME to the staging area. */
-    public static void add(String name) {
-        File toAdd = Utils.join(Main.CWD, name);
-        if (!toAdd.exists()) {
-            Utils.message("File does not exist.");
-            System.exit(0);
-        }
+    /** Adds the files named by PATHS to the staging area. A path may be
+     *  a file or a directory, such as ".", whose files are all added.
+     *  The files are hashed and stored in parallel, and the staging area
+     *  is written once at the end. */
+    public static void add(String... paths) {
+        stageFiles(paths);
+        Stage.save();
+    }
 
-        String sha1ToAdd = Utils.sha1(Utils.readContentsAsString(toAdd));
-        Commit current = Utils.readObject(head, Commit.class);
-        String sha1Committed = current.getBlobs().get(name);
-        File staged = Utils.join(stage, name);
-        String sha1Staged = null;
-        HashSet<String> rms = current.getRms();
-        if (rms.contains(name)) {
-            rms.remove(name);
-            Utils.writeObject(head, current);
+    /** Stages the files named by PATHS as add does, without writing the
+     *  staging area back. */
+    private static void stageFiles(String... paths) {
+        String[] names = new String[paths.length];
+        for (int i = 0; i < paths.length; i += 1) {
+            names[i] = WorkingTree.name(paths[i]);
+            if (names[i] == null || !Utils.join(Main.CWD, names[i]).exists()) {
+                throw new NotFoundException("File does not exist.");
+            }
         }
+        ArrayList<String> files = WorkingTree.walk(names);
 
-        if (staged.exists()) {
-            sha1Staged = Utils.readObject(staged, String.class);
+        Commit current = headCommit();
+        HashMap<String, String> committed;
+        if (files.size() == 1) {
+            committed = new HashMap<>();
+            committed.put(files.get(0), current.blob(files.get(0)));
+        } else {
+            committed = current.getBlobs();
+        }
+        String[] ids = WorkingTree.store(files, committed);
+        for (int i = 0; i < ids.length; i += 1) {
+            StatCache.record(files.get(i), ids[i]);
+            stage(files.get(i), ids[i], committed.get(files.get(i)));
         }
+    }
+
+    /** Stages the blob SHA1TOADD as the file NAME, which is committed as
+     *  SHA1COMMITTED, without writing the staging area back. */
+    private static void stage(String name, String sha1ToAdd,
+                              String sha1Committed) {
+        String sha1Staged = Stage.staged(name);
+        Stage.unremove(name);
 
         if (sha1Committed != null
                 && sha1ToAdd.compareTo(sha1Committed) == 0) {
-            if (staged.exists()) {
-                Utils.restrictedDelete(staged);
-            }
+            Stage.unstage(name);
         } else if (sha1Staged != null
                 && sha1Staged.compareTo(sha1ToAdd) != 0) {
-            Utils.restrictedDelete(Utils.join(blobs, sha1Staged));
-            Utils.writeObject(staged, sha1ToAdd);
-            Utils.writeContents(Utils.join(blobs, sha1ToAdd),
-                    Utils.readContents(toAdd));
-        } else if (!staged.exists()) {
-            Utils.writeObject(staged, sha1ToAdd);
-            Utils.writeContents(Utils.join(blobs, sha1ToAdd),
-                    Utils.readContents(toAdd));
+            Stage.add(name, sha1ToAdd);
+        } else if (sha1Staged == null) {
+            Stage.add(name, sha1ToAdd);
         }
     }
 
     /** Saves a snapshot of the working directory, dependent on
      * the staged files. Will contain the commit message MSG. For merges,
-     * PARENT1 and PARENT2 commits are given.*/
-    public static void commit(String msg, String parent1, String parent2) {
-
-        Commit current = Utils.readObject(head, Commit.class);
-        HashSet<String> rms = current.getRms();
-        String[] updates = stage.list();
-        if (updates.length == 0 && rms.size() == 0) {
-            Utils.message("No changes added to the commit.");
-            System.exit(0);
-        } else if (msg.length() == 0) {
-            Utils.message("Please enter a commit message.");
-            System.exit(0);
-        }
-
-        String currentBranch = Utils.readObject(headRef, String.class);
-        HashMap<String, String> old = current.getBlobs();
-        HashMap<String, String> fresh = new HashMap<>(old);
-
-        for (String name : rms) {
-            fresh.remove(name);
-        }
-
-        for (String name : updates) {
-            fresh.put(name, Utils.readObject(Utils.join(stage, name),
-                    String.class));
-            Utils.join(stage, name).delete();
-        }
-
-
-        if (parent2 != null) {
-            Commit newHead = new Commit(msg, currentBranch, new Date(), "MP",
-                    parent1, parent2, fresh, new HashSet<String>());
-        } else {
-            Commit newHead = new Commit(msg, currentBranch, new Date(), "MP",
-                    Utils.readObject(Utils.join(refs, currentBranch),
-                    String.class), null, fresh, new HashSet<String>());
-        }
-
-        Commit newHead = new Commit(msg, currentBranch, new Date(),
-                "MP", Utils.readObject(Utils.join(refs, currentBranch),
-                String.class), null, fresh, new HashSet<String>());
-
-        String newSha1 = Utils.sha1(Utils.serialize(newHead));
-        Utils.writeObject(head, newHead);
-        Utils.writeObject(Utils.join(commits, newSha1), newHead);
-        Utils.writeObject(Utils.join(refs, currentBranch), newSha1);
-
-        Utils.readObject(head, Commit.class);
+     * PARENT1 and PARENT2 commits are given. Returns the new commit's
+     * sha1. */
+    public static String commit(String msg, String parent1, String parent2) {
 
+        Commit current = headCommit();
+        if (Stage.isEmpty()) {
+            throw new RejectedException("No changes added to the commit.");
+        } else if (msg.length() == 0) {
+            throw new RejectedException("Please enter a commit message.");
+        }
+
+        String currentBranch = Stats.readObject(headRef, String.class);
+        HashMap<String, String> changes = new HashMap<>();
+
+        for (String name : Stage.removals()) {
+            changes.put(name, null);
+        }
+        changes.putAll(Stage.additions());
+        String fresh;
+        Stats.Phase phase = Stats.phase("tree");
+        try {
+            fresh = Tree.update(Tree.of(current), changes);
+        } finally {
+            phase.close();
+        }
+
+        if (parent1 == null) {
+            parent1 = Stats.readObject(Utils.join(refs, currentBranch),
+                    String.class);
+        }
+        Commit newHead = new Commit(msg, currentBranch, new Date(), "MP",
+                parent1, parent2, fresh, new HashSet<String>());
+
+        String newSha1 = CommitCodec.sha1(newHead);
+        ObjectStore.writeCommit(newSha1, newHead);
+        CommitGraph.append(newSha1, newHead);
+        CommitIndex.append(newSha1, newHead);
+        Durable.Update update = new Durable.Update();
+        update.put(head, CommitCodec.encode(newHead));
+        update.put(Utils.join(refs, currentBranch), Utils.serialize(newSha1));
+        Stage.clear();
+        Stage.save(update);
+        update.commit();
+        return newSha1;
     }
 
     /** Reverts to a previous file version of NAME. Uses commit ID,
@@ -164,376 +183,529 @@ public class Commands {
     public static void checkoutFile(String name, String id) {
         Commit revert = null;
         if (id == null) {
-            revert = Utils.readObject(head, Commit.class);
+            revert = headCommit();
         } else {
-            for (String commit : commits.list()) {
-                if (id.equals(commit.substring(0, id.length()))) {
-                    revert = Utils.readObject(Utils.join(commits, commit),
-                            Commit.class);
-                    break;
-                }
-            }
-            if (revert == null) {
-                Utils.message("No commit with that id exists.");
-                System.exit(0);
-            }
+            revert = ObjectStore.readCommit(resolveId(id));
         }
 
-        String sha1File = revert.getBlobs().get(name);
+        String sha1File = revert.blob(name);
 
         if (sha1File == null) {
-            Utils.message("File does not exist in that commit.");
-            System.exit(0);
+            throw new NotFoundException("File does not exist in that commit.");
         }
 
         File realFile = Utils.join(Main.CWD, name);
-        Utils.writeContents(realFile, Utils.readContents(
-                Utils.join(blobs, sha1File)));
+        byte[] contents = ObjectStore.readBlob(sha1File);
+        Utils.writeContents(realFile, contents);
+        Stats.wrote(contents.length);
+        StatCache.record(name, sha1File);
+    }
+
+    /** Returns the current commit. It is read through the object cache
+     * by the id of the current branch rather than from HEAD, so commands
+     * that look at it repeatedly, such as merge, decode it only once. */
+    private static Commit headCommit() {
+        return ObjectStore.readCommit(Stats.readObject(Utils.join(refs,
+                Stats.readObject(headRef, String.class)), String.class));
+    }
+
+    /** Returns the full sha1 of the one commit whose id starts with ID.
+     * Exits if there is no such commit or if ID is ambiguous. */
+    static String resolveId(String id) {
+        ArrayList<String> found = CommitIds.matches(id, 2);
+        if (found.isEmpty()) {
+            throw new NotFoundException("No commit with that id exists.");
+        } else if (found.size() > 1) {
+            throw new RejectedException("Ambiguous commit id.");
+        }
+        return found.get(0);
     }
 
     /** Reverts working directory to the head commit of BRANCH. */
     public static void checkoutBranch(String branch) {
-        if (Utils.readObject(headRef, String.class).equals(branch)) {
-            Utils.message(" No need to checkout the current branch.");
-            System.exit(0);
+        if (Stats.readObject(headRef, String.class).equals(branch)) {
+            throw new RejectedException(
+                    " No need to checkout the current branch.");
         }
 
         File newBranch = Utils.join(refs, branch);
         if (!newBranch.exists()) {
-            Utils.message("No such branch exists.");
-            System.exit(0);
+            throw new NotFoundException("No such branch exists.");
         }
-        String sha1newBranch = Utils.readObject(newBranch, String.class);
+        String sha1newBranch = Stats.readObject(newBranch, String.class);
 
-        Commit commit = Utils.readObject(Utils.join(commits,
-                sha1newBranch), Commit.class);
+        Commit commit = ObjectStore.readCommit(sha1newBranch);
+        Commit current = headCommit();
         HashMap<String, String> newFiles = commit.getBlobs();
-        HashMap<String, String> trackedFiles = Utils.readObject(head,
-                Commit.class).getBlobs();
+        HashMap<String, String> trackedFiles = current.getBlobs();
 
-        for (String name : Main.CWD.list(new FileCheck())) {
+        for (String name : workingFiles(trackedFiles, newFiles)) {
             if (!trackedFiles.containsKey(name)
-                    && !Utils.sha1(Utils.readContentsAsString(Utils.join(
-                            Main.CWD, name))).equals(newFiles.get(name))) {
-                Utils.message("There is an untracked file in the way;"
-                        + " delete it or add it first.");
-                System.exit(0);
+                    && !StatCache.sha1(name).equals(newFiles.get(name))) {
+                throw new UntrackedFileException("There is an untracked file"
+                        + " in the way; delete it or add it first.");
             }
         }
 
-        for (String name : Main.CWD.list(new FileCheck())) {
-            if (!newFiles.containsKey(name)) {
-                Utils.join(Main.CWD, name).delete();
+        Checkout.apply(checkoutPlan(current, commit));
+
+        Durable.Update update = new Durable.Update();
+        update.put(head, CommitCodec.encode(commit));
+        update.put(headRef, Utils.serialize(branch));
+        update.commit();
+    }
+
+    /** Returns the plan that takes a working directory checked out at
+     *  CURRENT to TARGET: every path whose blob differs between the two,
+     *  plus every staged or removed file, mapped to its blob in TARGET or
+     *  to null if TARGET does not track it. */
+    private static TreeMap<String, String> checkoutPlan(Commit current,
+                                                        Commit target) {
+        Stats.Phase phase = Stats.phase("plan");
+        try {
+            TreeMap<String, String> plan = new TreeMap<>();
+            for (Map.Entry<String, String[]> change : Tree.diff(
+                    Tree.of(current), Tree.of(target)).entrySet()) {
+                plan.put(change.getKey(), change.getValue()[1]);
             }
+            HashSet<String> dirty = new HashSet<>(Stage.removals());
+            dirty.addAll(Stage.additions().keySet());
+            for (String name : dirty) {
+                plan.putIfAbsent(name, target.blob(name));
+            }
+            return plan;
+        } finally {
+            phase.close();
         }
+    }
 
-        for (String name : newFiles.keySet()) {
-            Utils.writeContents(Utils.join(Main.CWD, name),
-                    Utils.readContents(Utils.join(blobs, newFiles.get(name))));
+    /** Returns the files in the working directory, looking inside only the
+     *  directories that hold a file in one of the maps TRACKED. */
+    @SafeVarargs
+    private static ArrayList<String> workingFiles(
+            Map<String, String>... tracked) {
+        HashSet<String> names = new HashSet<>();
+        for (Map<String, String> files : tracked) {
+            names.addAll(files.keySet());
         }
+        return WorkingTree.files(names);
+    }
 
+    /** Returns the past commits in the current branch, newest first. */
+    public static ArrayList<LogEntry> log() {
+        ArrayList<LogEntry> result = new ArrayList<>();
+        String id = Stats.readObject(Utils.join(refs,
+                Stats.readObject(headRef, String.class)), String.class);
+        int pos = CommitGraph.find(id);
 
+        while (id != null) {
+            if (pos != CommitGraph.NONE) {
+                result.add(new LogEntry(id, CommitGraph.timestamp(pos),
+                        CommitIndex.message(CommitIndex.record(id))));
+                pos = CommitGraph.parent(pos);
+                id = pos == CommitGraph.NONE ? null : CommitGraph.id(pos);
+            } else {
+                Commit commit = ObjectStore.readCommit(id);
+                result.add(new LogEntry(id, commit.getDate().getTime(),
+                        commit.getMsg()));
+                id = commit.getParent();
+                pos = id == null ? CommitGraph.NONE : CommitGraph.find(id);
+            }
+        }
+        return result;
+    }
+
+    /** Writes the differences between the working files and the stage,
+     * or the current commit for files that are not staged, onto OUT as
+     * unified diffs. Files are compared by their cached sha1 first, so
+     * only those that changed are read. */
+    public static void diffWorking(OutputStream out) {
+        HashMap<String, String> staged = new HashMap<>(
+                headCommit().getBlobs());
+        staged.putAll(Stage.additions());
+        staged.keySet().removeAll(Stage.removals());
+        TreeMap<String, String[]> changes = new TreeMap<>();
+        for (Map.Entry<String, String> entry : staged.entrySet()) {
+            String name = entry.getKey();
+            String working = Utils.join(Main.CWD, name).isFile()
+                    ? StatCache.sha1(name) : null;
+            if (!entry.getValue().equals(working)) {
+                changes.put(name, new String[] {entry.getValue(), working});
+            }
+        }
+        writeDiffs(changes, true, out);
+    }
 
-        Utils.writeObject(head, commit);
-        Utils.writeObject(headRef, branch);
-        Utils.writeObject(newBranch, sha1newBranch);
+    /** Writes the differences between the current commit and the stage
+     * onto OUT as unified diffs. */
+    public static void diffStaged(OutputStream out) {
+        Commit current = headCommit();
+        TreeMap<String, String[]> changes = new TreeMap<>();
+        for (Map.Entry<String, String> entry
+                 : Stage.additions().entrySet()) {
+            String committed = current.blob(entry.getKey());
+            if (!entry.getValue().equals(committed)) {
+                changes.put(entry.getKey(),
+                        new String[] {committed, entry.getValue()});
+            }
+        }
+        for (String name : Stage.removals()) {
+            changes.put(name, new String[] {current.blob(name), null});
+        }
+        writeDiffs(changes, false, out);
     }
 
-    /** Prints out the past commits in the current branch. */
-    public static void log() {
-        Commit first = Utils.readObject(head, Commit.class);
-        String id = Utils.readObject(Utils.join(refs,
-                Utils.readObject(headRef, String.class)), String.class);
+    /** Writes the differences between the commits whose ids start with
+     * FROM and TO onto OUT as unified diffs. Directories whose trees are
+     * equal in both are skipped without being read. */
+    public static void diffCommits(String from, String to, OutputStream out) {
+        Commit a = ObjectStore.readCommit(resolveId(from));
+        Commit b = ObjectStore.readCommit(resolveId(to));
+        writeDiffs(Tree.diff(Tree.of(a), Tree.of(b)), false, out);
+    }
 
-        while (id != null) {
-            System.out.println("===");
-            System.out.println("commit " + id);
-            System.out.println("Date: " + new SimpleDateFormat(
-                    "EEE MMM d HH:mm:ss yyyy Z").format(first.getDate()));
-            System.out.println(first.getMsg());
-            System.out.println();
-            id = first.getParent();
-            if (id != null) {
-                first = Utils.readObject(Utils.join(commits, id), Commit.class);
+    /** Helper for the diff commands that writes a unified diff onto OUT
+     * for each file in CHANGES, mapped to its old and new blobs. The new
+     * contents are read from the working file instead if WORKING. Files
+     * longer than UnifiedDiff.LIMIT are reported as different without
+     * being read. */
+    private static void writeDiffs(TreeMap<String, String[]> changes,
+                                   boolean working, OutputStream out) {
+        try {
+            for (Map.Entry<String, String[]> change : changes.entrySet()) {
+                String name = change.getKey();
+                String[] ids = change.getValue();
+                File file = Utils.join(Main.CWD, name);
+                long fromSize = ids[0] == null ? 0
+                        : ObjectStore.size(ids[0]);
+                long toSize;
+                if (ids[1] == null) {
+                    toSize = 0;
+                } else if (working) {
+                    toSize = file.length();
+                } else {
+                    toSize = ObjectStore.size(ids[1]);
+                }
+                if (fromSize > UnifiedDiff.LIMIT
+                        || toSize > UnifiedDiff.LIMIT) {
+                    UnifiedDiff.differ(name, ids[0] != null, ids[1] != null,
+                            out);
+                    continue;
+                }
+                byte[] from = ids[0] == null ? null
+                        : ObjectStore.readBlob(ids[0]);
+                byte[] to;
+                if (ids[1] == null) {
+                    to = null;
+                } else if (working) {
+                    to = Utils.readContents(file);
+                } else {
+                    to = ObjectStore.readBlob(ids[1]);
+                }
+                UnifiedDiff.write(name, from, to, out);
             }
+            out.flush();
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write the diff.");
         }
     }
 
     /** Removes the file NAME. */
     public static void rm(String name) {
-        Commit current = Utils.readObject(head, Commit.class);
-        boolean tracked = current.getBlobs().containsKey(name);
-        boolean staged = Utils.join(stage, name).exists();
+        unstage(name);
+        Stage.save();
+    }
 
-        if (!staged && !tracked) {
-            Utils.message("No reason to remove the file.");
-            System.exit(0);
+    /** Removes the file NAME as rm does, without writing the staging area
+     *  back. */
+    private static void unstage(String name) {
+        Commit current = headCommit();
+        boolean tracked = current.blob(name) != null;
+        String staged = Stage.staged(name);
+
+        if (staged == null && !tracked) {
+            throw new RejectedException("No reason to remove the file.");
         }
 
-        if (staged) {
-            Utils.join(blobs, Utils.readObject(Utils.join(stage, name),
-                    String.class)).delete();
-            Utils.join(stage, name).delete();
+        if (staged != null) {
+            Stage.unstage(name);
         }
 
         if (tracked) {
-            current.getRms().add(name);
-            Utils.writeObject(head, current);
-            Utils.restrictedDelete(Utils.join(Main.CWD, name));
+            Stage.remove(name);
+            Utils.join(Main.CWD, name).delete();
         }
     }
 
-    /** Prints out all past commits that have ever been made. */
-    public static void gloablLog() {
+    /** Returns all past commits that have ever been made. */
+    public static ArrayList<LogEntry> gloablLog() {
+        int size = CommitIndex.size();
+        ArrayList<LogEntry> result = new ArrayList<>(size);
 
-        for (String name : commits.list()) {
-            Commit commit = Utils.readObject(Utils.join(commits, name),
-                    Commit.class);
-            System.out.println("===");
-            System.out.println("commit " + name);
-            System.out.println("Date: " + new SimpleDateFormat(
-                    "EEE MMM d HH:mm:ss yyyy Z").format(commit.getDate()));
-            System.out.println(commit.getMsg());
-            System.out.println();
+        for (int i = 0; i < size; i++) {
+            result.add(new LogEntry(CommitIndex.id(i),
+                    CommitIndex.timestamp(i), CommitIndex.message(i)));
         }
+        return result;
     }
 
-    /** Prints out the sha1 ID of any commit with the commit message, MSG. */
-    public static void find(String msg) {
-        boolean found = false;
+    /** Returns the sha1 ID of any commit with the commit message, MSG. */
+    public static ArrayList<String> find(String msg) {
+        return found(CommitIndex.exact(msg));
+    }
 
-        for (String name : commits.list()) {
-            Commit commit = Utils.readObject(Utils.join(commits, name),
-                    Commit.class);
-            if (commit.getMsg().equals(msg)) {
-                System.out.println(name);
-                found = true;
-            }
-        }
+    /** Returns the sha1 ID of any commit whose message contains
+     * WORD, ignoring case. */
+    public static ArrayList<String> findWord(String word) {
+        return found(CommitIndex.word(word));
+    }
 
-        if (!found) {
-            Utils.message("Found no commit with that message.");
-            System.exit(0);
+    /** Helper for find that returns the ids of the commit index RECORDS. */
+    private static ArrayList<String> found(ArrayList<Integer> records) {
+        ArrayList<String> result = new ArrayList<>(records.size());
+        for (int record : records) {
+            result.add(CommitIndex.id(record));
         }
+        return result;
     }
 
     /** Creates a new branch named NAME. */
     public static void branch(String name) {
         File branch = Utils.join(refs, name);
         if (branch.exists()) {
-            Utils.message("A branch with that name already exists.");
-            System.exit(0);
+            throw new RejectedException(
+                    "A branch with that name already exists.");
         }
 
-        String sha1Current = Utils.readObject(Utils.join(refs,
-                Utils.readObject(headRef,
+        String sha1Current = Stats.readObject(Utils.join(refs,
+                Stats.readObject(headRef,
                 String.class)), String.class);
-        Utils.writeObject(branch, sha1Current);
+        Durable.Update update = new Durable.Update();
+        update.put(branch, Utils.serialize(sha1Current));
+        update.commit();
     }
 
     /** Reverts to a past commit identified by ID.
      * Also moves to the branch of that commit. */
     public static void reset(String id) {
 
-        File revert = Utils.join(commits, id);
-        String sha1commit = id;
-        if (!revert.exists()) {
-            for (String name : commits.list()) {
-                if (id.equals(name.substring(0, id.length()))) {
-                    revert = Utils.join(commits, name);
-                    sha1commit = name;
-                    break;
-                }
-            }
-            if (!revert.exists()) {
-                Utils.message("No commit with that id exists.");
-                System.exit(0);
-            }
-        }
-        Commit commit = Utils.readObject(revert, Commit.class);
+        String sha1commit = resolveId(id);
+        Commit commit = ObjectStore.readCommit(sha1commit);
+        Commit current = headCommit();
         HashMap<String, String> newFiles = commit.getBlobs();
-        HashMap<String, String> trackedFiles =
-                Utils.readObject(head, Commit.class).getBlobs();
+        HashMap<String, String> trackedFiles = current.getBlobs();
 
-        for (String name : Main.CWD.list(new FileCheck())) {
+        for (String name : workingFiles(trackedFiles, newFiles)) {
             if (!trackedFiles.containsKey(name)
-                    && !Utils.join(stage, name).exists()
-                    && !Utils.sha1(Utils.readContentsAsString(Utils.join(
-                            Main.CWD, name))).equals(newFiles.get(name))) {
-                Utils.message("There is an untracked file in the way;"
-                        + " delete it or add it first.");
-                System.exit(0);
+                    && Stage.staged(name) == null
+                    && !StatCache.sha1(name).equals(newFiles.get(name))) {
+                throw new UntrackedFileException("There is an untracked file"
+                        + " in the way; delete it or add it first.");
             }
         }
 
-        for (String name : newFiles.keySet()) {
-            Utils.writeContents(Utils.join(Main.CWD, name),
-                    Utils.readContents(Utils.join(blobs,
-                            newFiles.get(name))));
-        }
+        Checkout.apply(checkoutPlan(current, commit));
 
-        for (String name : Main.CWD.list(new FileCheck())) {
-            if (!newFiles.containsKey(name)) {
-                Utils.restrictedDelete(Utils.join(Main.CWD, name));
-            }
-        }
+        Durable.Update update = new Durable.Update();
+        update.put(head, CommitCodec.encode(commit));
+        update.put(Utils.join(refs, Stats.readObject(headRef, String.class)),
+                Utils.serialize(sha1commit));
+        Stage.clear();
+        Stage.save(update);
+        update.commit();
 
-        for (File file : stage.listFiles()) {
-            file.delete();
-        }
+    }
 
-        Utils.writeObject(head, commit);
-        File branch = Utils.join(refs, Utils.readObject(headRef, String.class));
-        Utils.writeObject(branch, sha1commit);
+    /** Rewrites every commit stored with Java serialization or with a flat
+     *  map of blobs into the canonical encoding with a tree. Since a
+     *  commit's id is the sha1 of its encoding, every migrated commit and
+     *  all of its descendants get new ids, so parents, branches and HEAD
+     *  are updated to match and the indexes are rebuilt. */
+    public static void migrate() {
+        HashMap<String, String> renamed = new HashMap<>();
+        HashSet<String> old = new HashSet<>();
+        for (String id : ObjectStore.commitIds()) {
+            migrate(id, renamed, old);
+        }
+        if (old.isEmpty()) {
+            return;
+        }
+        Durable.Update update = new Durable.Update();
+        for (String branch : refs.list()) {
+            File ref = Utils.join(refs, branch);
+            String id = Stats.readObject(ref, String.class);
+            update.put(ref, Utils.serialize(renamed.getOrDefault(id, id)));
+        }
+        String tip = Stats.readObject(Utils.join(refs,
+                Stats.readObject(headRef, String.class)), String.class);
+        Commit current = CommitCodec.read(head);
+        Commit migrated = ObjectStore.readCommit(renamed.getOrDefault(tip,
+                tip));
+        update.put(head, CommitCodec.encode(new Commit(migrated.getMsg(),
+                migrated.getBranch(), migrated.getDate(),
+                migrated.getAuthor(), migrated.getParent(),
+                migrated.getParent2(), migrated.getTree(),
+                current.getRms())));
+        update.commit();
+        ObjectStore.deleteCommits(old);
+        CommitIndex.rebuild();
+    }
 
+    /** Migrates commit ID after its ancestors, recording its new id in
+     *  RENAMED and adding it to OLD if it changed. Returns its new id. */
+    private static String migrate(String id, HashMap<String, String> renamed,
+                                  HashSet<String> old) {
+        ArrayDeque<String> todo = new ArrayDeque<>();
+        todo.push(id);
+        while (!todo.isEmpty()) {
+            String next = todo.peek();
+            if (renamed.containsKey(next)) {
+                todo.pop();
+                continue;
+            }
+            Commit commit = ObjectStore.readCommit(next);
+            String p1 = commit.getParent();
+            String p2 = commit.getParent2();
+            if (p1 != null && !renamed.containsKey(p1)) {
+                todo.push(p1);
+            } else if (p2 != null && !renamed.containsKey(p2)) {
+                todo.push(p2);
+            } else {
+                todo.pop();
+                Commit fresh = new Commit(commit.getMsg(),
+                        commit.getBranch(), commit.getDate(),
+                        commit.getAuthor(),
+                        p1 == null ? null : renamed.get(p1),
+                        p2 == null ? null : renamed.get(p2),
+                        Tree.of(commit), commit.getRms());
+                String freshId = CommitCodec.sha1(fresh);
+                if (!freshId.equals(next)) {
+                    ObjectStore.writeCommit(freshId, fresh);
+                    old.add(next);
+                }
+                renamed.put(next, freshId);
+            }
+        }
+        return renamed.get(id);
     }
 
     /** Deletes the branch NAME. */
     public static void rmBranch(String name) {
-        if (Utils.readObject(headRef, String.class).equals(name)) {
-            Utils.message("Cannot remove the current branch.");
-            System.exit(0);
+        if (Stats.readObject(headRef, String.class).equals(name)) {
+            throw new RejectedException("Cannot remove the current branch.");
         }
 
         for (String branch : refs.list()) {
             if (branch.equals(name)) {
-                Utils.join(refs, name).delete();
+                Durable.Update update = new Durable.Update();
+                update.delete(Utils.join(refs, name));
+                update.commit();
                 return;
             }
         }
 
-        Utils.message("A branch with that name does not exist.");
-        System.exit(0);
+        throw new NotFoundException("A branch with that name does not exist.");
     }
 
-    /** Reports the tracking status of files in the working directory. */
-    public static void status() {
-        String currentBranch = Utils.readObject(headRef, String.class);
-        Commit current = Utils.readObject(head, Commit.class);
-        String[] branches = refs.list();
-        lexicoSort(branches, branches.length);
-        String[] staged = stage.list();
-        ArrayList<String> stagedList = new ArrayList<String>();
-        lexicoSort(staged, staged.length);
-        Object[] removed = current.getRms().toArray();
-        ArrayList<String> removedList = new ArrayList<String>();
-        lexicoSort(removed, removed.length);
+    /** Returns the tracking status of files in the working directory. */
+    public static Status status() {
+        String currentBranch = Stats.readObject(headRef, String.class);
+        Commit current = headCommit();
         HashMap<String, String> tracked = current.getBlobs();
+        Map<String, String> staged = Stage.additions();
         ArrayList<String> modefiedList = new ArrayList<String>();
         ArrayList<String> untrackedList = new ArrayList<String>();
-        ArrayList<String> workingList = new ArrayList<String>();
-        listBranches(currentBranch);
-        stagedList = listStaged(stagedList);
-        removedList = listRemoved(removedList, current);
-        System.out.println("=== Modifications Not Staged For Commit ===");
-        for (String name : Main.CWD.list(new FileCheck())) {
-            workingList.add(name);
-            String sha1Wroking = Utils.sha1(
-                    Utils.readContentsAsString(Utils.join(Main.CWD, name)));
-            if (!tracked.containsKey(name) && !stagedList.contains(name)) {
-                untrackedList.add(name);
-            } else if (tracked.containsKey(name)
-                    && !tracked.get(name).equals(sha1Wroking)
-                    && !stagedList.contains(name)) {
-                modefiedList.add(name);
-            }
-        }
-        for (String name : staged) {
-            if (!workingList.contains(name)) {
-                modefiedList.add(name);
-            } else if (!Utils.readObject(Utils.join(stage, name),
-                    String.class).equals(Utils.sha1(Utils.readContentsAsString(
-                            Utils.join(Main.CWD, name))))) {
-                modefiedList.add(name);
+        HashSet<String> workingSet = new HashSet<String>();
+        Stats.Phase phase = Stats.phase("compare");
+        try {
+            for (String name : workingFiles(tracked, staged)) {
+                workingSet.add(name);
+                String sha1Wroking = StatCache.sha1(name);
+                if (!tracked.containsKey(name) && !staged.containsKey(name)) {
+                    untrackedList.add(name);
+                } else if (tracked.containsKey(name)
+                        && !tracked.get(name).equals(sha1Wroking)
+                        && !staged.containsKey(name)) {
+                    modefiedList.add(name);
+                }
             }
-        }
-        for (String name : tracked.keySet()) {
-            if (!workingList.contains(name) && !removedList.contains(name)) {
-                modefiedList.add(name);
+            for (String name : staged.keySet()) {
+                if (!workingSet.contains(name)) {
+                    modefiedList.add(name);
+                } else if (!staged.get(name).equals(StatCache.sha1(name))) {
+                    modefiedList.add(name);
+                }
             }
-        }
-        Object[] modefied = modefiedList.toArray();
-        lexicoSort(modefied, modefied.length);
-
-        for (Object name: modefied) {
-            System.out.println(name);
-        }
-        System.out.println();
-        System.out.println("=== Untracked Files ===");
-        Object[] untracked = untrackedList.toArray();
-        lexicoSort(untracked, untracked.length);
-        for (Object name : untracked) {
-            System.out.println(name);
-        }
-        System.out.println();
-    }
-
-    /** Helper for status that lists all the
-     * branches. includes an * for the CURRENTBRANCH. */
-    public static void listBranches(String currentBranch) {
-        System.out.println("=== Branches ===");
-        for (String name : refs.list()) {
-            if (name.equals(currentBranch)) {
-                System.out.print("*");
+            for (String name : tracked.keySet()) {
+                if (!workingSet.contains(name)
+                        && !Stage.removals().contains(name)) {
+                    modefiedList.add(name);
+                }
             }
-            System.out.println(name);
-        }
-        System.out.println();
-    }
-
-    /** Helper for status that lists all the staged
-     * files. Returns a list of Staged files, STAGEDLIST. */
-    public static ArrayList<String> listStaged(ArrayList<String> stagedList) {
-        System.out.println("=== Staged Files ===");
-        for (String name : stage.list()) {
-            System.out.println(name);
-            stagedList.add(name);
-        }
-        System.out.println();
-        return stagedList;
+        } finally {
+            phase.close();
+        }
+        return new Status(currentBranch, sorted(refs.list()),
+                new ArrayList<>(staged.keySet()),
+                new ArrayList<>(Stage.removals()),
+                sorted(modefiedList.toArray()),
+                sorted(untrackedList.toArray()));
     }
 
-    /** Helper function of status that lists all the
-     * Removed files. Return list REMOVEDLIST. Uses CURRENT commit. */
-    public static ArrayList<String> listRemoved(ArrayList<String> removedList,
-                                                Commit current) {
-        System.out.println("=== Removed Files ===");
-        for (Object name : current.getRms()) {
-            removedList.add((String) name);
-            System.out.println(name);
+    /** Helper for status that returns the strings NAMES as a list in
+     * lexicographic order. */
+    private static ArrayList<String> sorted(Object[] names) {
+        lexicoSort(names, names.length);
+        ArrayList<String> result = new ArrayList<>(names.length);
+        for (Object name : names) {
+            result.add((String) name);
         }
-        System.out.println();
-        return removedList;
+        return result;
     }
 
-
-    /** Merges GIVENBRANCH with the current branch. */
-    public static void merge(String givenBranch) {
+    /** Merges GIVENBRANCH with the current branch and returns how the
+     * merge ended. Each merged file is staged in memory only, and the
+     * stage is written once, along with the merge commit. */
+    public static MergeResult merge(String givenBranch) {
         mergeFailures(givenBranch);
-        Commit split = findSplit(givenBranch);
+        String splitSha1 = findSplit(givenBranch);
         boolean conflict = false;
-        String currentSha1 = Utils.readObject(Utils.join(refs,
-                Utils.readObject(headRef, String.class)), String.class);
-        String currentBranch = Utils.readObject(headRef, String.class);
-        Commit current = Utils.readObject(head, Commit.class);
-        String givenSha1 = Utils.readObject(Utils.join(refs,
+        String currentSha1 = Stats.readObject(Utils.join(refs,
+                Stats.readObject(headRef, String.class)), String.class);
+        String currentBranch = Stats.readObject(headRef, String.class);
+        Commit current = headCommit();
+        String givenSha1 = Stats.readObject(Utils.join(refs,
                 givenBranch), String.class);
-        Commit given = Utils.readObject(Utils.join(commits,
-                givenSha1), Commit.class);
-
-        HashMap<String, String> currentTracked = current.getBlobs();
-        HashMap<String, String> givenTracked = given.getBlobs();
-        HashMap<String, String> splitTracked = split.getBlobs();
+        if (splitSha1.equals(givenSha1)) {
+            return MergeResult.ANCESTOR;
+        } else if (splitSha1.equals(currentSha1)) {
+            reset(givenSha1);
+            return MergeResult.FAST_FORWARD;
+        }
+        Commit split = ObjectStore.readCommit(splitSha1);
+        Commit given = ObjectStore.readCommit(givenSha1);
+
+        HashMap<String, String> currentTracked = new HashMap<>();
+        HashMap<String, String> givenTracked = new HashMap<>();
+        HashMap<String, String> splitTracked = new HashMap<>();
+        String currentTree = Tree.of(current);
+        for (Map.Entry<String, String[]> change : Tree.diff(Tree.of(split),
+                Tree.of(given)).entrySet()) {
+            String name = change.getKey();
+            putIfTracked(splitTracked, name, change.getValue()[0]);
+            putIfTracked(givenTracked, name, change.getValue()[1]);
+            putIfTracked(currentTracked, name, Tree.blob(currentTree, name));
+        }
 
         for (String name : splitTracked.keySet()) {
             if (!givenTracked.containsKey(name) && splitTracked.get(
                     name).equals(currentTracked.get(name))) {
-                rm(name);
+                unstage(name);
             } else if (!splitTracked.get(name).equals(givenTracked.get(name))
                     && splitTracked.get(
                     name).equals(currentTracked.get(name))) {
                 checkoutFile(name, givenSha1);
-                add(name);
+                stageFiles(name);
             } else if (isConf(name, currentTracked,
                     givenTracked, splitTracked)) {
                 conflict = true;
@@ -544,34 +716,35 @@ public class Commands {
             if (!splitTracked.containsKey(name)
                     && !currentTracked.containsKey(name)) {
                 checkoutFile(name, givenSha1);
-                add(name);
+                stageFiles(name);
             } else if (!splitTracked.containsKey(name)
                     && currentTracked.containsKey(name) && !givenTracked.get(
                             name).equals(currentTracked.get(name))) {
-                String cur = Utils.readContentsAsString(Utils.join(blobs,
-                        currentTracked.get(name)));
-                String giv = Utils.readContentsAsString(Utils.join(blobs,
-                        givenTracked.get(name)));
-                Utils.writeContents(Utils.join(Main.CWD, name),
-                        "<<<<<<< HEAD" + cur + "=======" + giv + ">>>>>>>");
-                add(name);
-                conflict = true;
+                conflict |= mergeFile(name, null, currentTracked.get(name),
+                        givenTracked.get(name));
             }
         }
 
         commit("Merged " + givenBranch + " into " + currentBranch
                 + ".", currentSha1, givenSha1);
 
-        if (conflict) {
-            Utils.message("Encountered a merge conflict.");
-            System.exit(0);
-        }
+        return conflict ? MergeResult.CONFLICT : MergeResult.MERGED;
+    }
 
+    /** Helper for merge that maps NAME to the blob SHA1 in TRACKED unless
+     *  SHA1 is null. Merge only needs the files that changed between the
+     *  split point and the given branch, since every other file keeps its
+     *  current version. */
+    private static void putIfTracked(HashMap<String, String> tracked,
+                                     String name, String sha1) {
+        if (sha1 != null) {
+            tracked.put(name, sha1);
+        }
     }
 
-    /** Yet another helper method for merge. Returns true if the file NAME
-     * would result in a conflict with CURRENTTRACKED, GIVENTRACKED, and
-     * SPLITTRACKED.*/
+    /** Yet another helper method for merge. Merges the file NAME line by
+     * line if it changed in both CURRENTTRACKED and GIVENTRACKED since
+     * SPLITTRACKED, and returns true if that left conflicts.*/
     static boolean isConf(String name, HashMap<String, String> currentTracked,
                           HashMap<String, String> givenTracked,
                           HashMap<String, String> splitTracked) {
@@ -585,160 +758,89 @@ public class Commands {
                 && currentTracked.containsKey(name)
                 && !splitTracked.get(name).equals(currentTracked.get(name))
                 && !splitTracked.get(name).equals(givenTracked.get(name)))) {
-            String cur = "";
-            String giv = "";
-            if (givenTracked.containsKey(name)) {
-                giv = Utils.readContentsAsString(Utils.join(blobs,
-                        givenTracked.get(name)));
-            }
-            if (currentTracked.containsKey(name)) {
-                cur = Utils.readContentsAsString(Utils.join(blobs,
-                        currentTracked.get(name)));
-            }
-            Utils.writeContents(Utils.join(Main.CWD, name),
-                    "<<<<<<< HEAD\n" + cur + "=======\n" + giv + ">>>>>>>");
-            add(name);
-            return true;
+            return mergeFile(name, splitTracked.get(name),
+                    currentTracked.get(name), givenTracked.get(name));
         }
         return false;
 
     }
 
+    /** Helper for merge that writes the line by line merge of the blobs
+     * CURRENT and GIVEN, both changed from BASE, into the working file
+     * NAME and stages it. Any of the blobs may be null where the file is
+     * missing. Returns true if the merge left conflicts. */
+    private static boolean mergeFile(String name, String base,
+                                     String current, String given) {
+        File file = Utils.join(Main.CWD, name);
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        boolean conflict;
+        Stats.Phase phase = Stats.phase("merge-files");
+        try (OutputStream out = new BufferedOutputStream(
+                new FileOutputStream(file))) {
+            conflict = Merge3.merge(contents(base), contents(current),
+                    contents(given), out);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot merge %s.", name);
+        } finally {
+            phase.close();
+        }
+        Stats.wrote(file.length());
+        stageFiles(name);
+        return conflict;
+    }
+
+    /** Helper for mergeFile that returns the contents of the blob ID, or
+     * nothing if ID is null. */
+    private static byte[] contents(String id) {
+        return id == null ? new byte[0] : ObjectStore.readBlob(id);
+    }
+
     /** Helper method to merge that returns TRUE if the commands should
      * exit before any execution. Merge is with the branch BRANCH that has
      * a split point at SPLIT. */
     public static void mergeFailures(String branch) {
         if (!Utils.join(refs, branch).exists()) {
-            Utils.message("A branch with that name does not exist.");
-            System.exit(0);
+            throw new NotFoundException(
+                    "A branch with that name does not exist.");
         }
 
-        String currentBranch = Utils.readObject(headRef, String.class);
-        Commit current = Utils.readObject(head, Commit.class);
-        String sha1given = Utils.readObject(Utils.join(refs,
+        String currentBranch = Stats.readObject(headRef, String.class);
+        Commit current = headCommit();
+        String sha1given = Stats.readObject(Utils.join(refs,
                 branch), String.class);
-        Commit given = Utils.readObject(Utils.join(commits,
-                sha1given), Commit.class);
+        Commit given = ObjectStore.readCommit(sha1given);
 
         if (currentBranch.equals(branch)) {
-            Utils.message("Cannot merge a branch with itself.");
-            System.exit(0);
+            throw new RejectedException("Cannot merge a branch with itself.");
         }
 
-        if (stage.list().length + current.getRms().size()
-                + given.getRms().size() > 0) {
-            Utils.message("You have uncommitted changes.");
-            System.exit(0);
+        if (!Stage.isEmpty()) {
+            throw new RejectedException("You have uncommitted changes.");
         }
 
-        HashMap currentTracked = current.getBlobs();
-        HashMap givenTracked = given.getBlobs();
-        for (String name : Main.CWD.list()) {
+        HashMap<String, String> currentTracked = current.getBlobs();
+        HashMap<String, String> givenTracked = given.getBlobs();
+        for (String name : workingFiles(currentTracked, givenTracked)) {
             if (!currentTracked.containsKey(name)) {
                 if (givenTracked.containsKey(name) && !givenTracked.get(
-                        name).equals(Utils.sha1(Utils.readContentsAsString(
-                                Utils.join(Main.CWD, name))))) {
-                    Utils.message("There is an untracked file in the way;"
+                        name).equals(StatCache.sha1(name))) {
+                    throw new UntrackedFileException("There is an"
+                            + " untracked file in the way;"
                             + " delete it or add it first.");
-                    System.exit(0);
                 }
             }
         }
     }
 
-    /** Helper function to merge that returns latest common
-     * ancestor COMMIT between the current branch and GIVENBRANCH. */
-    public static Commit findSplit(String givenBranch) {
-        Commit current = Utils.readObject(head, Commit.class);
-        String givenSha1 = Utils.readObject(Utils.join(refs,
+    /** Helper function to merge that returns the sha1 of the latest common
+     * ancestor between the current branch and GIVENBRANCH. In criss-cross
+     * histories, where there are several, the newest is used. */
+    public static String findSplit(String givenBranch) {
+        String givenSha1 = Stats.readObject(Utils.join(refs,
                 givenBranch), String.class);
-        Commit given = Utils.readObject(Utils.join(commits,
-                givenSha1), Commit.class);
-        String currentSha1 = Utils.readObject(Utils.join(refs, Utils.readObject(
+        String currentSha1 = Stats.readObject(Utils.join(refs, Stats.readObject(
                 headRef, String.class)), String.class);
-
-        if (currentSha1.equals(givenSha1)) {
-            Utils.message("Given branch is an ancestor of the current branch.");
-            System.exit(0);
-        }
-
-        HashSet<String> givenTree = new HashSet<String>();
-        givenTree.add(givenSha1);
-        findAncestors(givenTree, givenSha1);
-        Commit temp = current;
-        String splitSha1 = null;
-        HashMap<Integer, String> splits = new HashMap<Integer, String>();
-        fS(splits, givenTree, currentSha1, 0);
-
-        int min = Integer.MAX_VALUE;
-        for (int x : splits.keySet()) {
-            if (x < min) {
-                min = x;
-            }
-        }
-        splitSha1 = splits.get(min);
-
-        if (splitSha1.equals(givenSha1)) {
-            Utils.message("Given branch is an ancestor of the current branch.");
-            System.exit(0);
-        }
-        if (splitSha1.equals(currentSha1)) {
-            Utils.writeObject(head, temp);
-            Utils.writeObject(Utils.join(refs, Utils.readObject(
-                    headRef, String.class)), splitSha1);
-            Utils.message("Current branch fast-forwarded.");
-            System.exit(0);
-        }
-
-        return Utils.readObject(Utils.join(commits, splitSha1), Commit.class);
-    }
-
-    /** Finds all the ancestors of ID, add them to set,
-     * and returns ANCESTORS. */
-    public static HashSet<String> findAncestors(HashSet<String> ancestors,
-                                                String id) {
-        Commit temp = Utils.readObject(Utils.join(commits, id), Commit.class);
-
-        while (temp.getParent() != null) {
-            ancestors.add(temp.getParent());
-            if (temp.getParent2() != null) {
-                ancestors.add(temp.getParent2());
-                findAncestors(ancestors, temp.getParent2());
-            }
-            temp = Utils.readObject(Utils.join(commits,
-                    temp.getParent()), Commit.class);
-        }
-        return ancestors;
-    }
-
-    /** Finds all the possible splits from ID and returns SPLITS
-     * which contains a DISTANCE. ANCESTORS is something. DIST
-     * is something. */
-    static HashMap<Integer, String> fS(HashMap<Integer, String> splits,
-                                              HashSet<String> ancestors,
-                                              String id,
-                                              int dist) {
-
-        Commit temp = Utils.readObject(head, Commit.class);
-        String splitSha1 = id;
-        while (temp.getParent() != null) {
-            if (ancestors.contains(temp.getParent())) {
-                splits.put(dist + 1, temp.getParent());
-                break;
-            } else if (ancestors.contains(temp.getParent2())) {
-                splits.put(dist + 1, temp.getParent());
-                break;
-            } else {
-                if (temp.getParent2() != null) {
-                    fS(splits, ancestors, temp.getParent2(), dist + 1);
-                }
-                temp = Utils.readObject(Utils.join(commits,
-                        temp.getParent()), Commit.class);
-                dist++;
-            }
-        }
-
-        return splits;
+        return MergeBase.of(currentSha1, givenSha1).get(0);
     }
 
     /** Helper function for status that sorts LIST of length N
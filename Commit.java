@@ -1,6 +1,5 @@
 package gitlet;
 
-import java.io.Serializable;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -8,7 +7,7 @@ import java.util.HashSet;
 /** Commit class.
  * @author Super Stressed McSad
  * */
-public class Commit implements Serializable {
+public class Commit {
 
     /** Creates an initial commit. */
     public Commit() {
@@ -18,7 +17,7 @@ public class Commit implements Serializable {
         _author = "Matt Panec";
         _parent1 = null;
         _parent2 = null;
-        _blobs = new HashMap<>();
+        _tree = Tree.EMPTY;
         _rms = new HashSet<String>();
     }
 
@@ -40,6 +39,21 @@ public class Commit implements Serializable {
 
     }
 
+    /** Creates a commit object like the one above, except that its files
+     *  are those under the tree TREE. */
+    public Commit(String msg, String branch, Date date, String author,
+                  String parent, String parent2, String tree,
+                  HashSet<String> rms) {
+        _msg = msg;
+        _branch = branch;
+        _date = date;
+        _author = author;
+        _parent1 = parent;
+        _parent2 = parent2;
+        _tree = tree;
+        _rms = rms;
+    }
+
     /** Returns branch of commit. */
     public String getBranch() {
         return _branch;
@@ -72,9 +86,30 @@ public class Commit implements Serializable {
 
     /** Returns Hashmap detailing all blobs associated with this commit. */
     public HashMap<String, String> getBlobs() {
+        if (_blobs == null) {
+            if (_flat == null) {
+                _flat = Tree.flatten(_tree);
+            }
+            return _flat;
+        }
         return _blobs;
     }
 
+    /** Returns the sha1 of the blob tracked as NAME, or null. Unlike
+     *  getBlobs, only reads the trees on the way to NAME. */
+    public String blob(String name) {
+        if (_blobs == null && _flat == null) {
+            return Tree.blob(_tree, name);
+        }
+        return getBlobs().get(name);
+    }
+
+    /** Returns the root tree of this commit, or null if it was made before
+     *  trees existed and tracks its files in a flat map instead. */
+    public String getTree() {
+        return _tree;
+    }
+
     /** Returns Hashset containing all the files to be removed. */
     public HashSet<String> getRms() {
         return _rms;
@@ -98,9 +133,17 @@ public class Commit implements Serializable {
     /** Sha1 of the second parent commit. Derived from a merge. */
     private String _parent2;
 
-    /** List of all the files (blobs) that are associated with this commit. */
+    /** List of all the files (blobs) that are associated with this commit,
+     *  for commits made before trees existed. */
     private HashMap<String, String> _blobs;
 
+    /** Sha1 of the root tree of this commit, or null for commits made
+     *  before trees existed. */
+    private String _tree;
+
+    /** The files under _tree, or null before they are needed. */
+    private HashMap<String, String> _flat;
+
     /** List of files to be removed. */
     private HashSet<String> _rms;
 
@@ -0,0 +1,297 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** The canonical binary form of a commit, which is both how commits are
+ *  stored and what their sha1 is taken over. Flat and Java serialized
+ *  commits from older versions are still decoded.
+ *  @author Super Stressed McSad */
+class CommitCodec {
+
+    /** Magic number at the start of every encoded commit. */
+    private static final int MAGIC = 0x47434d54;
+
+    /** Version of commits that track a flat map of blobs. */
+    private static final int FLAT = 1;
+
+    /** Current version of the encoding, for commits with a tree:
+     *  [magic][version][flags][long date][parents][message][branch]
+     *  [author][root tree][removal count][sorted removed names]. */
+    private static final int VERSION = 2;
+
+    /** Flag set when the commit has a first parent. */
+    private static final int HAS_PARENT = 1;
+
+    /** Flag set when the commit has a second parent. */
+    private static final int HAS_PARENT2 = 2;
+
+    /** Returns the sha1 of COMMIT. */
+    static String sha1(Commit commit) {
+        Stats.count(Stats.Counter.HASHES, 1);
+        return Utils.sha1(encode(commit));
+    }
+
+    /** Returns the canonical encoding of COMMIT. */
+    static byte[] encode(Commit commit) {
+        String tree = commit.getTree();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(tree != null
+                ? 128 : 64 + commit.getBlobs().size() * 48);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(bytes))) {
+            out.writeInt(MAGIC);
+            out.writeByte(tree != null ? VERSION : FLAT);
+            int flags = (commit.getParent() == null ? 0 : HAS_PARENT)
+                    | (commit.getParent2() == null ? 0 : HAS_PARENT2);
+            out.writeByte(flags);
+            out.writeLong(commit.getDate().getTime());
+            if (commit.getParent() != null) {
+                out.write(ObjectStore.unhex(commit.getParent()));
+            }
+            if (commit.getParent2() != null) {
+                out.write(ObjectStore.unhex(commit.getParent2()));
+            }
+            writeString(out, commit.getMsg());
+            writeString(out, commit.getBranch());
+            writeString(out, commit.getAuthor());
+            if (tree != null) {
+                out.write(ObjectStore.unhex(tree));
+            } else {
+                TreeMap<String, String> blobs =
+                        new TreeMap<>(commit.getBlobs());
+                out.writeInt(blobs.size());
+                for (Map.Entry<String, String> blob : blobs.entrySet()) {
+                    writeString(out, blob.getKey());
+                    out.write(ObjectStore.unhex(blob.getValue()));
+                }
+            }
+            TreeSet<String> rms = new TreeSet<>(commit.getRms());
+            out.writeInt(rms.size());
+            for (String name : rms) {
+                writeString(out, name);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Internal error encoding commit.");
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Returns the commit stored in the file FILE, such as HEAD. */
+    static Commit read(File file) {
+        byte[] data = Utils.readContents(file);
+        Stats.read(data.length);
+        return decode(data);
+    }
+
+    /** Returns the commit stored as DATA, in either the canonical
+     *  encoding or Java serialization. */
+    static Commit decode(byte[] data) {
+        Stats.count(Stats.Counter.OBJECTS_DECODED, 1);
+        if (isLegacy(data)) {
+            return decodeLegacy(data);
+        }
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(data))) {
+            int version = in.readInt() == MAGIC ? in.readByte() : 0;
+            if (version != VERSION && version != FLAT) {
+                throw Utils.error("Corrupt commit.");
+            }
+            int flags = in.readByte();
+            Date date = new Date(in.readLong());
+            String parent = (flags & HAS_PARENT) == 0 ? null : readSha1(in);
+            String parent2 = (flags & HAS_PARENT2) == 0 ? null
+                    : readSha1(in);
+            String msg = readString(in);
+            String branch = readString(in);
+            String author = readString(in);
+            String tree = null;
+            HashMap<String, String> blobs = null;
+            if (version == VERSION) {
+                tree = readSha1(in);
+            } else {
+                int count = in.readInt();
+                blobs = new HashMap<>(count * 2);
+                for (int i = 0; i < count; i += 1) {
+                    String name = readString(in);
+                    blobs.put(name, readSha1(in));
+                }
+            }
+            HashSet<String> rms = new HashSet<>();
+            for (int count = in.readInt(); count > 0; count -= 1) {
+                rms.add(readString(in));
+            }
+            if (tree != null) {
+                return new Commit(msg, branch, date, author, parent,
+                        parent2, tree, rms);
+            }
+            return new Commit(msg, branch, date, author, parent, parent2,
+                    blobs, rms);
+        } catch (IOException excp) {
+            throw Utils.error("Corrupt commit.");
+        }
+    }
+
+    /** Returns true if DATA is a commit written by Java serialization. */
+    static boolean isLegacy(byte[] data) {
+        return data.length >= 2 && (data[0] & 0xff) == 0xac
+                && (data[1] & 0xff) == 0xed;
+    }
+
+    /** Returns the commit written by Java serialization as DATA. */
+    private static Commit decodeLegacy(byte[] data) {
+        try (ObjectInputStream in = new LegacyInput(data)) {
+            Object read = in.readObject();
+            if (read instanceof TreeLegacy) {
+                return ((TreeLegacy) read).toCommit();
+            } else if (read instanceof FlatLegacy) {
+                return ((FlatLegacy) read).toCommit();
+            }
+        } catch (IOException | ClassNotFoundException excp) {
+            throw Utils.error("Corrupt commit.");
+        }
+        throw Utils.error("Corrupt commit.");
+    }
+
+    /** Writes S to OUT as a length-prefixed UTF-8 string. */
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        byte[] raw = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(raw.length);
+        out.write(raw);
+    }
+
+    /** Reads a length-prefixed UTF-8 string from IN. */
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] raw = new byte[in.readInt()];
+        in.readFully(raw);
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    /** Reads a raw sha1 from IN and returns it in hex. */
+    private static String readSha1(DataInputStream in) throws IOException {
+        byte[] raw = new byte[Pack.SHA1_BYTES];
+        in.readFully(raw);
+        return ObjectStore.hex(raw);
+    }
+
+    /** Reads Java serialized commits, handing back a FlatLegacy or a
+     *  TreeLegacy, whichever has the fields the stream was written
+     *  with, for each gitlet.Commit in it. */
+    private static class LegacyInput extends ObjectInputStream {
+
+        /** Reads the serialized DATA. */
+        LegacyInput(byte[] data) throws IOException {
+            super(new ByteArrayInputStream(data));
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor()
+            throws IOException, ClassNotFoundException {
+            ObjectStreamClass stream = super.readClassDescriptor();
+            if (!stream.getName().equals("gitlet.Commit")) {
+                return stream;
+            }
+            return ObjectStreamClass.lookup(stream.getField("_tree") == null
+                    ? FlatLegacy.class : TreeLegacy.class);
+        }
+    }
+
+    /** A commit as Java serialization wrote it before commits had
+     *  trees. The fields must keep their names and types. */
+    private static class FlatLegacy implements Serializable {
+
+        /** The serialVersionUID Commit had. */
+        private static final long serialVersionUID = -2990117643890742858L;
+
+        /** Returns this commit as a Commit. */
+        Commit toCommit() {
+            return new Commit(_msg, _branch, _date, _author, _parent1,
+                    _parent2, _blobs, _rms);
+        }
+
+        /** Name of the branch of the commit. */
+        private String _branch;
+
+        /** Date of the commit. */
+        private Date _date;
+
+        /** Message of the commit. */
+        private String _msg;
+
+        /** Author of the commit. */
+        private String _author;
+
+        /** Sha1 of the first parent. */
+        private String _parent1;
+
+        /** Sha1 of the second parent. */
+        private String _parent2;
+
+        /** Files tracked, mapped to their blobs. */
+        private HashMap<String, String> _blobs;
+
+        /** Files staged for removal. */
+        private HashSet<String> _rms;
+    }
+
+    /** A commit as Java serialization wrote it once commits had trees,
+     *  which only HEAD still held. The fields must keep their names and
+     *  types. */
+    private static class TreeLegacy implements Serializable {
+
+        /** The serialVersionUID Commit had. */
+        private static final long serialVersionUID = -2990117643890742858L;
+
+        /** Returns this commit as a Commit. */
+        Commit toCommit() {
+            if (_tree == null) {
+                return new Commit(_msg, _branch, _date, _author, _parent1,
+                        _parent2, _blobs, _rms);
+            }
+            return new Commit(_msg, _branch, _date, _author, _parent1,
+                    _parent2, _tree, _rms);
+        }
+
+        /** Name of the branch of the commit. */
+        private String _branch;
+
+        /** Date of the commit. */
+        private Date _date;
+
+        /** Message of the commit. */
+        private String _msg;
+
+        /** Author of the commit. */
+        private String _author;
+
+        /** Sha1 of the first parent. */
+        private String _parent1;
+
+        /** Sha1 of the second parent. */
+        private String _parent2;
+
+        /** Files tracked, mapped to their blobs, or null. */
+        private HashMap<String, String> _blobs;
+
+        /** Sha1 of the root tree, or null. */
+        private String _tree;
+
+        /** Files staged for removal. */
+        private HashSet<String> _rms;
+    }
+}
@@ -0,0 +1,281 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/** The memory-mapped commit graph in .gitlet/commit-graph, which lets
+ *  history be walked without reading commit objects.
+ *  @author Super Stressed McSad */
+class CommitGraph {
+
+    /** The commit graph file. */
+    private static File graph = Utils.join(Main.CWD, ".gitlet",
+            "commit-graph");
+
+    /** Magic number at the start of the graph. */
+    private static final int MAGIC = 0x47434731;
+
+    /** Size of the header. */
+    private static final int HEADER = 8;
+
+    /** Width of a single record: [20 byte sha1][int parent position]
+     *  [int second parent position][int generation][long timestamp]. */
+    private static final int RECORD = Pack.SHA1_BYTES + 20;
+
+    /** Position used for a missing parent. */
+    static final int NONE = -1;
+
+    /** Returns the number of commits in the graph. */
+    static int size() {
+        return open();
+    }
+
+    /** Returns the position of commit ID, or NONE if it is not in the
+     *  graph. Never changes the graph. */
+    static int find(String id) {
+        int count = open();
+        int pos = CommitIds.position(id);
+        if (pos == NONE || pos >= count || !id(pos).equals(id)) {
+            return NONE;
+        }
+        return pos;
+    }
+
+    /** Returns the position of commit ID, adding it and any of its
+     *  ancestors that are missing from the graph. Must not be called
+     *  under a shared lock. */
+    static int position(String id) {
+        int pos = find(id);
+        if (pos != NONE) {
+            return pos;
+        }
+        ArrayDeque<String> todo = new ArrayDeque<>();
+        todo.push(id);
+        while (!todo.isEmpty()) {
+            String next = todo.peek();
+            if (find(next) != NONE) {
+                todo.pop();
+                continue;
+            }
+            Commit commit = ObjectStore.readCommit(next);
+            boolean ready = true;
+            for (String parent : parents(commit)) {
+                if (find(parent) == NONE) {
+                    todo.push(parent);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                todo.pop();
+                append(next, commit);
+            }
+        }
+        return find(id);
+    }
+
+    /** Returns the sha1 of the commit at POS. */
+    static String id(int pos) {
+        byte[] raw = new byte[Pack.SHA1_BYTES];
+        ByteBuffer view = _map.duplicate();
+        view.position(offset(pos));
+        view.get(raw);
+        return ObjectStore.hex(raw);
+    }
+
+    /** Returns the position of the first parent of POS, or NONE. */
+    static int parent(int pos) {
+        return _map.getInt(offset(pos) + Pack.SHA1_BYTES);
+    }
+
+    /** Returns the position of the second parent of POS, or NONE. */
+    static int parent2(int pos) {
+        return _map.getInt(offset(pos) + Pack.SHA1_BYTES + 4);
+    }
+
+    /** Returns the generation of POS. Root commits have generation 1. */
+    static int generation(int pos) {
+        return _map.getInt(offset(pos) + Pack.SHA1_BYTES + 8);
+    }
+
+    /** Returns the commit time of POS in milliseconds. */
+    static long timestamp(int pos) {
+        return _map.getLong(offset(pos) + Pack.SHA1_BYTES + 12);
+    }
+
+    /** Adds COMMIT, whose sha1 is ID, to the end of the graph and the
+     *  commit id table, along with any of its ancestors that are
+     *  missing. Must not be called under a shared lock. */
+    static void append(String id, Commit commit) {
+        checkWritable();
+        if (find(id) != NONE) {
+            return;
+        }
+        int p1 = commit.getParent() == null ? NONE
+                : position(commit.getParent());
+        int p2 = commit.getParent2() == null ? NONE
+                : position(commit.getParent2());
+        int gen = 1;
+        if (p1 != NONE) {
+            gen = Math.max(gen, generation(p1) + 1);
+        }
+        if (p2 != NONE) {
+            gen = Math.max(gen, generation(p2) + 1);
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD);
+        record.put(ObjectStore.unhex(id)).putInt(p1).putInt(p2)
+                .putInt(gen).putLong(commit.getDate().getTime());
+        record.flip();
+        try (FileChannel channel = FileChannel.open(graph.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+            long end = HEADER + (long) _count * RECORD;
+            if (_count == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                header.putInt(MAGIC).putInt(0).flip();
+                channel.write(header, 0);
+            }
+            channel.truncate(end);
+            channel.write(record, end);
+            Stats.wrote(RECORD);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write the commit graph.");
+        }
+        CommitIds.add(id, _count);
+        _count += 1;
+        map();
+    }
+
+    /** Writes the graph afresh from the commits IDS and their ancestors,
+     *  each after its parents, and then the commit id table to match.
+     *  Must not be called under a shared lock. */
+    static void rebuild(List<String> ids) {
+        checkWritable();
+        HashMap<String, Integer> positions = new HashMap<>();
+        ArrayList<Integer> generations = new ArrayList<>();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(graph)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(0);
+            ArrayDeque<String> todo = new ArrayDeque<>();
+            for (String id : ids) {
+                todo.push(id);
+                while (!todo.isEmpty()) {
+                    String next = todo.peek();
+                    if (positions.containsKey(next)) {
+                        todo.pop();
+                        continue;
+                    }
+                    Commit commit = ObjectStore.readCommit(next);
+                    boolean ready = true;
+                    for (String parent : parents(commit)) {
+                        if (!positions.containsKey(parent)) {
+                            todo.push(parent);
+                            ready = false;
+                        }
+                    }
+                    if (!ready) {
+                        continue;
+                    }
+                    todo.pop();
+                    int p1 = commit.getParent() == null ? NONE
+                            : positions.get(commit.getParent());
+                    int p2 = commit.getParent2() == null ? NONE
+                            : positions.get(commit.getParent2());
+                    int gen = 1;
+                    for (int parent : new int[] {p1, p2}) {
+                        if (parent != NONE) {
+                            gen = Math.max(gen,
+                                    generations.get(parent) + 1);
+                        }
+                    }
+                    out.write(ObjectStore.unhex(next));
+                    out.writeInt(p1);
+                    out.writeInt(p2);
+                    out.writeInt(gen);
+                    out.writeLong(commit.getDate().getTime());
+                    positions.put(next, generations.size());
+                    generations.add(gen);
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write the commit graph.");
+        }
+        Stats.wrote(graph.length());
+        _map = null;
+        _count = 0;
+        CommitIds.rebuild();
+    }
+
+    /** Returns the parents of COMMIT, the first one first. */
+    static List<String> parents(Commit commit) {
+        ArrayList<String> result = new ArrayList<>(2);
+        if (commit.getParent() != null) {
+            result.add(commit.getParent());
+        }
+        if (commit.getParent2() != null) {
+            result.add(commit.getParent2());
+        }
+        return result;
+    }
+
+    /** Throws an IllegalStateException if the current thread holds only
+     *  a shared lock, under which the graph must not change. */
+    private static void checkWritable() {
+        if (RepoLock.isShared()) {
+            throw new IllegalStateException(
+                    "Cannot change the commit graph under a shared lock.");
+        }
+    }
+
+    /** Maps the graph if it is not mapped yet or has grown, and returns
+     *  the number of commits in it. */
+    private static int open() {
+        long length = graph.length();
+        if (_map != null && length == HEADER + (long) _count * RECORD) {
+            return _count;
+        }
+        _map = null;
+        _count = 0;
+        if (length >= HEADER) {
+            _count = (int) ((length - HEADER) / RECORD);
+            map();
+            if (_map.getInt(0) != MAGIC) {
+                throw Utils.error("Corrupt commit graph.");
+            }
+        }
+        return _count;
+    }
+
+    /** Memory-maps the first _count records of the graph. */
+    private static void map() {
+        try (FileChannel channel = FileChannel.open(graph.toPath(),
+                StandardOpenOption.READ)) {
+            _map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    HEADER + (long) _count * RECORD);
+            Stats.count(Stats.Counter.FILES_OPENED, 1);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read the commit graph.");
+        }
+    }
+
+    /** Returns the offset of record POS. */
+    private static int offset(int pos) {
+        return HEADER + pos * RECORD;
+    }
+
+    /** The mapped graph. */
+    private static MappedByteBuffer _map;
+
+    /** Number of commits in the graph. */
+    private static int _count;
+}
@@ -0,0 +1,302 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Resolves abbreviated commit ids, and full ones to their commit graph
+ *  positions, through the sorted table in .gitlet/commit-ids and the
+ *  short unsorted tail of ids added since.
+ *  @author Super Stressed McSad */
+class CommitIds {
+
+    /** The sorted id table. */
+    private static File table = Utils.join(Main.CWD, ".gitlet",
+            "commit-ids");
+
+    /** Ids added since the table was last written, where a later record
+     *  for an id replaces an earlier one. */
+    private static File tail = Utils.join(Main.CWD, ".gitlet",
+            "commit-ids.tail");
+
+    /** Magic number at the start of the table. */
+    private static final int MAGIC = 0x47434932;
+
+    /** Magic number of a table of ids without graph positions. */
+    private static final int OLD_MAGIC = 0x47434931;
+
+    /** Size of the table header: magic, count and fan-out. */
+    private static final int HEADER = 8 + 256 * 4;
+
+    /** Width of a single record: [20 byte sha1][int graph position]. */
+    private static final int RECORD = Pack.SHA1_BYTES + 4;
+
+    /** Largest number of ids kept in the tail. */
+    private static final int TAIL_LIMIT = 1024;
+
+    /** Returns up to LIMIT full ids of commits starting with PREFIX, in
+     *  sorted order. */
+    static ArrayList<String> matches(String prefix, int limit) {
+        ArrayList<String> result = new ArrayList<>();
+        prefix = prefix.toLowerCase();
+        if (prefix.length() > Main.SHA1_LENGTH
+                || !prefix.matches("[0-9a-f]*")) {
+            return result;
+        }
+        MappedByteBuffer ids = open();
+        int count = ids.getInt(4);
+        byte[] low = ObjectStore.unhex(pad(prefix));
+        int lo = 0;
+        int hi = count;
+        if (prefix.length() >= 2) {
+            int first = low[0] & 0xff;
+            lo = first == 0 ? 0 : ids.getInt(8 + (first - 1) * 4);
+            hi = ids.getInt(8 + first * 4);
+        }
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareAt(ids, mid, low) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        TreeSet<String> found = new TreeSet<>();
+        for (int i = lo; i < count && found.size() < limit; i += 1) {
+            String id = idAt(ids, i);
+            if (!id.startsWith(prefix)) {
+                break;
+            }
+            found.add(id);
+        }
+        for (String id : readTail().keySet()) {
+            if (id.startsWith(prefix)) {
+                found.add(id);
+            }
+        }
+        for (String id : found) {
+            if (result.size() < limit) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the position in the commit graph recorded for commit
+     *  ID, or CommitGraph.NONE if it has none or is unknown. */
+    static int position(String id) {
+        MappedByteBuffer ids = open();
+        Integer pos = readTail().get(id);
+        if (pos != null) {
+            return pos;
+        }
+        byte[] key = ObjectStore.unhex(id);
+        int first = key[0] & 0xff;
+        int lo = first == 0 ? 0 : ids.getInt(8 + (first - 1) * 4);
+        int hi = ids.getInt(8 + first * 4) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareAt(ids, mid, key);
+            if (cmp == 0) {
+                return ids.getInt(HEADER + mid * RECORD
+                        + Pack.SHA1_BYTES);
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return CommitGraph.NONE;
+    }
+
+    /** Records ID as a commit that exists, at position POS in the commit
+     *  graph, or with no position if POS is CommitGraph.NONE. */
+    static void add(String id, int pos) {
+        open();
+        ByteBuffer record = ByteBuffer.allocate(RECORD);
+        record.put(ObjectStore.unhex(id)).putInt(pos).flip();
+        try (FileChannel channel = FileChannel.open(tail.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            channel.write(record);
+            Stats.wrote(RECORD);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot record commit %s.", id);
+        }
+        if (tail.length() >= (long) TAIL_LIMIT * RECORD) {
+            TreeMap<String, Integer> all = new TreeMap<>();
+            MappedByteBuffer ids = open();
+            for (int i = 0; i < ids.getInt(4); i += 1) {
+                all.put(idAt(ids, i), ids.getInt(HEADER + i * RECORD
+                        + Pack.SHA1_BYTES));
+            }
+            all.putAll(readTail());
+            write(all);
+        }
+    }
+
+    /** Rebuilds the table from every commit in the object store and the
+     *  positions in the commit graph. */
+    static void rebuild() {
+        HashMap<String, Integer> positions = new HashMap<>();
+        for (int pos = 0; pos < CommitGraph.size(); pos += 1) {
+            positions.put(CommitGraph.id(pos), pos);
+        }
+        TreeMap<String, Integer> all = new TreeMap<>();
+        for (String id : ObjectStore.commitIds()) {
+            all.put(id, positions.getOrDefault(id, CommitGraph.NONE));
+        }
+        write(all);
+    }
+
+    /** Returns the mapped table, building it first if there is none or
+     *  it is from a version without graph positions. */
+    private static MappedByteBuffer open() {
+        if (!table.isFile()) {
+            rebuild();
+        }
+        if (_ids == null || _mappedFrom != table.lastModified()
+                || _ids.capacity() != table.length()) {
+            map();
+            _tail = null;
+            if (_ids.getInt(0) == OLD_MAGIC) {
+                rebuild();
+                map();
+            }
+            if (_ids.getInt(0) != MAGIC) {
+                throw Utils.error("Corrupt commit id table.");
+            }
+        }
+        return _ids;
+    }
+
+    /** Memory-maps the table. */
+    private static void map() {
+        try (RandomAccessFile raf = new RandomAccessFile(table, "r")) {
+            Stats.count(Stats.Counter.FILES_OPENED, 1);
+            _ids = raf.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    0, raf.length());
+            _mappedFrom = table.lastModified();
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read the commit id table.");
+        }
+    }
+
+    /** Writes IDS, mapped to their graph positions, as the new table and
+     *  empties the tail. */
+    private static void write(TreeMap<String, Integer> ids) {
+        ByteBuffer out = ByteBuffer.allocate(HEADER
+                + ids.size() * RECORD);
+        out.putInt(MAGIC).putInt(ids.size());
+        int[] fanout = new int[256];
+        for (String id : ids.keySet()) {
+            fanout[Integer.parseInt(id.substring(0, 2), 16)] += 1;
+        }
+        int running = 0;
+        for (int count : fanout) {
+            running += count;
+            out.putInt(running);
+        }
+        for (Map.Entry<String, Integer> id : ids.entrySet()) {
+            out.put(ObjectStore.unhex(id.getKey())).putInt(id.getValue());
+        }
+        File tmp = new File(table.getPath() + ".tmp");
+        Utils.writeContents(tmp, out.array());
+        Stats.wrote(out.capacity());
+        try {
+            Files.move(tmp.toPath(), table.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write the commit id table.");
+        }
+        tail.delete();
+        _ids = null;
+        _tail = null;
+    }
+
+    /** Returns the ids in the tail mapped to their last recorded graph
+     *  positions. The result is kept until the tail or the table changes,
+     *  and must not be changed. */
+    private static HashMap<String, Integer> readTail() {
+        long length = tail.length();
+        long modified = tail.lastModified();
+        if (_tail != null && _tailLength == length
+                && _tailModified == modified) {
+            return _tail;
+        }
+        HashMap<String, Integer> result = new HashMap<>();
+        _tail = result;
+        _tailLength = length;
+        _tailModified = modified;
+        if (length == 0) {
+            return result;
+        }
+        byte[] raw = Utils.readContents(tail);
+        Stats.read(raw.length);
+        ByteBuffer in = ByteBuffer.wrap(raw);
+        byte[] id = new byte[Pack.SHA1_BYTES];
+        while (in.remaining() >= RECORD) {
+            in.get(id);
+            result.put(ObjectStore.hex(id), in.getInt());
+        }
+        return result;
+    }
+
+    /** Compares the id at POS in IDS with the raw sha1 KEY. */
+    private static int compareAt(MappedByteBuffer ids, int pos, byte[] key) {
+        int base = HEADER + pos * RECORD;
+        for (int i = 0; i < Pack.SHA1_BYTES; i += 1) {
+            int a = ids.get(base + i) & 0xff;
+            int b = key[i] & 0xff;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the hex id at POS in IDS. */
+    private static String idAt(MappedByteBuffer ids, int pos) {
+        byte[] raw = new byte[Pack.SHA1_BYTES];
+        ByteBuffer view = ids.duplicate();
+        view.position(HEADER + pos * RECORD);
+        view.get(raw);
+        return ObjectStore.hex(raw);
+    }
+
+    /** Returns PREFIX padded with zeros to the length of a sha1. */
+    private static String pad(String prefix) {
+        StringBuilder result = new StringBuilder(prefix);
+        while (result.length() < Main.SHA1_LENGTH) {
+            result.append('0');
+        }
+        return result.toString();
+    }
+
+    /** The mapped table, or null before it is read. */
+    private static MappedByteBuffer _ids;
+
+    /** Modification time of the table when it was mapped. */
+    private static long _mappedFrom;
+
+    /** The tail as last read, or null if it must be read again. */
+    private static HashMap<String, Integer> _tail;
+
+    /** Length of the tail when it was last read. */
+    private static long _tailLength;
+
+    /** Modification time of the tail when it was last read. */
+    private static long _tailModified;
+}
@@ -0,0 +1,308 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+/** Metadata of every commit, kept in append-only files under .gitlet so
+ *  that log, global-log and find never need to open commit objects.
+ *  @author Super Stressed McSad */
+class CommitIndex {
+
+    /** The fixed width commit records. */
+    private static File meta = Utils.join(Main.CWD, ".gitlet",
+            "commit-meta");
+
+    /** Authors and messages. */
+    private static File text = Utils.join(Main.CWD, ".gitlet",
+            "commit-text");
+
+    /** The word postings, from each word of a message to the records
+     *  whose message contains it. */
+    private static File words = Utils.join(Main.CWD, ".gitlet",
+            "commit-words");
+
+    /** Width of a commit record: [20 byte sha1][long timestamp]
+     *  [long offset into the text file]. */
+    private static final int RECORD = Pack.SHA1_BYTES + 16;
+
+    /** Returns the number of indexed commits. */
+    static int size() {
+        return open();
+    }
+
+    /** Returns the sha1 of record I. */
+    static String id(int i) {
+        byte[] raw = new byte[Pack.SHA1_BYTES];
+        ByteBuffer view = _meta.duplicate();
+        view.position(i * RECORD);
+        view.get(raw);
+        return ObjectStore.hex(raw);
+    }
+
+    /** Returns the timestamp of record I in milliseconds. */
+    static long timestamp(int i) {
+        return _meta.getLong(i * RECORD + Pack.SHA1_BYTES);
+    }
+
+    /** Returns the message of record I. */
+    static String message(int i) {
+        long offset = _meta.getLong(i * RECORD + Pack.SHA1_BYTES + 8);
+        if (_text == null || offset >= _text.capacity()) {
+            try (FileChannel channel = new RandomAccessFile(text, "r")
+                    .getChannel()) {
+                _text = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                        channel.size());
+                Stats.count(Stats.Counter.FILES_OPENED, 1);
+            } catch (IOException excp) {
+                throw Utils.error("Cannot read the commit index.");
+            }
+        }
+        ByteBuffer view = _text.duplicate();
+        view.position((int) offset);
+        view.position(view.position() + 2 + (view.getShort() & 0xffff));
+        byte[] msg = new byte[view.getInt()];
+        view.get(msg);
+        return new String(msg, StandardCharsets.UTF_8);
+    }
+
+    /** Returns the record of commit ID, or -1 if it is not indexed. */
+    static int record(String id) {
+        open();
+        if (_records == null) {
+            _records = new HashMap<>();
+            for (int i = 0; i < _count; i += 1) {
+                _records.put(id(i), i);
+            }
+        }
+        Integer i = _records.get(id);
+        return i == null ? -1 : i;
+    }
+
+    /** Returns the records of every commit whose message is exactly MSG,
+     *  in the order they were made. */
+    static ArrayList<Integer> exact(String msg) {
+        ArrayList<Integer> candidates = null;
+        for (String word : tokens(msg)) {
+            ArrayList<Integer> posting = postings().get(word);
+            if (posting == null) {
+                return new ArrayList<>();
+            }
+            if (candidates == null || posting.size() < candidates.size()) {
+                candidates = posting;
+            }
+        }
+        if (candidates == null) {
+            candidates = new ArrayList<>();
+            for (int i = 0; i < size(); i += 1) {
+                candidates.add(i);
+            }
+        }
+        ArrayList<Integer> result = new ArrayList<>();
+        for (int i : candidates) {
+            if (message(i).equals(msg)) {
+                result.add(i);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the records of every commit whose message contains WORD,
+     *  ignoring case, in the order they were made. */
+    static ArrayList<Integer> word(String word) {
+        ArrayList<Integer> posting = postings().get(word.toLowerCase());
+        return posting == null ? new ArrayList<>() : posting;
+    }
+
+    /** Adds COMMIT, whose sha1 is ID, to the end of the index. */
+    static void append(String id, Commit commit) {
+        open();
+        if (record(id) >= 0) {
+            return;
+        }
+        long offset = text.length();
+        try (DataOutputStream textOut = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(text, true)));
+             DataOutputStream wordsOut = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(words,
+                        true)))) {
+            byte[] msg = commit.getMsg().getBytes(StandardCharsets.UTF_8);
+            textOut.writeUTF(commit.getAuthor());
+            textOut.writeInt(msg.length);
+            textOut.write(msg);
+            for (String word : tokens(commit.getMsg())) {
+                wordsOut.writeUTF(word);
+                wordsOut.writeInt(_count);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write the commit index.");
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD);
+        record.put(ObjectStore.unhex(id)).putLong(commit.getDate().getTime())
+                .putLong(offset);
+        try (FileOutputStream out = new FileOutputStream(meta, true)) {
+            out.getChannel().truncate((long) _count * RECORD);
+            out.write(record.array());
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write the commit index.");
+        }
+        _records.put(id, _count);
+        if (_postings != null) {
+            for (String word : tokens(commit.getMsg())) {
+                _postings.computeIfAbsent(word,
+                    k -> new ArrayList<>()).add(_count);
+            }
+        }
+        _count += 1;
+        map();
+    }
+
+    /** Rebuilds the index, along with the commit graph and the commit id
+     *  table, from every commit in the object store. */
+    static void rebuild() {
+        rebuild(true);
+    }
+
+    /** Rebuilds the index from every commit in the object store, and the
+     *  commit graph and the commit id table as well if GRAPH. */
+    private static void rebuild(boolean graph) {
+        _rebuilding = true;
+        try {
+            forget();
+            meta.delete();
+            text.delete();
+            words.delete();
+            _meta = ByteBuffer.allocate(0);
+            ArrayList<String> ids = ObjectStore.commitIds();
+            HashMap<String, Commit> commits = new HashMap<>();
+            for (String id : ids) {
+                commits.put(id, ObjectStore.readCommit(id));
+            }
+            ids.sort(Comparator.comparing((String id) ->
+                    commits.get(id).getDate()).thenComparing(id -> id));
+            if (graph) {
+                CommitGraph.rebuild(ids);
+            }
+            for (String id : ids) {
+                append(id, commits.get(id));
+            }
+        } finally {
+            _rebuilding = false;
+        }
+    }
+
+    /** Returns the words of MSG, lower case and without repeats. */
+    static LinkedHashSet<String> tokens(String msg) {
+        LinkedHashSet<String> result = new LinkedHashSet<>();
+        for (String word : msg.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                result.add(word);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the word postings, reading them on first use. */
+    private static HashMap<String, ArrayList<Integer>> postings() {
+        open();
+        if (_postings == null) {
+            _postings = new HashMap<>();
+            if (words.isFile()) {
+                try (DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(words)))) {
+                    while (true) {
+                        String word = in.readUTF();
+                        int i = in.readInt();
+                        if (i < _count) {
+                            _postings.computeIfAbsent(word,
+                                k -> new ArrayList<>()).add(i);
+                        }
+                    }
+                } catch (EOFException excp) {
+                    /* End of the postings. */
+                } catch (IOException excp) {
+                    throw Utils.error("Cannot read the commit index.");
+                }
+            }
+        }
+        return _postings;
+    }
+
+    /** Maps the index, rebuilding it if this repository predates it, and
+     *  returns the number of indexed commits. A reader holding a shared
+     *  lock leaves the commit graph alone. */
+    private static int open() {
+        if (!_rebuilding && !meta.isFile()
+                && !ObjectStore.commitIds().isEmpty()) {
+            rebuild(!RepoLock.isShared());
+            return _count;
+        }
+        long length = meta.length();
+        if (_meta == null || length != (long) _count * RECORD) {
+            forget();
+            _count = (int) (length / RECORD);
+            map();
+        }
+        return _count;
+    }
+
+    /** Drops everything read from the index so far. */
+    private static void forget() {
+        _text = null;
+        _meta = null;
+        _records = null;
+        _postings = null;
+        _count = 0;
+    }
+
+    /** Memory-maps the first _count records. */
+    private static void map() {
+        if (!meta.isFile()) {
+            _meta = ByteBuffer.allocate(0);
+            return;
+        }
+        try (FileChannel channel = new RandomAccessFile(meta, "r")
+                .getChannel()) {
+            MappedByteBuffer mapped = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0,
+                    (long) _count * RECORD);
+            Stats.count(Stats.Counter.FILES_OPENED, 1);
+            _meta = mapped;
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read the commit index.");
+        }
+    }
+
+    /** The mapped commit records, or null before they are read. */
+    private static ByteBuffer _meta;
+
+    /** Number of indexed commits. */
+    private static int _count;
+
+    /** Record of each commit, or null before it is needed. */
+    private static HashMap<String, Integer> _records;
+
+    /** Records of each word, or null before they are needed. */
+    private static HashMap<String, ArrayList<Integer>> _postings;
+
+    /** The mapped authors and messages, or null before one is read. */
+    private static MappedByteBuffer _text;
+
+    /** True while the index is being rebuilt. */
+    private static boolean _rebuilding;
+}
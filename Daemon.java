@@ -0,0 +1,135 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/** An opt-in server that runs gitlet commands for one repository, one
+ *  at a time, in a single long lived JVM, so that what it has loaded
+ *  stays warm between commands.
+ *  @author Super Stressed McSad */
+class Daemon {
+
+    /** The Unix domain socket the daemon listens on. A request is
+     *  [int count][UTF argument]... and the reply is [int length]
+     *  [everything the command printed]. */
+    private static File socket = Utils.join(Main.CWD, ".gitlet",
+            "daemon.sock");
+
+    /** Serves commands until a client sends "daemon stop". */
+    static void serve() {
+        SocketChannel other = connect();
+        if (other != null) {
+            try {
+                other.close();
+            } catch (IOException excp) {
+                /* Closing a probe cannot lose anything. */
+            }
+            throw Utils.error("A daemon is already running.");
+        }
+        socket.delete();
+        Thread cleanup = new Thread(socket::delete);
+        Runtime.getRuntime().addShutdownHook(cleanup);
+        try (ServerSocketChannel server = ServerSocketChannel.open(
+                StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket.toPath()));
+            boolean running = true;
+            while (running) {
+                try (SocketChannel client = server.accept()) {
+                    DataInputStream in = new DataInputStream(
+                            Channels.newInputStream(client));
+                    String[] args = new String[in.readInt()];
+                    for (int i = 0; i < args.length; i += 1) {
+                        args[i] = in.readUTF();
+                    }
+                    running = !isStop(args);
+                    byte[] reply = running ? execute(args) : new byte[0];
+                    DataOutputStream out = new DataOutputStream(
+                            Channels.newOutputStream(client));
+                    out.writeInt(reply.length);
+                    out.write(reply);
+                    out.flush();
+                } catch (IOException excp) {
+                    /* The client went away; wait for the next one. */
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot start the daemon.");
+        } finally {
+            socket.delete();
+            Runtime.getRuntime().removeShutdownHook(cleanup);
+        }
+    }
+
+    /** Sends the command ARGS to the running daemon and prints its output.
+     *  Returns false, without running anything, if no daemon is running. */
+    static boolean forward(String... args) {
+        SocketChannel channel = connect();
+        if (channel == null) {
+            return false;
+        }
+        try (channel) {
+            DataOutputStream out = new DataOutputStream(
+                    Channels.newOutputStream(channel));
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            DataInputStream in = new DataInputStream(
+                    Channels.newInputStream(channel));
+            byte[] reply = new byte[in.readInt()];
+            in.readFully(reply);
+            System.out.write(reply);
+            System.out.flush();
+            return true;
+        } catch (IOException excp) {
+            throw Utils.error("Lost the connection to the daemon.");
+        }
+    }
+
+    /** Returns a connection to the running daemon, or null if there is
+     *  none. */
+    private static SocketChannel connect() {
+        if (!socket.exists()) {
+            return null;
+        }
+        try {
+            return SocketChannel.open(UnixDomainSocketAddress.of(
+                    socket.toPath()));
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** Runs the command ARGS in this process and returns everything it
+     *  printed. */
+    static byte[] execute(String... args) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        try {
+            Main.run(args);
+        } catch (RuntimeException excp) {
+            System.out.println(excp.getMessage());
+        } finally {
+            System.setOut(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Returns true if ARGS asks the daemon to stop. */
+    private static boolean isStop(String[] args) {
+        return args.length == 2 && args[0].equals("daemon")
+                && args[1].equals("stop");
+    }
+}
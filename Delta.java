@@ -0,0 +1,176 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+
+/** Copy/insert deltas between two versions of a file, which copy ranges
+ *  of the base or insert literal bytes.
+ *  @author Super Stressed McSad */
+class Delta {
+
+    /** Instruction that inserts literal bytes. */
+    private static final int INSERT = 0;
+
+    /** Instruction that copies a range of the base. */
+    private static final int COPY = 1;
+
+    /** Size of the blocks used to find matches. */
+    private static final int BLOCK = 16;
+
+    /** Multiplier of the rolling hash. */
+    private static final int PRIME = 31;
+
+    /** Returns a delta that turns BASE into TARGET. */
+    static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+        if (base.length < BLOCK || target.length < BLOCK) {
+            insert(out, target, 0, target.length);
+            return out.toByteArray();
+        }
+
+        int[] table = index(base);
+        int mask = table.length - 1;
+        int pow = 1;
+        for (int i = 1; i < BLOCK; i += 1) {
+            pow *= PRIME;
+        }
+        int pending = 0;
+        int i = 0;
+        int hash = hash(target, 0);
+        while (i + BLOCK <= target.length) {
+            int candidate = table[mix(hash) & mask] - 1;
+            int len = candidate < 0 ? 0
+                    : matchLength(base, candidate, target, i);
+            if (len >= BLOCK) {
+                int back = 0;
+                while (i - back > pending && candidate - back > 0
+                        && base[candidate - back - 1]
+                        == target[i - back - 1]) {
+                    back += 1;
+                }
+                insert(out, target, pending, i - back - pending);
+                out.write(COPY);
+                writeVarint(out, candidate - back);
+                writeVarint(out, len + back);
+                i += len;
+                pending = i;
+                if (i + BLOCK <= target.length) {
+                    hash = hash(target, i);
+                }
+            } else {
+                if (i + BLOCK < target.length) {
+                    hash = (hash - target[i] * pow) * PRIME
+                            + target[i + BLOCK];
+                }
+                i += 1;
+            }
+        }
+        insert(out, target, pending, target.length - pending);
+        return out.toByteArray();
+    }
+
+    /** Returns the result of applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = {0};
+        int baseLength = readVarint(delta, pos);
+        if (baseLength != base.length) {
+            throw Utils.error("Delta does not match its base.");
+        }
+        byte[] result = new byte[readVarint(delta, pos)];
+        int at = 0;
+        while (pos[0] < delta.length) {
+            int op = delta[pos[0]++];
+            if (op == COPY) {
+                int offset = readVarint(delta, pos);
+                int len = readVarint(delta, pos);
+                System.arraycopy(base, offset, result, at, len);
+                at += len;
+            } else {
+                int len = readVarint(delta, pos);
+                System.arraycopy(delta, pos[0], result, at, len);
+                pos[0] += len;
+                at += len;
+            }
+        }
+        if (at != result.length) {
+            throw Utils.error("Delta is truncated.");
+        }
+        return result;
+    }
+
+    /** Returns an open addressed table from block hash to one plus the
+     *  offset of the first block of BASE with that hash. */
+    private static int[] index(byte[] base) {
+        int blocks = base.length / BLOCK;
+        int size = Integer.highestOneBit(Math.max(blocks, 1) * 2);
+        int[] table = new int[size];
+        for (int b = 0; b < blocks; b += 1) {
+            int slot = mix(hash(base, b * BLOCK)) & (size - 1);
+            if (table[slot] == 0) {
+                table[slot] = b * BLOCK + 1;
+            }
+        }
+        return table;
+    }
+
+    /** Returns the hash of the BLOCK bytes of DATA starting at START. */
+    private static int hash(byte[] data, int start) {
+        int hash = 0;
+        for (int i = start; i < start + BLOCK; i += 1) {
+            hash = hash * PRIME + data[i];
+        }
+        return hash;
+    }
+
+    /** Spreads the bits of HASH before it is used as a table slot. */
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /** Returns how many bytes of BASE from BSTART match TARGET from
+     *  TSTART. */
+    private static int matchLength(byte[] base, int bStart,
+                                   byte[] target, int tStart) {
+        int len = 0;
+        while (bStart + len < base.length && tStart + len < target.length
+                && base[bStart + len] == target[tStart + len]) {
+            len += 1;
+        }
+        return len;
+    }
+
+    /** Writes an instruction to OUT inserting LEN bytes of DATA from
+     *  START, if there are any. */
+    private static void insert(ByteArrayOutputStream out, byte[] data,
+                               int start, int len) {
+        if (len > 0) {
+            out.write(INSERT);
+            writeVarint(out, len);
+            out.write(data, start, len);
+        }
+    }
+
+    /** Writes the non-negative VALUE to OUT seven bits at a time. */
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /** Reads a varint from DATA at POS[0], advancing POS[0]. */
+    private static int readVarint(byte[] data, int[] pos) {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            int b = data[pos[0]++];
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
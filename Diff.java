@@ -0,0 +1,312 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** Line diffs with Myers' linear space algorithm. Parts that would take
+ *  more than TOO_EXPENSIVE edits are treated as entirely changed, so a
+ *  diff may not be minimal.
+ *  @author Super Stressed McSad */
+class Diff {
+
+    /** Number of edits after which a search gives up on matching the
+     *  rest of its part of the problem. */
+    private static final int TOO_EXPENSIVE = 4096;
+
+    /** The lines of one file, numbered through a shared table so equal
+     *  lines have equal numbers. A line includes its newline, and the
+     *  contents are sliced rather than copied. */
+    static class Lines {
+
+        /** The lines of DATA, numbered through TABLE. */
+        Lines(byte[] data, HashMap<Line, Integer> table) {
+            _data = data;
+            int count = 0;
+            for (byte b : data) {
+                if (b == '\n') {
+                    count += 1;
+                }
+            }
+            if (data.length > 0 && data[data.length - 1] != '\n') {
+                count += 1;
+            }
+            _starts = new int[count + 1];
+            _ids = new int[count];
+            int line = 0;
+            for (int i = 0; i < data.length; i += 1) {
+                if (data[i] == '\n') {
+                    _starts[line + 1] = i + 1;
+                    line += 1;
+                }
+            }
+            _starts[count] = data.length;
+            for (int i = 0; i < count; i += 1) {
+                Line key = new Line(data, _starts[i], _starts[i + 1]);
+                Integer id = table.get(key);
+                if (id == null) {
+                    id = table.size();
+                    table.put(key, id);
+                }
+                _ids[i] = id;
+            }
+        }
+
+        /** Returns the number of lines. */
+        int size() {
+            return _ids.length;
+        }
+
+        /** Returns the numbers of the lines, in order. */
+        int[] ids() {
+            return _ids;
+        }
+
+        /** Returns true if the last line ends without a newline. */
+        boolean unterminated() {
+            return _data.length > 0 && _data[_data.length - 1] != '\n';
+        }
+
+        /** Writes lines FROM up to TO onto OUT. */
+        void write(OutputStream out, int from, int to) throws IOException {
+            out.write(_data, _starts[from], _starts[to] - _starts[from]);
+        }
+
+        /** Contents of the file. */
+        private final byte[] _data;
+
+        /** Offset of each line, and the length of the file last. */
+        private final int[] _starts;
+
+        /** Number of each line. */
+        private final int[] _ids;
+    }
+
+    /** A line of a file, used as a key when numbering lines. */
+    static final class Line {
+
+        /** The bytes of DATA from START up to END. */
+        Line(byte[] data, int start, int end) {
+            _data = data;
+            _start = start;
+            _end = end;
+            int hash = 1;
+            for (int i = start; i < end; i += 1) {
+                hash = 31 * hash + data[i];
+            }
+            _hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Line)) {
+                return false;
+            }
+            Line other = (Line) obj;
+            return _hash == other._hash
+                    && Arrays.equals(_data, _start, _end,
+                            other._data, other._start, other._end);
+        }
+
+        @Override
+        public int hashCode() {
+            return _hash;
+        }
+
+        /** Contents of the whole file. */
+        private final byte[] _data;
+
+        /** Offset of the line. */
+        private final int _start;
+
+        /** Offset just past the line. */
+        private final int _end;
+
+        /** Hash of the line. */
+        private final int _hash;
+    }
+
+    /** Returns, for each line of A, the line of B it is matched with in a
+     *  shortest edit script from A to B, or -1 if it is deleted. Matched
+     *  lines are in increasing order in both. */
+    static int[] matches(int[] a, int[] b) {
+        int[] result = new int[a.length];
+        Arrays.fill(result, -1);
+        int[][] kept = common(a, b);
+        int[] ka = kept[0];
+        int[] kb = kept[1];
+        int[] x = new int[ka.length];
+        int[] y = new int[kb.length];
+        for (int i = 0; i < ka.length; i += 1) {
+            x[i] = a[ka[i]];
+        }
+        for (int i = 0; i < kb.length; i += 1) {
+            y[i] = b[kb[i]];
+        }
+        int[] reduced = new int[x.length];
+        Arrays.fill(reduced, -1);
+        new Diff(x, y, reduced).compare(0, x.length, 0, y.length);
+        for (int i = 0; i < reduced.length; i += 1) {
+            if (reduced[i] >= 0) {
+                result[ka[i]] = kb[reduced[i]];
+            }
+        }
+        return result;
+    }
+
+    /** Returns the positions of the lines of A that also occur in B and
+     *  of the lines of B that also occur in A. */
+    private static int[][] common(int[] a, int[] b) {
+        int max = 0;
+        for (int id : a) {
+            max = Math.max(max, id + 1);
+        }
+        for (int id : b) {
+            max = Math.max(max, id + 1);
+        }
+        boolean[] inA = new boolean[max];
+        boolean[] inB = new boolean[max];
+        for (int id : a) {
+            inA[id] = true;
+        }
+        for (int id : b) {
+            inB[id] = true;
+        }
+        return new int[][] {keep(a, inB), keep(b, inA)};
+    }
+
+    /** Returns the positions of the lines of LINES whose number is marked
+     *  in PRESENT. */
+    private static int[] keep(int[] lines, boolean[] present) {
+        int[] result = new int[lines.length];
+        int count = 0;
+        for (int i = 0; i < lines.length; i += 1) {
+            if (present[lines[i]]) {
+                result[count] = i;
+                count += 1;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /** A search for the matches between A and B, recorded in MATCH. */
+    private Diff(int[] a, int[] b, int[] match) {
+        _a = a;
+        _b = b;
+        _match = match;
+    }
+
+    /** Records the matches between A[ALO:AHI] and B[BLO:BHI]. */
+    private void compare(int aLo, int aHi, int bLo, int bHi) {
+        while (aLo < aHi && bLo < bHi && _a[aLo] == _b[bLo]) {
+            _match[aLo] = bLo;
+            aLo += 1;
+            bLo += 1;
+        }
+        while (aLo < aHi && bLo < bHi && _a[aHi - 1] == _b[bHi - 1]) {
+            aHi -= 1;
+            bHi -= 1;
+            _match[aHi] = bHi;
+        }
+        if (aLo == aHi || bLo == bHi) {
+            return;
+        }
+        int[] split = split(aLo, aHi, bLo, bHi);
+        if (split == null || (split[0] == aLo && split[1] == bLo)
+                || (split[0] == aHi && split[1] == bHi)) {
+            return;
+        }
+        compare(aLo, split[0], bLo, split[1]);
+        compare(split[0], aHi, split[1], bHi);
+    }
+
+    /** Returns a point {x, y} on a shortest edit script from A[ALO:AHI]
+     *  to B[BLO:BHI] where the forward and backward searches meet, or
+     *  null if the two have nothing in common or the search is too
+     *  expensive. */
+    private int[] split(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = Math.min((n + m + 1) / 2, TOO_EXPENSIVE);
+        int off = maxD;
+        int length = 2 * maxD + 2;
+        int[] forward = new int[length];
+        int[] backward = new int[length];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[off + 1] = 0;
+        backward[off + 1] = 0;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int k1start = 0;
+        int k1end = 0;
+        int k2start = 0;
+        int k2end = 0;
+        for (int d = 0; d < maxD; d += 1) {
+            for (int k = -d + k1start; k <= d - k1end; k += 2) {
+                int x = next(forward, off + k, k, d);
+                int y = x - k;
+                while (x < n && y < m && _a[aLo + x] == _b[bLo + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                forward[off + k] = x;
+                if (x > n) {
+                    k1end += 2;
+                } else if (y > m) {
+                    k1start += 2;
+                } else if (odd) {
+                    int back = off + delta - k;
+                    if (back >= 0 && back < length && backward[back] != -1
+                            && x >= n - backward[back]) {
+                        return new int[] {aLo + x, bLo + y};
+                    }
+                }
+            }
+            for (int k = -d + k2start; k <= d - k2end; k += 2) {
+                int x = next(backward, off + k, k, d);
+                int y = x - k;
+                while (x < n && y < m
+                        && _a[aHi - 1 - x] == _b[bHi - 1 - y]) {
+                    x += 1;
+                    y += 1;
+                }
+                backward[off + k] = x;
+                if (x > n) {
+                    k2end += 2;
+                } else if (y > m) {
+                    k2start += 2;
+                } else if (!odd) {
+                    int fore = off + delta - k;
+                    if (fore >= 0 && fore < length && forward[fore] != -1
+                            && forward[fore] >= n - x) {
+                        int fx = forward[fore];
+                        return new int[] {aLo + fx,
+                                          bLo + fx - (fore - off)};
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Returns where the search along diagonal K of the table V, stored at
+     *  index I, starts after D edits: one step on from the neighbouring
+     *  diagonal that got furthest. */
+    private static int next(int[] v, int i, int k, int d) {
+        if (k == -d || (k != d && v[i - 1] < v[i + 1])) {
+            return v[i + 1];
+        }
+        return v[i - 1] + 1;
+    }
+
+    /** Line numbers of the first file. */
+    private final int[] _a;
+
+    /** Line numbers of the second file. */
+    private final int[] _b;
+
+    /** Match of each line of the first file, or -1. */
+    private final int[] _match;
+}
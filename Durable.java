@@ -0,0 +1,461 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/** Crash-safe writes to the .gitlet folder. Each file is written to a
+ *  temporary file and renamed over the old one, and an Update of
+ *  several files goes through a redo journal.
+ *  @author Super Stressed McSad */
+class Durable {
+
+    /** How writes are synced to disk. */
+    enum Mode {
+        /** Never sync. */
+        NONE,
+        /** Sync every file as soon as it is written. */
+        EACH,
+        /** Sync each file before it is renamed into place, and their
+         *  folders in batches, before each Update. */
+        BATCH
+    }
+
+    /** Thrown by a crash injected with crashAfter, standing in for the
+     *  process dying at that point. */
+    static class Crash extends Error {
+        /** Version of the serialized form. */
+        private static final long serialVersionUID = 1L;
+
+        /** A crash after the step numbered STEP. */
+        Crash(int step) {
+            super("Crashed after step " + step + ".");
+        }
+    }
+
+    /** A set of changes to files that are made together: after a crash,
+     *  either all of them are made or none are. */
+    static class Update {
+
+        /** Sets the contents of FILE to the concatenation of PARTS, or
+         *  deletes FILE if PARTS is null. */
+        void put(File file, byte[]... parts) {
+            _files.put(file, parts == null ? null : concat(parts));
+        }
+
+        /** Deletes FILE. */
+        void delete(File file) {
+            _files.put(file, null);
+        }
+
+        /** Runs ACTION once the changes are made. */
+        void then(Runnable action) {
+            _after.add(action);
+        }
+
+        /** Makes the changes, after syncing every file written before
+         *  them. */
+        void commit() {
+            Stats.Phase phase = Stats.phase("write");
+            try {
+                if (_files.size() == 1) {
+                    sync();
+                    Map.Entry<File, byte[]> only = _files.firstEntry();
+                    apply(only.getKey(), only.getValue(),
+                            _mode != Mode.NONE);
+                } else if (!_files.isEmpty()) {
+                    sync();
+                    writeJournal(_files);
+                    for (Map.Entry<File, byte[]> file
+                             : _files.entrySet()) {
+                        apply(file.getKey(), file.getValue(),
+                                _mode == Mode.EACH);
+                    }
+                    sync();
+                    removeJournal();
+                }
+            } finally {
+                phase.close();
+            }
+            for (Runnable action : _after) {
+                action.run();
+            }
+        }
+
+        /** New contents of each file, or null for files to delete. */
+        private final TreeMap<File, byte[]> _files = new TreeMap<>();
+
+        /** Actions run once the changes are made. */
+        private final ArrayList<Runnable> _after = new ArrayList<>();
+    }
+
+    /** Largest number of threads used to sync a batch. */
+    private static final int THREADS = 16;
+
+    /** Batches smaller than this are synced on the calling thread. */
+    private static final int PARALLEL_MIN = 8;
+
+    /** Magic number at the start of the journal. */
+    private static final int MAGIC = 0x474a524e;
+
+    /** The journal of the Update being made. */
+    private static File journal = Utils.join(Main.CWD, ".gitlet",
+            "journal");
+
+    /** Sets the contents of FILE, which is in the .gitlet folder, to the
+     *  concatenation of PARTS through a temporary file, leaving its
+     *  folder to be synced with the next batch. */
+    static void write(File file, byte[]... parts) {
+        move(temp(file, parts), file, _mode == Mode.EACH);
+    }
+
+    /** Renames the finished file TMP over TARGET, leaving its folder to
+     *  be synced with the next batch. */
+    static void move(File tmp, File target) {
+        move(tmp, target, _mode == Mode.EACH);
+    }
+
+    /** Syncs the folder of every file written since the last sync. */
+    static void sync() {
+        Stats.Phase phase = Stats.phase("sync");
+        try {
+            forceAll(drain(PENDING_DIRS), true);
+        } finally {
+            phase.close();
+        }
+    }
+
+    /** Returns true if anything written is still waiting to be
+     *  synced. */
+    static boolean hasPending() {
+        return !PENDING_DIRS.isEmpty();
+    }
+
+    /** Returns true if an Update was cut short by a crash, leaving its
+     *  journal behind. */
+    static boolean unfinished() {
+        return journal.isFile();
+    }
+
+    /** Finishes an Update cut short by a crash, if its journal was
+     *  written in full, and throws the journal away. */
+    static void recover() {
+        if (!journal.isFile()) {
+            return;
+        }
+        TreeMap<File, byte[]> files = readJournal();
+        if (files != null) {
+            for (Map.Entry<File, byte[]> file : files.entrySet()) {
+                apply(file.getKey(), file.getValue(), _mode == Mode.EACH);
+            }
+            sync();
+        }
+        removeJournal();
+    }
+
+    /** Sets the mode to MODE. */
+    static void setMode(Mode mode) {
+        _mode = mode;
+    }
+
+    /** Returns the number of files and folders synced so far. */
+    static long syncs() {
+        return SYNCS.get();
+    }
+
+    /** Makes the next write step numbered STEPS from now throw a Crash,
+     *  or stops injecting crashes if STEPS is zero. */
+    static void crashAfter(int steps) {
+        _crashIn = steps;
+        STEPS.set(0);
+    }
+
+    /** Counts a step that leaves something new on disk, crashing here if
+     *  a crash is due. */
+    private static void step() {
+        int step = STEPS.incrementAndGet();
+        if (step == _crashIn) {
+            _crashIn = 0;
+            throw new Crash(step);
+        }
+    }
+
+    /** Sets FILE to CONTENTS, or deletes it if CONTENTS is null. With
+     *  NOW, the change is synced at once, and otherwise it is left for
+     *  the next sync. */
+    private static void apply(File file, byte[] contents, boolean now) {
+        if (contents != null) {
+            move(temp(file, contents), file, now);
+            return;
+        }
+        file.delete();
+        step();
+        Path dir = file.getAbsoluteFile().getParentFile().toPath();
+        if (now) {
+            force(dir, true);
+        } else if (_mode == Mode.BATCH) {
+            PENDING_DIRS.add(dir);
+        }
+    }
+
+    /** Returns a new temporary file holding the concatenation of PARTS,
+     *  to be renamed to FILE. It is made in the .gitlet folder, on the
+     *  same file system as FILE, rather than beside FILE, so that no
+     *  one listing the branches ever sees it. */
+    private static File temp(File file, byte[]... parts) {
+        File tmp;
+        try {
+            tmp = File.createTempFile("tmp-", null,
+                    journal.getAbsoluteFile().getParentFile());
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                for (byte[] part : parts) {
+                    out.write(part);
+                }
+            }
+            Stats.wrote(tmp.length());
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write %s.", file.getName());
+        }
+        step();
+        return tmp;
+    }
+
+    /** Renames the finished file TMP over TARGET. Unless the mode is
+     *  NONE, TMP is synced first. With NOW the folder is synced after,
+     *  and otherwise it is left for the next batch if there is one. */
+    private static void move(File tmp, File target, boolean now) {
+        if (now || _mode == Mode.BATCH) {
+            force(tmp.toPath(), false);
+        }
+        try {
+            Files.move(tmp.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            tmp.delete();
+            throw Utils.error("Cannot write %s.", target.getName());
+        }
+        step();
+        Path dir = target.getAbsoluteFile().getParentFile().toPath();
+        if (now) {
+            force(dir, true);
+        } else if (_mode == Mode.BATCH) {
+            PENDING_DIRS.add(dir);
+        }
+    }
+
+    /** Writes FILES to the journal and syncs it. */
+    private static void writeJournal(TreeMap<File, byte[]> files) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(files.size());
+            Path root = Main.CWD.toPath();
+            for (Map.Entry<File, byte[]> file : files.entrySet()) {
+                out.writeUTF(root.relativize(file.getKey().toPath())
+                        .toString().replace(File.separatorChar, '/'));
+                byte[] contents = file.getValue();
+                out.writeInt(contents == null ? -1 : contents.length);
+                if (contents != null) {
+                    out.write(contents);
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing the journal.");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        File tmp = new File(journal.getPath() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(file))) {
+            bytes.writeTo(out);
+            out.writeLong(crc.getValue());
+            out.flush();
+            Stats.wrote(out.size());
+            step();
+            if (_mode != Mode.NONE) {
+                file.getFD().sync();
+                SYNCS.incrementAndGet();
+            }
+        } catch (IOException excp) {
+            tmp.delete();
+            throw Utils.error("Cannot write the journal.");
+        }
+        try {
+            Files.move(tmp.toPath(), journal.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            tmp.delete();
+            throw Utils.error("Cannot write the journal.");
+        }
+        step();
+        if (_mode != Mode.NONE) {
+            force(journal.getAbsoluteFile().getParentFile().toPath(), true);
+        }
+    }
+
+    /** Returns the files in the journal mapped to their new contents, or
+     *  null if the journal was not written in full. */
+    private static TreeMap<File, byte[]> readJournal() {
+        byte[] data = Utils.readContents(journal);
+        Stats.read(data.length);
+        if (data.length < 8 + 8) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 8);
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(data))) {
+            in.skipBytes(data.length - 8);
+            if (in.readLong() != crc.getValue()) {
+                return null;
+            }
+        } catch (IOException excp) {
+            return null;
+        }
+        TreeMap<File, byte[]> files = new TreeMap<>();
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(data, 0, data.length - 8))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            for (int count = in.readInt(); count > 0; count -= 1) {
+                File file = Utils.join(Main.CWD, in.readUTF());
+                int length = in.readInt();
+                byte[] contents = null;
+                if (length >= 0) {
+                    contents = new byte[length];
+                    in.readFully(contents);
+                }
+                files.put(file, contents);
+            }
+        } catch (IOException excp) {
+            return null;
+        }
+        return files;
+    }
+
+    /** Deletes the journal and, unless syncing is off, makes sure it
+     *  stays deleted, so that it is never replayed over later changes. */
+    private static void removeJournal() {
+        journal.delete();
+        step();
+        if (_mode != Mode.NONE) {
+            force(journal.getAbsoluteFile().getParentFile().toPath(), true);
+        }
+    }
+
+    /** Returns the paths in SET, removing them from it. */
+    private static ArrayList<Path> drain(Set<Path> set) {
+        ArrayList<Path> result = new ArrayList<>();
+        for (Path path : set) {
+            if (set.remove(path)) {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    /** Syncs each of PATHS, which are folders if DIRS, at once on a pool
+     *  of threads when there are enough of them. */
+    private static void forceAll(ArrayList<Path> paths, boolean dirs) {
+        if (paths.size() < PARALLEL_MIN) {
+            for (Path path : paths) {
+                force(path, dirs);
+            }
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.min(THREADS, paths.size()));
+        try {
+            ArrayList<Future<?>> syncs = new ArrayList<>();
+            for (Path path : paths) {
+                syncs.add(pool.submit(() -> force(path, dirs)));
+            }
+            for (Future<?> sync : syncs) {
+                sync.get();
+            }
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw Utils.error("Cannot sync the repository.");
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw Utils.error("Cannot sync the repository.");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Syncs PATH, a folder if DIR, to disk. A file that has since been
+     *  deleted is skipped, and so is a folder where the platform does not
+     *  allow folders to be synced. */
+    private static void force(Path path, boolean dir) {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)) {
+            channel.force(true);
+            SYNCS.incrementAndGet();
+        } catch (NoSuchFileException excp) {
+            /* Deleted since it was written, so nothing to sync. */
+        } catch (IOException excp) {
+            if (!dir) {
+                throw Utils.error("Cannot sync %s.", path.getFileName());
+            }
+        }
+    }
+
+    /** Returns the concatenation of PARTS. */
+    private static byte[] concat(byte[]... parts) {
+        if (parts.length == 1) {
+            return parts[0];
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    /** Folders of renamed or deleted files, not yet synced. */
+    private static final Set<Path> PENDING_DIRS =
+            ConcurrentHashMap.newKeySet();
+
+    /** Number of files and folders synced. */
+    private static final AtomicLong SYNCS = new AtomicLong();
+
+    /** How writes are synced, chosen by the gitlet.sync property. */
+    private static Mode _mode = Mode.valueOf(System.getProperty(
+            "gitlet.sync", "batch").toUpperCase());
+
+    /** Steps taken since crashes were last set up. */
+    private static final AtomicInteger STEPS = new AtomicInteger();
+
+    /** Step at which to crash, or zero for none. */
+    private static volatile int _crashIn;
+}
@@ -0,0 +1,301 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Checks that every stored object still hashes to its name and that
+ *  every reference leads to a stored object of the right kind. A clean
+ *  check leaves a checkpoint that an incremental check starts from.
+ *  @author Super Stressed McSad */
+class Fsck {
+
+    /** Objects checked by a single task before it splits its share. */
+    private static final int BATCH = 16;
+
+    /** The kinds of object, in the order they are checked. */
+    private static final byte[] TYPES = {Pack.BLOB, Pack.TREE, Pack.COMMIT};
+
+    /** The branches folder. */
+    private static File refs = Utils.join(Main.CWD, ".gitlet", "refs");
+
+    /** The file holding the current commit. */
+    private static File head = Utils.join(Main.CWD, ".gitlet", "HEAD");
+
+    /** The time the last clean check started. */
+    private static File checkpoint = Utils.join(Main.CWD, ".gitlet",
+            "fsck-checkpoint");
+
+    /** Checks every object, or with INCREMENTAL only those written since
+     *  the last clean check, and returns what was found. A check that
+     *  finds nothing wrong moves the checkpoint up to when it started.
+     *  An incremental check with no checkpoint to start from checks
+     *  everything. */
+    static FsckReport run(boolean incremental) {
+        long start = System.currentTimeMillis();
+        long since = 0;
+        if (incremental && checkpoint.isFile()) {
+            since = Stats.readObject(checkpoint, Long.class);
+        }
+        Fsck fsck = new Fsck(since == 0);
+        int checked = 0;
+        for (byte type : TYPES) {
+            LinkedHashSet<String> ids = new LinkedHashSet<>();
+            for (File file : ObjectStore.listLoose(type)) {
+                if (file.getName().length() == Main.SHA1_LENGTH
+                        && file.lastModified() >= since) {
+                    ids.add(file.getName());
+                }
+            }
+            ids.addAll(ObjectStore.packedIds(type, since));
+            fsck.check(type, new ArrayList<>(ids));
+            checked += ids.size();
+        }
+        fsck.referRoots();
+
+        ArrayList<String> missing = fsck.missing();
+        ArrayList<String> dangling = since == 0 ? fsck.dangling()
+                : new ArrayList<>();
+        ArrayList<String> corrupt = new ArrayList<>(fsck._corrupt);
+        corrupt.sort(null);
+        if (corrupt.isEmpty() && missing.isEmpty()) {
+            Durable.write(checkpoint, Utils.serialize(start));
+        }
+        return new FsckReport(checked, since != 0, corrupt, missing,
+                dangling);
+    }
+
+    /** A check of the whole store if FULL, or of new objects only. */
+    private Fsck(boolean full) {
+        _full = full;
+    }
+
+    /** Checks the objects IDS of type TYPE, on a pool of threads when
+     *  there are enough of them. */
+    private void check(byte type, List<String> ids) {
+        if (_full) {
+            stored(type).addAll(ids);
+        }
+        Check all = new Check(type, ids, 0, ids.size());
+        if (ids.size() <= BATCH || WorkingTree.DEFAULT_THREADS == 1) {
+            all.compute();
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(WorkingTree.DEFAULT_THREADS);
+            try {
+                pool.invoke(all);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /** Checks the object ID of type TYPE, recording it as corrupt if it
+     *  cannot be read or does not hash to ID, and recording what it
+     *  refers to otherwise. */
+    private void check(byte type, String id) {
+        String self = kind(type) + " " + id;
+        try {
+            if (type == Pack.BLOB) {
+                if (ObjectStore.hashBlob(id).equals(id)) {
+                    refer(Pack.BLOB, ObjectStore.looseDeltaBase(id), self);
+                    return;
+                }
+            } else {
+                byte[] data = ObjectStore.readStored(id, type);
+                if (Utils.sha1(data).equals(id)) {
+                    if (type == Pack.TREE) {
+                        referEntries(Tree.decode(id, data), self);
+                    } else {
+                        referContents(CommitCodec.decode(data), self);
+                    }
+                    return;
+                }
+            }
+        } catch (RuntimeException excp) {
+            /* An object that cannot be read or decoded is corrupt. */
+        }
+        _corrupt.add(self);
+    }
+
+    /** Records the references from the branches, from HEAD and from the
+     *  stage. */
+    private void referRoots() {
+        for (String branch : refs.list()) {
+            refer(Pack.COMMIT, Stats.readObject(Utils.join(refs, branch),
+                    String.class), "branch " + branch);
+        }
+        referContents(CommitCodec.read(head), "HEAD");
+        for (Map.Entry<String, String> staged
+                 : Stage.additions().entrySet()) {
+            refer(Pack.BLOB, staged.getValue(), "staged " + staged.getKey());
+        }
+    }
+
+    /** Records the parents, tree and blobs of COMMIT as referred to by
+     *  FROM. */
+    private void referContents(Commit commit, String from) {
+        refer(Pack.COMMIT, commit.getParent(), from);
+        refer(Pack.COMMIT, commit.getParent2(), from);
+        if (commit.getTree() != null) {
+            refer(Pack.TREE, commit.getTree(), from);
+        } else {
+            for (String id : commit.getBlobs().values()) {
+                refer(Pack.BLOB, id, from);
+            }
+        }
+    }
+
+    /** Records the subtrees and blobs in the tree ENTRIES as referred to
+     *  by FROM. */
+    private void referEntries(TreeMap<String, String> entries, String from) {
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            refer(entry.getKey().endsWith("/") ? Pack.TREE : Pack.BLOB,
+                    entry.getValue(), from);
+        }
+    }
+
+    /** Records the object ID of type TYPE as referred to by FROM. Does
+     *  nothing if ID is null or the empty tree, which is never stored. */
+    private void refer(byte type, String id, String from) {
+        if (id != null && !(type == Pack.TREE && id.equals(Tree.EMPTY))) {
+            referenced(type).putIfAbsent(id, from);
+        }
+    }
+
+    /** Returns the objects referred to that are not stored, each with
+     *  what refers to it, in sorted order. A full check looks them up
+     *  among the objects it checked, and an incremental one in the
+     *  store. */
+    private ArrayList<String> missing() {
+        ArrayList<String> result = new ArrayList<>();
+        for (byte type : TYPES) {
+            for (Map.Entry<String, String> ref
+                     : referenced(type).entrySet()) {
+                String id = ref.getKey();
+                if (_full ? !stored(type).contains(id)
+                        : !stored(type, id)) {
+                    result.add(kind(type) + " " + id + " (in "
+                            + ref.getValue() + ")");
+                }
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    /** Returns the stored objects that nothing refers to, in sorted
+     *  order. */
+    private ArrayList<String> dangling() {
+        ArrayList<String> result = new ArrayList<>();
+        for (byte type : TYPES) {
+            for (String id : stored(type)) {
+                if (!referenced(type).containsKey(id)) {
+                    result.add(kind(type) + " " + id);
+                }
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    /** Returns true if an object ID of type TYPE is stored. */
+    private static boolean stored(byte type, String id) {
+        switch (type) {
+        case Pack.BLOB:
+            return ObjectStore.hasBlob(id);
+        case Pack.TREE:
+            return ObjectStore.hasTree(id);
+        default:
+            return ObjectStore.hasCommit(id);
+        }
+    }
+
+    /** Returns the name of the kind of object TYPE. */
+    private static String kind(byte type) {
+        switch (type) {
+        case Pack.BLOB:
+            return "blob";
+        case Pack.TREE:
+            return "tree";
+        default:
+            return "commit";
+        }
+    }
+
+    /** Returns the objects of type TYPE checked by a full check. */
+    private Set<String> stored(byte type) {
+        return _stored.get(type - 1);
+    }
+
+    /** Returns the objects of type TYPE referred to, each mapped to the
+     *  first thing found referring to it. */
+    private ConcurrentHashMap<String, String> referenced(byte type) {
+        return _referenced.get(type - 1);
+    }
+
+    /** Checks a range of objects, splitting it in half while it is
+     *  larger than BATCH so idle threads can steal the other half. */
+    private class Check extends RecursiveAction {
+
+        /** Version of the serialized form. */
+        private static final long serialVersionUID = 1L;
+
+        /** Checks the objects IDS of type TYPE from LO up to HI. */
+        Check(byte type, List<String> ids, int lo, int hi) {
+            _type = type;
+            _ids = ids;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > BATCH && getPool() != null) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Check(_type, _ids, _lo, mid),
+                        new Check(_type, _ids, mid, _hi));
+                return;
+            }
+            for (int i = _lo; i < _hi; i += 1) {
+                check(_type, _ids.get(i));
+            }
+        }
+
+        /** Type of the objects. */
+        private byte _type;
+
+        /** All of the objects being checked. */
+        private List<String> _ids;
+
+        /** First object of this range. */
+        private int _lo;
+
+        /** End of this range. */
+        private int _hi;
+    }
+
+    /** Whether every object is being checked. */
+    private final boolean _full;
+
+    /** Objects checked by a full check, by type. */
+    private final List<Set<String>> _stored = List.of(new HashSet<>(),
+            new HashSet<>(), new HashSet<>());
+
+    /** Objects referred to, by type. */
+    private final List<ConcurrentHashMap<String, String>> _referenced =
+            List.of(new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+                    new ConcurrentHashMap<>());
+
+    /** Objects found corrupt. */
+    private final Queue<String> _corrupt = new ConcurrentLinkedQueue<>();
+}
@@ -0,0 +1,69 @@
+package gitlet;
+
+import java.util.Collections;
+import java.util.List;
+
+/** The corrupt, missing and dangling objects found by a check of the
+ *  object store. Every list is sorted and cannot be changed.
+ *  @author Super Stressed McSad */
+public class FsckReport {
+
+    /** The findings of a check of CHECKED objects, only of those written
+     *  since the last checkpoint if INCREMENTAL, that found CORRUPT,
+     *  MISSING and DANGLING objects. */
+    FsckReport(int checked, boolean incremental, List<String> corrupt,
+               List<String> missing, List<String> dangling) {
+        _checked = checked;
+        _incremental = incremental;
+        _corrupt = Collections.unmodifiableList(corrupt);
+        _missing = Collections.unmodifiableList(missing);
+        _dangling = Collections.unmodifiableList(dangling);
+    }
+
+    /** Returns the number of objects checked. */
+    public int getChecked() {
+        return _checked;
+    }
+
+    /** Returns true if only the objects written since the last
+     *  checkpoint were checked. */
+    public boolean isIncremental() {
+        return _incremental;
+    }
+
+    /** Returns the objects that cannot be read or do not match their
+     *  id. */
+    public List<String> getCorrupt() {
+        return _corrupt;
+    }
+
+    /** Returns the objects referred to but not stored. */
+    public List<String> getMissing() {
+        return _missing;
+    }
+
+    /** Returns the objects stored but referred to by nothing. */
+    public List<String> getDangling() {
+        return _dangling;
+    }
+
+    /** Returns true if no object is corrupt or missing. */
+    public boolean isClean() {
+        return _corrupt.isEmpty() && _missing.isEmpty();
+    }
+
+    /** Objects checked. */
+    private final int _checked;
+
+    /** Whether only new objects were checked. */
+    private final boolean _incremental;
+
+    /** Corrupt objects. */
+    private final List<String> _corrupt;
+
+    /** Missing objects. */
+    private final List<String> _missing;
+
+    /** Dangling objects. */
+    private final List<String> _dangling;
+}
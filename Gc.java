@@ -0,0 +1,250 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/** Garbage collection of the loose objects that nothing reachable
+ *  refers to, once they are older than a grace period. Packed objects
+ *  are never removed.
+ *  @author Super Stressed McSad */
+class Gc {
+
+    /** Default time, in milliseconds, for which new loose objects are
+     *  kept even when nothing refers to them. */
+    static final long DEFAULT_GRACE = TimeUnit.DAYS.toMillis(14);
+
+    /** Commits marked by a single task before it splits its share. */
+    private static final int BATCH = 16;
+
+    /** The branches folder. */
+    private static File refs = Utils.join(Main.CWD, ".gitlet", "refs");
+
+    /** The file holding the current commit. */
+    private static File head = Utils.join(Main.CWD, ".gitlet", "HEAD");
+
+    /** Removes the unreachable loose objects written more than GRACE
+     *  milliseconds ago, or only reports what would go if DRYRUN, and
+     *  returns what was removed. The commit indexes are rebuilt if any
+     *  commits go. */
+    static GcReport collect(long grace, boolean dryRun) {
+        long cutoff = System.currentTimeMillis() - grace;
+        Gc gc = new Gc();
+        ArrayList<String> tips = new ArrayList<>();
+        for (String branch : refs.list()) {
+            tips.add(Stats.readObject(Utils.join(refs, branch),
+                    String.class));
+        }
+        Commit current = CommitCodec.read(head);
+        gc.markContents(current);
+        tips.add(current.getParent());
+        tips.add(current.getParent2());
+        for (String id : Stage.additions().values()) {
+            gc.markBlob(id);
+        }
+        for (String id : recent(Pack.COMMIT, cutoff)) {
+            tips.add(id);
+        }
+        for (String id : recent(Pack.TREE, cutoff)) {
+            gc.markTree(id);
+        }
+        for (String id : recent(Pack.BLOB, cutoff)) {
+            gc.markBlob(id);
+        }
+        gc.markCommits(ancestors(tips));
+
+        int commits = gc.sweep(Pack.COMMIT, gc._commits, cutoff, dryRun);
+        int trees = gc.sweep(Pack.TREE, gc._trees, cutoff, dryRun);
+        int blobs = gc.sweep(Pack.BLOB, gc._blobs, cutoff, dryRun);
+        if (commits > 0 && !dryRun) {
+            CommitIndex.rebuild();
+        }
+        return new GcReport(commits, trees, blobs, gc._bytes, dryRun);
+    }
+
+    /** Returns the ids of the loose objects of type TYPE written at or
+     *  after CUTOFF. */
+    private static ArrayList<String> recent(byte type, long cutoff) {
+        ArrayList<String> result = new ArrayList<>();
+        for (File file : ObjectStore.listLoose(type)) {
+            if (file.getName().length() == Main.SHA1_LENGTH
+                    && file.lastModified() >= cutoff) {
+                result.add(file.getName());
+            }
+        }
+        return result;
+    }
+
+    /** Returns the ids of every stored commit in TIPS and all of their
+     *  ancestors, walking the commit graph where it holds them and
+     *  reading the commits it does not. The graph is never changed, so
+     *  it holds nothing the sweep can remove without a rebuild. Null
+     *  tips are skipped. */
+    private static ArrayList<String> ancestors(List<String> tips) {
+        BitSet seen = new BitSet();
+        HashSet<String> read = new HashSet<>();
+        ArrayDeque<Integer> todo = new ArrayDeque<>();
+        ArrayDeque<String> unlisted = new ArrayDeque<>();
+        for (String tip : tips) {
+            if (tip != null && ObjectStore.hasCommit(tip)) {
+                unlisted.push(tip);
+            }
+        }
+        ArrayList<String> result = new ArrayList<>();
+        while (!todo.isEmpty() || !unlisted.isEmpty()) {
+            if (!unlisted.isEmpty()) {
+                String id = unlisted.pop();
+                int pos = CommitGraph.find(id);
+                if (pos != CommitGraph.NONE) {
+                    todo.push(pos);
+                } else if (read.add(id)) {
+                    result.add(id);
+                    unlisted.addAll(CommitGraph.parents(
+                            ObjectStore.readCommit(id)));
+                }
+                continue;
+            }
+            int pos = todo.pop();
+            if (pos == CommitGraph.NONE || seen.get(pos)) {
+                continue;
+            }
+            seen.set(pos);
+            result.add(CommitGraph.id(pos));
+            todo.push(CommitGraph.parent(pos));
+            todo.push(CommitGraph.parent2(pos));
+        }
+        return result;
+    }
+
+    /** Marks the commits IDS and everything they hold, on a pool of
+     *  threads when there are enough of them. */
+    private void markCommits(List<String> ids) {
+        _commits.addAll(ids);
+        Mark all = new Mark(ids, 0, ids.size());
+        if (ids.size() <= BATCH || WorkingTree.DEFAULT_THREADS == 1) {
+            all.compute();
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(WorkingTree.DEFAULT_THREADS);
+            try {
+                pool.invoke(all);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /** Marks the trees and blobs of COMMIT. */
+    private void markContents(Commit commit) {
+        if (commit.getTree() != null) {
+            markTree(commit.getTree());
+        } else {
+            for (String id : commit.getBlobs().values()) {
+                markBlob(id);
+            }
+        }
+    }
+
+    /** Marks the tree ID and everything under it, unless it is marked
+     *  already. */
+    private void markTree(String id) {
+        if (id.equals(Tree.EMPTY) || !_trees.add(id)) {
+            return;
+        }
+        for (Map.Entry<String, String> entry : Tree.read(id).entrySet()) {
+            if (entry.getKey().endsWith("/")) {
+                markTree(entry.getValue());
+            } else {
+                markBlob(entry.getValue());
+            }
+        }
+    }
+
+    /** Marks the blob ID and the chain of loose blobs it is stored as a
+     *  delta against. */
+    private void markBlob(String id) {
+        while (id != null && _blobs.add(id)) {
+            id = ObjectStore.looseDeltaBase(id);
+        }
+    }
+
+    /** Removes the loose objects of type TYPE that are not in LIVE and
+     *  were written before CUTOFF, along with temporary files as old, or
+     *  only counts them if DRYRUN. Returns the number of objects. */
+    private int sweep(byte type, Set<String> live, long cutoff,
+                      boolean dryRun) {
+        int count = 0;
+        for (File file : ObjectStore.listLoose(type)) {
+            String name = file.getName();
+            if (live.contains(name) || file.lastModified() >= cutoff) {
+                continue;
+            }
+            _bytes += file.length();
+            if (name.length() == Main.SHA1_LENGTH) {
+                count += 1;
+                if (!dryRun) {
+                    ObjectStore.deleteLoose(name, type);
+                }
+            } else if (!dryRun) {
+                file.delete();
+            }
+        }
+        return count;
+    }
+
+    /** Marks a range of commits, splitting it in half while it is larger
+     *  than BATCH so idle threads can steal the other half. */
+    private class Mark extends RecursiveAction {
+
+        /** Version of the serialized form. */
+        private static final long serialVersionUID = 1L;
+
+        /** Marks the contents of the commits IDS from LO up to HI. */
+        Mark(List<String> ids, int lo, int hi) {
+            _ids = ids;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > BATCH && getPool() != null) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Mark(_ids, _lo, mid), new Mark(_ids, mid, _hi));
+                return;
+            }
+            for (int i = _lo; i < _hi; i += 1) {
+                markContents(ObjectStore.readCommit(_ids.get(i)));
+            }
+        }
+
+        /** All of the commits being marked. */
+        private List<String> _ids;
+
+        /** First commit of this range. */
+        private int _lo;
+
+        /** End of this range. */
+        private int _hi;
+    }
+
+    /** Reachable commits. */
+    private final Set<String> _commits = ConcurrentHashMap.newKeySet();
+
+    /** Reachable trees. */
+    private final Set<String> _trees = ConcurrentHashMap.newKeySet();
+
+    /** Reachable blobs. */
+    private final Set<String> _blobs = ConcurrentHashMap.newKeySet();
+
+    /** Bytes taken up by the files swept. */
+    private long _bytes;
+}
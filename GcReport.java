@@ -0,0 +1,60 @@
+package gitlet;
+
+/** What a garbage collection removed, or would have removed on a dry
+ *  run: the number of unreachable loose commits, trees and blobs and the
+ *  bytes they took up on disk, including any stale temporary files.
+ *  @author Super Stressed McSad */
+public class GcReport {
+
+    /** A collection that removed, or on a DRYRUN would have removed,
+     *  COMMITS commits, TREES trees and BLOBS blobs taking up BYTES
+     *  bytes. */
+    GcReport(int commits, int trees, int blobs, long bytes,
+             boolean dryRun) {
+        _commits = commits;
+        _trees = trees;
+        _blobs = blobs;
+        _bytes = bytes;
+        _dryRun = dryRun;
+    }
+
+    /** Returns the number of commits removed. */
+    public int getCommits() {
+        return _commits;
+    }
+
+    /** Returns the number of trees removed. */
+    public int getTrees() {
+        return _trees;
+    }
+
+    /** Returns the number of blobs removed. */
+    public int getBlobs() {
+        return _blobs;
+    }
+
+    /** Returns the number of bytes reclaimed. */
+    public long getBytes() {
+        return _bytes;
+    }
+
+    /** Returns true if nothing was actually removed. */
+    public boolean isDryRun() {
+        return _dryRun;
+    }
+
+    /** Commits removed. */
+    private final int _commits;
+
+    /** Trees removed. */
+    private final int _trees;
+
+    /** Blobs removed. */
+    private final int _blobs;
+
+    /** Bytes reclaimed. */
+    private final long _bytes;
+
+    /** Whether this was a dry run. */
+    private final boolean _dryRun;
+}
@@ -0,0 +1,95 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** Streaming sha1 of files, read through a reusable direct buffer or
+ *  memory-mapped, so the heap used does not grow with the file.
+ *  @author Super Stressed McSad */
+class Hashing {
+
+    /** Size of the reusable read buffer. */
+    private static final int BUFFER = 1 << 16;
+
+    /** Files larger than this are memory-mapped rather than read. */
+    private static final long MAP_THRESHOLD = 1 << 20;
+
+    /** Largest region of a file mapped at once. */
+    private static final long MAP_CHUNK = 1 << 28;
+
+    /** Direct read buffer of each thread. */
+    private static final ThreadLocal<ByteBuffer> BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER));
+
+    /** Heap copy of the read buffer of each thread, for teeing. */
+    private static final ThreadLocal<byte[]> COPIES =
+            ThreadLocal.withInitial(() -> new byte[BUFFER]);
+
+    /** Returns the sha1 of the contents of FILE. */
+    static String sha1(File file) {
+        return sha1(file, null);
+    }
+
+    /** Returns the sha1 of the contents of FILE, writing every byte read
+     *  to TEE as well unless it is null. */
+    static String sha1(File file, OutputStream tee) {
+        MessageDigest md = digest();
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            Stats.read(size);
+            Stats.count(Stats.Counter.HASHES, 1);
+            if (tee == null && size > MAP_THRESHOLD) {
+                for (long pos = 0; pos < size; pos += MAP_CHUNK) {
+                    md.update(channel.map(FileChannel.MapMode.READ_ONLY,
+                            pos, Math.min(MAP_CHUNK, size - pos)));
+                }
+            } else {
+                ByteBuffer buffer = BUFFERS.get();
+                byte[] copy = COPIES.get();
+                buffer.clear();
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    int n = buffer.remaining();
+                    buffer.get(copy, 0, n);
+                    md.update(copy, 0, n);
+                    if (tee != null) {
+                        tee.write(copy, 0, n);
+                    }
+                    buffer.clear();
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read %s.", file.getName());
+        }
+        return ObjectStore.hex(md.digest());
+    }
+
+    /** Returns the sha1 of everything left to read from IN. */
+    static String sha1(InputStream in) throws IOException {
+        Stats.count(Stats.Counter.HASHES, 1);
+        MessageDigest md = digest();
+        byte[] buffer = COPIES.get();
+        for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+            md.update(buffer, 0, n);
+        }
+        return ObjectStore.hex(md.digest());
+    }
+
+    /** Returns a fresh sha1 digest. */
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support"
+                    + " SHA-1");
+        }
+    }
+}
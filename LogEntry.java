@@ -0,0 +1,40 @@
+package gitlet;
+
+import java.util.Date;
+
+/** One commit as listed by log, global-log and find.
+ *  @author Super Stressed McSad */
+public class LogEntry {
+
+    /** The commit ID, made at TIMESTAMP milliseconds after the epoch with
+     *  the message MSG. */
+    LogEntry(String id, long timestamp, String msg) {
+        _id = id;
+        _timestamp = timestamp;
+        _msg = msg;
+    }
+
+    /** Returns the sha1 of the commit. */
+    public String getId() {
+        return _id;
+    }
+
+    /** Returns the time the commit was made. */
+    public Date getDate() {
+        return new Date(_timestamp);
+    }
+
+    /** Returns the commit message. */
+    public String getMsg() {
+        return _msg;
+    }
+
+    /** Sha1 of the commit. */
+    private final String _id;
+
+    /** Milliseconds after the epoch at which the commit was made. */
+    private final long _timestamp;
+
+    /** Commit message. */
+    private final String _msg;
+}
@@ -1,19 +1,18 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  @author Super Stressed McSad
  */
 public class Main {
 
-    /** Initial commit when a .gitlet repository is verse instantiated. */
-    public static final Commit INITIAL_COMMIT = new Commit();
-
-    /** Sha1 identifier for the initial commit. */
-    public static final String SHA1_INITIAL_COMMIT =
-            Utils.sha1(Utils.serialize(INITIAL_COMMIT));
-
     /** Current Working Directory. */
     static final File CWD = new File(".");
 
@@ -21,92 +20,321 @@ public class Main {
     public static final int SHA1_LENGTH = 40;
 
     /** Usage: java gitlet.Main ARGS, where ARGS contains
-     *  <COMMAND> <OPERAND> .... */
+     *  [--stats] [--metrics=FILE] <COMMAND> <OPERAND> .... Commands are
+     *  handed to the daemon for this repository when one is running.
+     *  "daemon" starts one, and "daemon stop" stops it. "batch" runs a
+     *  script of commands in this process, as described in Batch. */
     public static void main(String... args) {
         if (args.length == 0) {
             Utils.message("Please enter a command.");
             System.exit(0);
-        } else if (args[0].compareTo("init") == 0) {
-            checkArgs(1, args);
-            Commands.init();
-        } else if (!Utils.join(CWD, ".gitlet").exists()) {
-            Utils.message("Not in an initialized gitlet directory.");
-            System.exit(0);
-        } else {
-            runCommand(args);
+        } else if (args[0].equals("daemon")
+                && Utils.join(CWD, ".gitlet").exists()) {
+            if (args.length == 1) {
+                try {
+                    Daemon.serve();
+                } catch (GitletException excp) {
+                    System.out.println(excp.getMessage());
+                }
+            } else if (!Daemon.forward(args)) {
+                Utils.message("No daemon is running.");
+            }
+        } else if (args[0].equals("batch")) {
+            try {
+                if (Batch.run(Arrays.copyOfRange(args, 1, args.length))
+                        > 0) {
+                    System.exit(1);
+                }
+            } catch (GitletException excp) {
+                System.out.println(excp.getMessage());
+                System.exit(1);
+            }
+        } else if (args[0].equals("init")
+                || !Daemon.forward(args)) {
+            run(args);
+        }
+    }
+
+    /** Runs the command in ARGS in this process, printing the message of
+     *  the error it ends with, if any. ARGS may start with --stats, to
+     *  print how long each phase of the command took and how much I/O it
+     *  did once it is done, and with --metrics=FILE, to write the same
+     *  as JSON to FILE. */
+    static void run(String... args) {
+        boolean stats = false;
+        File metrics = null;
+        int first = 0;
+        for (; first < args.length && args[first].startsWith("--");
+             first += 1) {
+            if (args[first].equals("--stats")) {
+                stats = true;
+            } else if (args[first].startsWith("--metrics=")) {
+                metrics = new File(args[first].substring(
+                        "--metrics=".length()));
+            } else {
+                break;
+            }
+        }
+        if (first == args.length) {
+            Utils.message("Please enter a command.");
+            return;
+        }
+        args = Arrays.copyOfRange(args, first, args.length);
+        Stats.start(args[0], stats, metrics);
+        try {
+            if (args[0].compareTo("init") == 0) {
+                checkArgs(1, args);
+                Repository.init().close();
+            } else {
+                try (Repository repo = Repository.open()) {
+                    runCommand(repo, args);
+                }
+            }
+        } catch (GitletException excp) {
+            System.out.println(excp.getMessage());
+        } finally {
+            Stats.finish();
         }
     }
 
     /** Helper function to determine which command
-     * should be run based on ARGS. */
-    private static void runCommand(String... args) {
+     * should be run on REPO based on ARGS. */
+    private static void runCommand(Repository repo, String... args) {
 
         switch (args[0]) {
         case "add":
-            checkArgs(2, args);
-            Commands.add(args[1]);
+            if (args.length < 2) {
+                throw Utils.error("Incorrect operands.");
+            }
+            repo.add(Arrays.copyOfRange(args, 1, args.length));
             break;
         case "commit":
             checkArgs(2, args);
-            Commands.commit(args[1], null, null);
+            repo.commit(args[1]);
             break;
         case "checkout":
-            checkoutdecider(args);
+            checkoutdecider(repo, args);
             break;
         case "log":
             checkArgs(1, args);
-            Commands.log();
+            printLog(repo.log());
             break;
         case "rm":
             checkArgs(2, args);
-            Commands.rm(args[1]);
+            repo.rm(args[1]);
             break;
         case "global-log":
             checkArgs(1, args);
-            Commands.gloablLog();
+            printLog(repo.globalLog());
             break;
         case "find":
-            checkArgs(2, args);
-            Commands.find(args[1]);
+            if (args.length == 3 && args[1].equals("--word")) {
+                printFound(repo.findWord(args[2]));
+            } else {
+                checkArgs(2, args);
+                printFound(repo.find(args[1]));
+            }
             break;
         case "branch":
             checkArgs(2, args);
-            Commands.branch(args[1]);
+            repo.branch(args[1]);
             break;
         case "reset":
             checkArgs(2, args);
-            Commands.reset(args[1]);
+            repo.reset(args[1]);
             break;
         case "rm-branch":
             checkArgs(2, args);
-            Commands.rmBranch(args[1]);
+            repo.rmBranch(args[1]);
             break;
         case "status":
             checkArgs(1, args);
-            Commands.status();
+            printStatus(repo.status());
             break;
         case "merge":
             checkArgs(2, args);
-            Commands.merge(args[1]);
+            printMerge(repo.merge(args[1]));
+            break;
+        case "diff":
+            diffdecider(repo, args);
+            break;
+        case "gc":
+            gcdecider(repo, args);
+            break;
+        case "fsck":
+            if (args.length == 2 && args[1].equals("--incremental")) {
+                printFsck(repo.fsck(true));
+            } else {
+                checkArgs(1, args);
+                printFsck(repo.fsck(false));
+            }
+            break;
+        case "repack":
+            checkArgs(1, args);
+            exclusively(ObjectStore::repack);
+            break;
+        case "migrate":
+            checkArgs(1, args);
+            exclusively(Commands::migrate);
+            break;
+        case "reindex":
+            checkArgs(1, args);
+            exclusively(CommitIndex::rebuild);
             break;
         default:
             Utils.message("No command with that name exists."); }
     }
 
-    /** Helper function to decide with checkout to call based on ARGS. */
-    private static void checkoutdecider(String... args) {
+    /** Runs ACTION while holding the repository's exclusive lock. */
+    private static void exclusively(Runnable action) {
+        RepoLock lock = RepoLock.exclusive();
+        try {
+            action.run();
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Helper function to decide with checkout to call on REPO based on
+     *  ARGS. */
+    private static void checkoutdecider(Repository repo, String... args) {
         if (args.length == 2) {
-            Commands.checkoutBranch(args[1]);
+            repo.checkout(args[1]);
         } else if (args.length == 3 && args[1].equals("--")) {
-            Commands.checkoutFile(args[2], null);
+            repo.checkoutFile(args[2], null);
         } else if (args.length == 4 && args[2].equals("--")
                 && args[1].length() <= SHA1_LENGTH) {
-            Commands.checkoutFile(args[3], args[1]);
+            repo.checkoutFile(args[3], args[1]);
         } else {
             Utils.message("Incorrect operands.");
         }
     }
 
+    /** Helper function to decide which diff to show from REPO based on
+     *  ARGS: the working files against the stage, the stage against the
+     *  current commit with --staged, or one commit against another. */
+    private static void diffdecider(Repository repo, String... args) {
+        OutputStream out = new BufferedOutputStream(System.out);
+        if (args.length == 1) {
+            repo.diff(out);
+        } else if (args.length == 2 && args[1].equals("--staged")) {
+            repo.diffStaged(out);
+        } else if (args.length == 3) {
+            repo.diff(args[1], args[2], out);
+        } else {
+            throw Utils.error("Incorrect operands.");
+        }
+    }
+
+    /** Helper function to run gc on REPO with the options in ARGS:
+     *  --dry-run to only report what would be removed, and --grace=DAYS
+     *  to keep unreachable objects younger than DAYS days. */
+    private static void gcdecider(Repository repo, String... args) {
+        boolean dryRun = false;
+        long grace = Gc.DEFAULT_GRACE;
+        for (int i = 1; i < args.length; i += 1) {
+            if (args[i].equals("--dry-run")) {
+                dryRun = true;
+            } else if (args[i].startsWith("--grace=")) {
+                try {
+                    grace = TimeUnit.DAYS.toMillis(Long.parseLong(
+                            args[i].substring("--grace=".length())));
+                } catch (NumberFormatException excp) {
+                    throw Utils.error("Incorrect operands.");
+                }
+            } else {
+                throw Utils.error("Incorrect operands.");
+            }
+        }
+        GcReport report = repo.gc(grace, dryRun);
+        System.out.println((report.isDryRun() ? "Would remove " : "Removed ")
+                + report.getCommits() + " commits, " + report.getTrees()
+                + " trees and " + report.getBlobs() + " blobs, "
+                + report.getBytes() + " bytes.");
+    }
+
+    /** Prints the findings in REPORT, one object to a line, and the
+     *  number of objects checked. */
+    private static void printFsck(FsckReport report) {
+        for (String object : report.getCorrupt()) {
+            System.out.println("corrupt " + object);
+        }
+        for (String object : report.getMissing()) {
+            System.out.println("missing " + object);
+        }
+        for (String object : report.getDangling()) {
+            System.out.println("dangling " + object);
+        }
+        System.out.println("Checked " + report.getChecked() + " objects.");
+    }
+
+    /** Prints the commits in ENTRIES as log does. */
+    private static void printLog(List<LogEntry> entries) {
+        SimpleDateFormat format = new SimpleDateFormat(
+                "EEE MMM d HH:mm:ss yyyy Z");
+        for (LogEntry entry : entries) {
+            System.out.println("===");
+            System.out.println("commit " + entry.getId());
+            System.out.println("Date: " + format.format(entry.getDate()));
+            System.out.println(entry.getMsg());
+            System.out.println();
+        }
+    }
+
+    /** Prints the commit IDS found by find. */
+    private static void printFound(List<String> ids) {
+        if (ids.isEmpty()) {
+            System.out.println("Found no commit with that message.");
+        }
+        for (String id : ids) {
+            System.out.println(id);
+        }
+    }
+
+    /** Prints STATUS under the headings of the status command. */
+    private static void printStatus(Status status) {
+        System.out.println("=== Branches ===");
+        for (String name : status.getBranches()) {
+            if (name.equals(status.getBranch())) {
+                System.out.print("*");
+            }
+            System.out.println(name);
+        }
+        System.out.println();
+        printSection("Staged Files", status.getStaged());
+        printSection("Removed Files", status.getRemoved());
+        printSection("Modifications Not Staged For Commit",
+                status.getModified());
+        printSection("Untracked Files", status.getUntracked());
+    }
+
+    /** Prints the NAMES in one section of status under HEADING. */
+    private static void printSection(String heading, List<String> names) {
+        System.out.println("=== " + heading + " ===");
+        for (String name : names) {
+            System.out.println(name);
+        }
+        System.out.println();
+    }
+
+    /** Prints the message for a merge that ended with RESULT. */
+    private static void printMerge(MergeResult result) {
+        switch (result) {
+        case CONFLICT:
+            System.out.println("Encountered a merge conflict.");
+            break;
+        case ANCESTOR:
+            System.out.println(
+                    "Given branch is an ancestor of the current branch.");
+            break;
+        case FAST_FORWARD:
+            System.out.println("Current branch fast-forwarded.");
+            break;
+        default:
+            break;
+        }
+    }
+
     /** A check to ensure that N number of ARGS are used for a command. */
     private static void checkArgs(int n, String... args) {
         if (args.length != n) {
@@ -0,0 +1,141 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/** Line by line three-way merges in the style of diff3, written
+ *  straight to a stream. A stretch changed differently on both sides is
+ *  a conflict, written between markers with the current version first.
+ *  @author Super Stressed McSad */
+class Merge3 {
+
+    /** Marker before the current version of a conflict. */
+    private static final byte[] OURS =
+            "<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8);
+
+    /** Marker between the two versions of a conflict. */
+    private static final byte[] SEPARATOR =
+            "=======\n".getBytes(StandardCharsets.UTF_8);
+
+    /** Marker after the given version of a conflict. */
+    private static final byte[] THEIRS =
+            ">>>>>>>\n".getBytes(StandardCharsets.UTF_8);
+
+    /** Writes the merge of OURS and THEIRS, both changed from BASE, onto
+     *  OUT. Returns true if there were conflicts. */
+    static boolean merge(byte[] base, byte[] ours, byte[] theirs,
+                         OutputStream out) throws IOException {
+        return new Merge3(base, ours, theirs).write(out);
+    }
+
+    /** A merge of OURS and THEIRS, both changed from BASE. */
+    private Merge3(byte[] base, byte[] ours, byte[] theirs) {
+        HashMap<Diff.Line, Integer> table = new HashMap<>();
+        _base = new Diff.Lines(base, table);
+        _ours = new Diff.Lines(ours, table);
+        _theirs = new Diff.Lines(theirs, table);
+        _toOurs = Diff.matches(_base.ids(), _ours.ids());
+        _toTheirs = Diff.matches(_base.ids(), _theirs.ids());
+    }
+
+    /** Writes the merge onto OUT and returns true if there were
+     *  conflicts. */
+    private boolean write(OutputStream out) throws IOException {
+        boolean conflict = false;
+        int o = 0;
+        int a = 0;
+        int b = 0;
+        int size = _base.size();
+        while (true) {
+            int i = 0;
+            while (o + i < size && _toOurs[o + i] == a + i
+                    && _toTheirs[o + i] == b + i) {
+                i += 1;
+            }
+            if (i > 0) {
+                _base.write(out, o, o + i);
+                o += i;
+                a += i;
+                b += i;
+                continue;
+            }
+            int next = o;
+            while (next < size
+                    && (_toOurs[next] < 0 || _toTheirs[next] < 0)) {
+                next += 1;
+            }
+            int aEnd = next < size ? _toOurs[next] : _ours.size();
+            int bEnd = next < size ? _toTheirs[next] : _theirs.size();
+            if (o == next && a == aEnd && b == bEnd) {
+                return conflict;
+            }
+            conflict |= resolve(out, o, next, a, aEnd, b, bEnd);
+            o = next;
+            a = aEnd;
+            b = bEnd;
+        }
+    }
+
+    /** Writes the merge of the unstable stretch BASE[O:OEND],
+     *  OURS[A:AEND], THEIRS[B:BEND] onto OUT and returns true if it is a
+     *  conflict. */
+    private boolean resolve(OutputStream out, int o, int oEnd, int a,
+                            int aEnd, int b, int bEnd) throws IOException {
+        if (same(_base, o, oEnd, _ours, a, aEnd)
+                || same(_ours, a, aEnd, _theirs, b, bEnd)) {
+            _theirs.write(out, b, bEnd);
+            return false;
+        } else if (same(_base, o, oEnd, _theirs, b, bEnd)) {
+            _ours.write(out, a, aEnd);
+            return false;
+        }
+        out.write(OURS);
+        _ours.write(out, a, aEnd);
+        terminate(out, _ours, aEnd);
+        out.write(SEPARATOR);
+        _theirs.write(out, b, bEnd);
+        terminate(out, _theirs, bEnd);
+        out.write(THEIRS);
+        return true;
+    }
+
+    /** Returns true if the lines X[XLO:XHI] equal the lines Y[YLO:YHI]. */
+    private static boolean same(Diff.Lines x, int xLo, int xHi,
+                                Diff.Lines y, int yLo, int yHi) {
+        if (xHi - xLo != yHi - yLo) {
+            return false;
+        }
+        for (int i = 0; i < xHi - xLo; i += 1) {
+            if (x.ids()[xLo + i] != y.ids()[yLo + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Writes a newline to OUT if END is the end of FILE and FILE lacks
+     *  a final newline, so that a marker after it starts its own line. */
+    private static void terminate(OutputStream out, Diff.Lines file,
+                                  int end) throws IOException {
+        if (end == file.size() && end > 0 && file.unterminated()) {
+            out.write('\n');
+        }
+    }
+
+    /** The common base. */
+    private final Diff.Lines _base;
+
+    /** The current version. */
+    private final Diff.Lines _ours;
+
+    /** The given version. */
+    private final Diff.Lines _theirs;
+
+    /** Line of the current version matching each base line, or -1. */
+    private final int[] _toOurs;
+
+    /** Line of the given version matching each base line, or -1. */
+    private final int[] _toTheirs;
+}
@@ -0,0 +1,188 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.PriorityQueue;
+
+/** Finds the best common ancestors of two commits, those that are not
+ *  ancestors of any other common ancestor, by walking both sides at
+ *  once, newest generation first.
+ *  @author Super Stressed McSad */
+class MergeBase {
+
+    /** A commit graph whose commits are positions from 0 up to size,
+     *  with parents always at lower positions than their children. */
+    interface Graph {
+
+        /** Returns the number of commits. */
+        int size();
+
+        /** Returns the position of the first parent of POS, or NONE. */
+        int parent(int pos);
+
+        /** Returns the position of the second parent of POS, or NONE. */
+        int parent2(int pos);
+
+        /** Returns the generation of POS, which is greater than the
+         *  generation of each of its parents. */
+        int generation(int pos);
+
+        /** Returns the commit time of POS. */
+        long timestamp(int pos);
+    }
+
+    /** Position used for a missing parent. */
+    static final int NONE = CommitGraph.NONE;
+
+    /** The commit graph of the repository. */
+    static final Graph COMMITS = new Graph() {
+        @Override
+        public int size() {
+            return CommitGraph.size();
+        }
+
+        @Override
+        public int parent(int pos) {
+            return CommitGraph.parent(pos);
+        }
+
+        @Override
+        public int parent2(int pos) {
+            return CommitGraph.parent2(pos);
+        }
+
+        @Override
+        public int generation(int pos) {
+            return CommitGraph.generation(pos);
+        }
+
+        @Override
+        public long timestamp(int pos) {
+            return CommitGraph.timestamp(pos);
+        }
+    };
+
+    /** Returns the ids of the best common ancestors of the commits ONE
+     *  and TWO, newest first. */
+    static ArrayList<String> of(String one, String two) {
+        Stats.Phase phase = Stats.phase("merge-base");
+        try {
+            int a = CommitGraph.position(one);
+            int b = CommitGraph.position(two);
+            ArrayList<String> result = new ArrayList<>();
+            for (int pos : of(COMMITS, a, b)) {
+                result.add(CommitGraph.id(pos));
+            }
+            return result;
+        } finally {
+            phase.close();
+        }
+    }
+
+    /** Returns the positions of the best common ancestors of A and B in
+     *  GRAPH, newest first. */
+    static ArrayList<Integer> of(Graph graph, int a, int b) {
+        ArrayList<Integer> result = new ArrayList<>();
+        if (a == b) {
+            result.add(a);
+            return result;
+        }
+        Walk walk = new Walk(graph);
+        walk.mark(a, ONE);
+        walk.mark(b, TWO);
+        while (walk._active > 0) {
+            int pos = walk._queue.poll();
+            int flags = walk.flags(pos);
+            if ((flags & STALE) == 0) {
+                walk._active -= 1;
+            }
+            if ((flags & BOTH) == BOTH && (flags & STALE) == 0) {
+                result.add(pos);
+                flags |= STALE;
+            }
+            walk.mark(graph.parent(pos), flags);
+            walk.mark(graph.parent2(pos), flags);
+        }
+        return result;
+    }
+
+    /** Mark of the ancestors of the first commit. */
+    private static final int ONE = 1;
+
+    /** Mark of the ancestors of the second commit. */
+    private static final int TWO = 2;
+
+    /** Marks of the common ancestors. */
+    private static final int BOTH = ONE | TWO;
+
+    /** Mark of the ancestors of a result. */
+    private static final int STALE = 4;
+
+    /** The state of one walk: the marks on each commit reached and the
+     *  commits waiting to be visited. */
+    private static class Walk {
+
+        /** A walk over GRAPH. */
+        Walk(Graph graph) {
+            _queue = new PriorityQueue<>((x, y) -> {
+                int cmp = Integer.compare(graph.generation(y),
+                        graph.generation(x));
+                if (cmp == 0) {
+                    cmp = Long.compare(graph.timestamp(y),
+                            graph.timestamp(x));
+                }
+                return cmp != 0 ? cmp : Integer.compare(y, x);
+            });
+        }
+
+        /** Returns the marks on POS. */
+        int flags(int pos) {
+            int result = 0;
+            for (int i = 0; i < _marks.length; i += 1) {
+                if (_marks[i].get(pos)) {
+                    result |= 1 << i;
+                }
+            }
+            return result;
+        }
+
+        /** Adds the marks FLAGS to POS, queueing it if it has not been
+         *  reached before. Does nothing if POS is NONE. */
+        void mark(int pos, int flags) {
+            if (pos == NONE) {
+                return;
+            }
+            int old = flags(pos);
+            if ((old | flags) == old) {
+                return;
+            }
+            for (int i = 0; i < _marks.length; i += 1) {
+                if ((flags & (1 << i)) != 0) {
+                    _marks[i].set(pos);
+                }
+            }
+            if (!_reached.get(pos)) {
+                _reached.set(pos);
+                _queue.add(pos);
+                if ((flags & STALE) == 0) {
+                    _active += 1;
+                }
+            } else if ((old & STALE) == 0 && (flags & STALE) != 0) {
+                _active -= 1;
+            }
+        }
+
+        /** Commits reached but not yet visited, newest first. */
+        private final PriorityQueue<Integer> _queue;
+
+        /** The commits marked ONE, TWO and STALE. */
+        private final BitSet[] _marks = {new BitSet(), new BitSet(),
+                                         new BitSet()};
+
+        /** Commits reached so far. */
+        private final BitSet _reached = new BitSet();
+
+        /** Queued commits that are not stale. */
+        private int _active;
+    }
+}
@@ -0,0 +1,21 @@
+package gitlet;
+
+/** How a merge ended.
+ *  @author Super Stressed McSad */
+public enum MergeResult {
+
+    /** The branches were merged in a new commit. */
+    MERGED,
+
+    /** The branches were merged in a new commit, but some files changed
+     *  on both sides and were written with conflict markers. */
+    CONFLICT,
+
+    /** The given branch was already part of the current one, so nothing
+     *  was done. */
+    ANCESTOR,
+
+    /** The current branch was part of the given one and was moved up to
+     *  it without a merge commit. */
+    FAST_FORWARD
+}
@@ -0,0 +1,15 @@
+package gitlet;
+
+/** Thrown when a command names a file, commit or branch that does not
+ *  exist.
+ *  @author Super Stressed McSad */
+public class NotFoundException extends GitletException {
+
+    /** Version of the serialized form. */
+    private static final long serialVersionUID = 1L;
+
+    /** An exception with the message MSG. */
+    NotFoundException(String msg) {
+        super(msg);
+    }
+}
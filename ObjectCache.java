@@ -0,0 +1,123 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/** A bounded, least recently used cache of immutable objects keyed by
+ *  sha1, which may be shared between threads. Objects handed out are
+ *  shared and must not be changed.
+ *  @author Super Stressed McSad */
+class ObjectCache<T> {
+
+    /** A cache holding at most CAPACITY total weight, where WEIGHER
+     *  gives the weight of one object. */
+    ObjectCache(long capacity, ToLongFunction<T> weigher) {
+        _capacity = capacity;
+        _weigher = weigher;
+    }
+
+    /** Returns the object ID, calling LOADER to load it on a miss. */
+    T get(String id, Function<String, T> loader) {
+        synchronized (this) {
+            T cached = _objects.get(id);
+            if (cached != null) {
+                _hits.incrementAndGet();
+                return cached;
+            }
+        }
+        _misses.incrementAndGet();
+        T loaded = loader.apply(id);
+        long weight = _weigher.applyAsLong(loaded);
+        if (weight <= _capacity) {
+            synchronized (this) {
+                T old = _objects.put(id, loaded);
+                if (old != null) {
+                    _weight -= _weigher.applyAsLong(old);
+                }
+                _weight += weight;
+                evict();
+            }
+        }
+        return loaded;
+    }
+
+    /** Returns the object ID if it is cached, or null, without loading
+     *  it. */
+    T peek(String id) {
+        synchronized (this) {
+            T cached = _objects.get(id);
+            if (cached != null) {
+                _hits.incrementAndGet();
+            }
+            return cached;
+        }
+    }
+
+    /** Forgets the object ID, if it is cached. */
+    synchronized void remove(String id) {
+        T old = _objects.remove(id);
+        if (old != null) {
+            _weight -= _weigher.applyAsLong(old);
+        }
+    }
+
+    /** Forgets every object. */
+    synchronized void clear() {
+        _objects.clear();
+        _weight = 0;
+    }
+
+    /** Returns the number of lookups that found their object cached. */
+    long hits() {
+        return _hits.get();
+    }
+
+    /** Returns the number of lookups that had to load their object. */
+    long misses() {
+        return _misses.get();
+    }
+
+    /** Returns the number of objects cached. */
+    synchronized int size() {
+        return _objects.size();
+    }
+
+    /** Returns the total weight of the objects cached. */
+    synchronized long weight() {
+        return _weight;
+    }
+
+    /** Drops the least recently used objects until the total weight is
+     *  within the capacity. */
+    private void evict() {
+        Iterator<Map.Entry<String, T>> oldest =
+                _objects.entrySet().iterator();
+        while (_weight > _capacity && oldest.hasNext()) {
+            _weight -= _weigher.applyAsLong(oldest.next().getValue());
+            oldest.remove();
+        }
+    }
+
+    /** Cached objects, least recently used first. */
+    private final LinkedHashMap<String, T> _objects =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Largest total weight kept. */
+    private final long _capacity;
+
+    /** Gives the weight of an object. */
+    private final ToLongFunction<T> _weigher;
+
+    /** Total weight of the objects cached. */
+    private long _weight;
+
+    /** Lookups that found their object cached. */
+    private final AtomicLong _hits = new AtomicLong();
+
+    /** Lookups that had to load their object. */
+    private final AtomicLong _misses = new AtomicLong();
+}
@@ -0,0 +1,715 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/** The object store that holds every blob, tree and commit, loose under
+ *  .gitlet or folded into packs by repack. Objects read are kept in a
+ *  bounded cache.
+ *  @author Super Stressed McSad */
+class ObjectStore {
+
+    /** The .gitlet folder. */
+    private static File gitlet = Utils.join(Main.CWD, ".gitlet");
+
+    /** The folder of loose commits. */
+    private static File commits = Utils.join(gitlet, "commits");
+
+    /** The folder of loose blobs. */
+    private static File blobs = Utils.join(gitlet, "blobs");
+
+    /** The folder of loose trees. */
+    private static File trees = Utils.join(gitlet, "trees");
+
+    /** The folder of packs and their indices. */
+    private static File packs = Utils.join(gitlet, "packs");
+
+    /** Digits used when printing raw sha1s. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Marks a stored blob as compressed rather than raw. */
+    private static final byte[] MAGIC = {(byte) 0x89, 'G', 'L'};
+
+    /** Kind of a blob stored whole. */
+    private static final byte FULL = 'W';
+
+    /** Kind of a blob stored as a delta. */
+    private static final byte DELTA = 'P';
+
+    /** Kind of a blob stored whole before lengths were recorded. */
+    private static final byte OLD_FULL = 'F';
+
+    /** Kind of a blob stored as a delta before lengths were recorded. */
+    private static final byte OLD_DELTA = 'D';
+
+    /** Length of the header of a whole blob: magic, kind and the length
+     *  of its contents. */
+    private static final int FULL_HEADER = MAGIC.length + 1 + 8;
+
+    /** Length of the header of an old delta blob: magic, kind, depth and
+     *  the raw sha1 of its base. */
+    private static final int OLD_DELTA_HEADER = MAGIC.length + 2
+            + Pack.SHA1_BYTES;
+
+    /** Length of the header of a delta blob: that of an old delta blob
+     *  followed by the length of its contents. */
+    private static final int DELTA_HEADER = OLD_DELTA_HEADER + 8;
+
+    /** Default longest chain of deltas a blob may sit at the end of. */
+    static final int DEFAULT_DEPTH = 10;
+
+    /** Longest chain of deltas a new blob may ever sit at the end of. */
+    static final int MAX_DEPTH = 50;
+
+    /** Longest chain of deltas read, which the depth byte of a delta
+     *  header bounds. */
+    private static final int MAX_CHAIN = 255;
+
+    /** Commits read so far, at most gitlet.cacheCommits of them. Every
+     *  commit counts once, however many files it tracks. */
+    static final ObjectCache<Commit> COMMITS = new ObjectCache<>(
+            Integer.getInteger("gitlet.cacheCommits", 1024), c -> 1);
+
+    /** Contents of the blobs read so far, at most gitlet.cacheBytes
+     *  bytes of them. */
+    static final ObjectCache<byte[]> BLOBS = new ObjectCache<>(
+            Long.getLong("gitlet.cacheBytes", 32L << 20), b -> b.length);
+
+    /** Stored forms of the trees read so far, at most a quarter of
+     *  gitlet.cacheBytes bytes of them. */
+    static final ObjectCache<byte[]> TREES = new ObjectCache<>(
+            Long.getLong("gitlet.cacheBytes", 32L << 20) / 4,
+            b -> b.length);
+
+    /** Returns the contents of the blob with sha1 ID. The result is shared
+     *  through the cache and must not be changed. */
+    static byte[] readBlob(String id) {
+        return BLOBS.get(id, ObjectStore::loadBlob);
+    }
+
+    /** Reads and expands the blob with sha1 ID, walking down its delta
+     *  chain to a base that is cached or stored whole and applying the
+     *  deltas on the way back up. */
+    private static byte[] loadBlob(String id) {
+        ArrayDeque<byte[]> deltas = new ArrayDeque<>();
+        byte[] stored = readStored(id, Pack.BLOB);
+        byte kind = kind(stored);
+        byte[] contents = null;
+        while (contents == null && (kind == DELTA || kind == OLD_DELTA)) {
+            if (deltas.size() == MAX_CHAIN) {
+                throw Utils.error("Delta chain of blob %s is too long.", id);
+            }
+            deltas.push(inflate(stored, dataStart(kind)));
+            String base = baseOf(stored);
+            contents = BLOBS.peek(base);
+            if (contents == null) {
+                stored = readStored(base, Pack.BLOB);
+                kind = kind(stored);
+            }
+        }
+        if (contents == null) {
+            contents = kind == 0 ? stored : inflate(stored, dataStart(kind));
+        }
+        while (!deltas.isEmpty()) {
+            contents = Delta.apply(contents, deltas.pop());
+        }
+        return contents;
+    }
+
+    /** Returns the object ID of type TYPE exactly as it is stored,
+     *  without going through the cache. */
+    static byte[] readStored(String id, byte type) {
+        File loose = Utils.join(looseDir(type), id);
+        if (loose.isFile()) {
+            byte[] data = Utils.readContents(loose);
+            Stats.read(data.length);
+            return data;
+        }
+        return readPacked(id, type);
+    }
+
+    /** Returns the sha1 of the contents of the blob ID, worked out again
+     *  from what is stored rather than taken from the cache. A loose
+     *  blob stored whole is inflated and hashed as a stream, so it is
+     *  never held in memory however large it is. */
+    static String hashBlob(String id) {
+        File loose = Utils.join(blobs, id);
+        if (loose.isFile()) {
+            try (InputStream in = new BufferedInputStream(
+                    new FileInputStream(loose))) {
+                Stats.read(loose.length());
+                byte kind = kind(in.readNBytes(MAGIC.length + 1));
+                if (kind == FULL || kind == OLD_FULL) {
+                    in.skipNBytes(dataStart(kind) - MAGIC.length - 1);
+                    try (InputStream inflated = new InflaterInputStream(in)) {
+                        return Hashing.sha1(inflated);
+                    }
+                } else if (kind != DELTA && kind != OLD_DELTA) {
+                    return Hashing.sha1(loose);
+                }
+            } catch (IOException excp) {
+                throw Utils.error("Corrupt blob.");
+            }
+        }
+        byte[] stored = readStored(id, Pack.BLOB);
+        Stats.count(Stats.Counter.HASHES, 1);
+        byte kind = kind(stored);
+        if (kind == DELTA || kind == OLD_DELTA) {
+            return Utils.sha1(Delta.apply(readBlob(baseOf(stored)),
+                    inflate(stored, dataStart(kind))));
+        } else if (kind == 0) {
+            return Utils.sha1(stored);
+        }
+        return Utils.sha1(inflate(stored, dataStart(kind)));
+    }
+
+    /** Returns the kind of the stored blob STORED, or 0 if it is a raw
+     *  blob from before compression. */
+    private static byte kind(byte[] stored) {
+        if (stored.length <= MAGIC.length) {
+            return 0;
+        }
+        for (int i = 0; i < MAGIC.length; i += 1) {
+            if (stored[i] != MAGIC[i]) {
+                return 0;
+            }
+        }
+        return stored[MAGIC.length];
+    }
+
+    /** Returns where the compressed data starts in a stored blob of kind
+     *  KIND. */
+    private static int dataStart(byte kind) {
+        switch (kind) {
+        case FULL:
+            return FULL_HEADER;
+        case DELTA:
+            return DELTA_HEADER;
+        case OLD_FULL:
+            return MAGIC.length + 1;
+        case OLD_DELTA:
+            return OLD_DELTA_HEADER;
+        default:
+            return 0;
+        }
+    }
+
+    /** Returns the sha1 of the base of the stored delta blob STORED. */
+    private static String baseOf(byte[] stored) {
+        return hex(Arrays.copyOfRange(stored, MAGIC.length + 2,
+                OLD_DELTA_HEADER));
+    }
+
+    /** Returns the start of the stored blob ID, as much of it as the
+     *  longest header, without reading the rest. */
+    private static byte[] readHead(String id) {
+        File loose = Utils.join(blobs, id);
+        if (loose.isFile()) {
+            try (InputStream in = new FileInputStream(loose)) {
+                byte[] head = in.readNBytes(DELTA_HEADER);
+                Stats.read(head.length);
+                return head;
+            } catch (IOException excp) {
+                throw Utils.error("Corrupt blob.");
+            }
+        }
+        byte[] key = unhex(id);
+        for (Pack pack : packs()) {
+            int pos = pack.find(key);
+            if (pos >= 0 && pack.typeAt(pos) == Pack.BLOB) {
+                return pack.read(pos, DELTA_HEADER);
+            }
+        }
+        throw Utils.error("Missing object %s.", id);
+    }
+
+    /** Returns the length of the contents of the blob ID, read from its
+     *  header without expanding it. A blob stored before lengths were
+     *  recorded counts as Long.MAX_VALUE, so it is never taken to be
+     *  small. */
+    private static long blobLength(String id) {
+        byte[] head = readHead(id);
+        switch (kind(head)) {
+        case FULL:
+            return ByteBuffer.wrap(head).getLong(MAGIC.length + 1);
+        case DELTA:
+            return ByteBuffer.wrap(head).getLong(OLD_DELTA_HEADER);
+        case OLD_FULL:
+        case OLD_DELTA:
+            return Long.MAX_VALUE;
+        default:
+            return storedLength(id);
+        }
+    }
+
+    /** Returns the length of the contents of the blob ID, reading it
+     *  only if it was stored before lengths were recorded. */
+    static long size(String id) {
+        long length = blobLength(id);
+        return length == Long.MAX_VALUE ? readBlob(id).length : length;
+    }
+
+    /** Returns the number of bytes blob ID is stored in. */
+    private static long storedLength(String id) {
+        File loose = Utils.join(blobs, id);
+        if (loose.isFile()) {
+            return loose.length();
+        }
+        byte[] key = unhex(id);
+        for (Pack pack : packs()) {
+            int pos = pack.find(key);
+            if (pos >= 0 && pack.typeAt(pos) == Pack.BLOB) {
+                return pack.lengthAt(pos);
+            }
+        }
+        throw Utils.error("Missing object %s.", id);
+    }
+
+    /** Returns the length of the delta chain under blob ID, as recorded
+     *  in its header. */
+    private static int depth(String id) {
+        byte[] head = readHead(id);
+        byte kind = kind(head);
+        if (kind == DELTA || kind == OLD_DELTA) {
+            return head[MAGIC.length + 1] & 0xff;
+        }
+        return 0;
+    }
+
+    /** Returns the commit with sha1 ID. The result is shared through the
+     *  cache and must not be changed. */
+    static Commit readCommit(String id) {
+        return COMMITS.get(id, ObjectStore::loadCommit);
+    }
+
+    /** Reads and decodes the commit with sha1 ID. */
+    private static Commit loadCommit(String id) {
+        return CommitCodec.decode(readStored(id, Pack.COMMIT));
+    }
+
+    /** Returns the stored form of the tree with sha1 ID. The result is
+     *  shared through the cache and must not be changed. */
+    static byte[] readTree(String id) {
+        return TREES.get(id, ObjectStore::loadTree);
+    }
+
+    /** Reads the stored form of the tree with sha1 ID. */
+    private static byte[] loadTree(String id) {
+        return readStored(id, Pack.TREE);
+    }
+
+    /** Returns true if a tree with sha1 ID is stored. */
+    static boolean hasTree(String id) {
+        return Utils.join(trees, id).isFile() || findPacked(id, Pack.TREE);
+    }
+
+    /** Stores DATA as the loose tree ID. */
+    static void writeTree(String id, byte[] data) {
+        trees.mkdirs();
+        Durable.write(Utils.join(trees, id), data);
+    }
+
+    /** Returns true if a blob with sha1 ID is stored. */
+    static boolean hasBlob(String id) {
+        return Utils.join(blobs, id).isFile() || findPacked(id, Pack.BLOB);
+    }
+
+    /** Returns true if a commit with sha1 ID is stored. */
+    static boolean hasCommit(String id) {
+        return id.length() == Main.SHA1_LENGTH
+                && (Utils.join(commits, id).isFile()
+                || findPacked(id, Pack.COMMIT));
+    }
+
+    /** Streams the file SOURCE into the store as a loose blob, hashing
+     *  it in the same pass, and returns its sha1. If BASE names an
+     *  earlier version of the same file and both are small enough, a
+     *  delta against BASE may be kept instead. */
+    static String writeBlob(File source, String base) {
+        blobs.mkdirs();
+        File tmp;
+        String id;
+        Deflater deflater = new Deflater();
+        try {
+            tmp = File.createTempFile("tmp-", null, blobs);
+            try (OutputStream file = new BufferedOutputStream(
+                    new FileOutputStream(tmp))) {
+                file.write(MAGIC);
+                file.write(FULL);
+                file.write(new byte[FULL_HEADER - MAGIC.length - 1]);
+                DeflaterOutputStream out = new DeflaterOutputStream(file,
+                        deflater);
+                id = Hashing.sha1(source, out);
+                out.finish();
+            }
+            try (RandomAccessFile file = new RandomAccessFile(tmp, "rw")) {
+                file.seek(MAGIC.length + 1);
+                file.writeLong(deflater.getBytesRead());
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot store %s.", source.getName());
+        } finally {
+            deflater.end();
+        }
+        Stats.wrote(tmp.length());
+        if (hasBlob(id)) {
+            tmp.delete();
+            return id;
+        }
+        if (base != null && _maxDepth > 0 && tmp.length() > FULL_HEADER
+                && source.length() <= _deltaLimit && hasBlob(base)
+                && blobLength(base) <= _deltaLimit) {
+            byte[] contents = inflate(Utils.readContents(tmp),
+                    FULL_HEADER);
+            if (writeDelta(id, contents, base)) {
+                tmp.delete();
+                return id;
+            }
+        }
+        Durable.move(tmp, Utils.join(blobs, id));
+        return id;
+    }
+
+    /** Stores CONTENTS as the loose blob ID in the form of a delta
+     *  against the blob BASE and returns true, unless that would make
+     *  the chain too deep or the delta is not worth keeping. */
+    private static boolean writeDelta(String id, byte[] contents,
+                                      String base) {
+        int depth = depth(base) + 1;
+        if (base.equals(id) || depth > _maxDepth) {
+            return false;
+        }
+        byte[] delta = Delta.create(readBlob(base), contents);
+        if (delta.length >= contents.length / 2) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(DELTA_HEADER);
+        header.put(MAGIC).put(DELTA).put((byte) depth).put(unhex(base))
+                .putLong(contents.length);
+        Durable.write(Utils.join(blobs, id), header.array(),
+                deflate(delta));
+        return true;
+    }
+
+    /** Sets the longest delta chain new blobs may extend to DEPTH, but
+     *  never beyond MAX_DEPTH. A DEPTH of zero stores every blob
+     *  whole. */
+    static void setMaxDepth(int depth) {
+        _maxDepth = Math.max(0, Math.min(depth, MAX_DEPTH));
+    }
+
+    /** Stores COMMIT as the loose commit ID. */
+    static void writeCommit(String id, Commit commit) {
+        Durable.write(Utils.join(commits, id), CommitCodec.encode(commit));
+    }
+
+    /** Removes the commits IDS, whether loose or packed. */
+    static void deleteCommits(Set<String> ids) {
+        for (String id : ids) {
+            Utils.join(commits, id).delete();
+            COMMITS.remove(id);
+        }
+        boolean packed = false;
+        for (Pack pack : packs()) {
+            for (String id : ids) {
+                if (id.length() == Main.SHA1_LENGTH
+                        && pack.find(unhex(id)) >= 0) {
+                    packed = true;
+                }
+            }
+        }
+        if (!packed) {
+            return;
+        }
+        TreeMap<String, Pack.Entry> kept = new TreeMap<>();
+        ArrayList<Pack> old = new ArrayList<>(packs());
+        for (Pack pack : old) {
+            for (int i = 0; i < pack.size(); i += 1) {
+                String id = pack.idAt(i);
+                int pos = i;
+                if (!ids.contains(id)) {
+                    kept.put(id, new Pack.Entry(pack.typeAt(i),
+                            () -> pack.read(pos)));
+                }
+            }
+        }
+        if (!kept.isEmpty()) {
+            Pack.write(packs, kept);
+            Durable.sync();
+        }
+        reload();
+        for (Pack pack : old) {
+            pack.idxFile().delete();
+            pack.packFile().delete();
+        }
+    }
+
+    /** Returns the files in the folder of loose objects of type TYPE,
+     *  which may include temporary files left by unfinished writes. */
+    static File[] listLoose(byte type) {
+        File[] files = looseDir(type).listFiles();
+        Stats.count(Stats.Counter.DIRS_LISTED, 1);
+        return files == null ? new File[0] : files;
+    }
+
+    /** Removes the loose object ID of type TYPE, if there is one. Packed
+     *  objects are left alone. */
+    static void deleteLoose(String id, byte type) {
+        Utils.join(looseDir(type), id).delete();
+        switch (type) {
+        case Pack.BLOB:
+            BLOBS.remove(id);
+            break;
+        case Pack.TREE:
+            TREES.remove(id);
+            break;
+        default:
+            COMMITS.remove(id);
+        }
+    }
+
+    /** Returns the sha1 of the blob that the loose blob ID is stored as a
+     *  delta against, reading only its header, or null if ID is not a
+     *  loose delta. A packed delta always has its base in a pack, since
+     *  repack folds in every loose object at once. */
+    static String looseDeltaBase(String id) {
+        File loose = Utils.join(blobs, id);
+        byte[] header;
+        try (InputStream in = new FileInputStream(loose)) {
+            header = in.readNBytes(DELTA_HEADER);
+            Stats.read(header.length);
+        } catch (IOException excp) {
+            return null;
+        }
+        byte kind = kind(header);
+        if (header.length < OLD_DELTA_HEADER
+                || kind != DELTA && kind != OLD_DELTA) {
+            return null;
+        }
+        return baseOf(header);
+    }
+
+    /** Returns the folder of loose objects of type TYPE. */
+    private static File looseDir(byte type) {
+        switch (type) {
+        case Pack.BLOB:
+            return blobs;
+        case Pack.TREE:
+            return trees;
+        default:
+            return commits;
+        }
+    }
+
+    /** Returns the sha1 of every stored commit in sorted order. */
+    static ArrayList<String> commitIds() {
+        TreeSet<String> ids = new TreeSet<>();
+        String[] loose = commits.list();
+        Stats.count(Stats.Counter.DIRS_LISTED, 1);
+        if (loose != null) {
+            for (String id : loose) {
+                ids.add(id);
+            }
+        }
+        for (Pack pack : packs()) {
+            for (int i = 0; i < pack.size(); i += 1) {
+                if (pack.typeAt(i) == Pack.COMMIT) {
+                    ids.add(pack.idAt(i));
+                }
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /** Returns the ids of the objects of type TYPE in the packs written
+     *  at or after SINCE. */
+    static ArrayList<String> packedIds(byte type, long since) {
+        ArrayList<String> ids = new ArrayList<>();
+        for (Pack pack : packs()) {
+            if (pack.packFile().lastModified() < since) {
+                continue;
+            }
+            for (int i = 0; i < pack.size(); i += 1) {
+                if (pack.typeAt(i) == type) {
+                    ids.add(pack.idAt(i));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /** Folds every loose blob, tree and commit into a single new pack and
+     *  removes the loose copies once the pack is in place. */
+    static void repack() {
+        TreeMap<String, Pack.Entry> loose = new TreeMap<>();
+        collectLoose(loose, blobs, Pack.BLOB);
+        collectLoose(loose, trees, Pack.TREE);
+        collectLoose(loose, commits, Pack.COMMIT);
+        if (loose.isEmpty()) {
+            return;
+        }
+        packs.mkdirs();
+        Pack.write(packs, loose);
+        Durable.sync();
+        reload();
+        for (String id : loose.keySet()) {
+            switch (loose.get(id).type()) {
+            case Pack.BLOB:
+                Utils.join(blobs, id).delete();
+                break;
+            case Pack.TREE:
+                Utils.join(trees, id).delete();
+                break;
+            default:
+                Utils.join(commits, id).delete();
+            }
+        }
+    }
+
+    /** Adds every loose object in DIR to OBJECTS with type TYPE, to be
+     *  read as it is packed. */
+    private static void collectLoose(TreeMap<String, Pack.Entry> objects,
+                                     File dir, byte type) {
+        String[] names = dir.list();
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            File file = Utils.join(dir, name);
+            if (name.length() == Main.SHA1_LENGTH
+                    && !objects.containsKey(name)) {
+                objects.put(name, new Pack.Entry(type,
+                        () -> Utils.readContents(file)));
+            }
+        }
+    }
+
+    /** Returns the packed object ID of type TYPE. */
+    private static byte[] readPacked(String id, byte type) {
+        byte[] key = unhex(id);
+        for (Pack pack : packs()) {
+            int pos = pack.find(key);
+            if (pos >= 0 && pack.typeAt(pos) == type) {
+                byte[] data = pack.read(pos);
+                Stats.count(Stats.Counter.BYTES_READ, data.length);
+                return data;
+            }
+        }
+        throw Utils.error("Missing object %s.", id);
+    }
+
+    /** Returns true if object ID of type TYPE is in a pack. */
+    private static boolean findPacked(String id, byte type) {
+        if (id.length() != Main.SHA1_LENGTH) {
+            return false;
+        }
+        byte[] key = unhex(id);
+        for (Pack pack : packs()) {
+            int pos = pack.find(key);
+            if (pos >= 0 && pack.typeAt(pos) == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the open packs, opening them on first use and again
+     *  whenever the pack directory has changed underneath us. */
+    private static synchronized ArrayList<Pack> packs() {
+        long stamp = packs.lastModified();
+        if (_packs == null || stamp != _packsStamp) {
+            reload();
+            _packs = Pack.openAll(packs);
+            _packsStamp = stamp;
+        }
+        return _packs;
+    }
+
+    /** Forgets the open packs so the next read rescans the directory. */
+    static synchronized void reload() {
+        if (_packs != null) {
+            for (Pack pack : _packs) {
+                pack.close();
+            }
+        }
+        _packs = null;
+    }
+
+    /** Returns DATA compressed with DEFLATE. */
+    private static byte[] deflate(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+            deflater.write(data);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot compress blob.");
+        }
+        return out.toByteArray();
+    }
+
+    /** Returns the bytes of DATA from START decompressed with INFLATE. */
+    private static byte[] inflate(byte[] data, int start) {
+        try (InflaterInputStream inflater = new InflaterInputStream(
+                new ByteArrayInputStream(data, start, data.length - start))) {
+            return inflater.readAllBytes();
+        } catch (IOException excp) {
+            throw Utils.error("Corrupt blob.");
+        }
+    }
+
+    /** Returns the 20 raw bytes of the hex sha1 ID. */
+    static byte[] unhex(String id) {
+        byte[] raw = new byte[id.length() / 2];
+        for (int i = 0; i < raw.length; i += 1) {
+            raw[i] = (byte) (Character.digit(id.charAt(2 * i), 16) << 4
+                    | Character.digit(id.charAt(2 * i + 1), 16));
+        }
+        return raw;
+    }
+
+    /** Returns the hex form of the raw sha1 RAW. */
+    static String hex(byte[] raw) {
+        char[] out = new char[raw.length * 2];
+        for (int i = 0; i < raw.length; i += 1) {
+            out[2 * i] = HEX[(raw[i] >> 4) & 0xf];
+            out[2 * i + 1] = HEX[raw[i] & 0xf];
+        }
+        return new String(out);
+    }
+
+    /** Packs currently open, or null before first use. */
+    private static ArrayList<Pack> _packs;
+
+    /** Modification time of the pack directory when _packs was read. */
+    private static long _packsStamp;
+
+    /** Longest delta chain a new blob may extend. */
+    private static int _maxDepth = Math.min(MAX_DEPTH,
+            Integer.getInteger("gitlet.deltaDepth", DEFAULT_DEPTH));
+
+    /** Largest file, in bytes, that is considered for delta encoding,
+     *  and largest base, by the length of its contents as recorded in its
+     *  header, that it may be encoded against. Delta encoding
+     *  holds the file, its base and the delta in memory, so this bounds
+     *  the heap add needs; larger files are only ever streamed. */
+    private static long _deltaLimit = Long.getLong("gitlet.deltaLimit",
+            1L << 20);
+}
@@ -0,0 +1,334 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/** A single append-only pack file of [type byte][int length][data]
+ *  entries, together with its sorted index.
+ *  @author Super Stressed McSad */
+class Pack {
+
+    /** Entry type of a blob. */
+    static final byte BLOB = 1;
+
+    /** Entry type of a commit. */
+    static final byte COMMIT = 2;
+
+    /** Entry type of a tree. */
+    static final byte TREE = 3;
+
+    /** Magic number at the start of every pack file. */
+    private static final int PACK_MAGIC = 0x47504b31;
+
+    /** Magic number at the start of every index file. */
+    private static final int IDX_MAGIC = 0x47494431;
+
+    /** Number of raw bytes in a sha1. */
+    static final int SHA1_BYTES = 20;
+
+    /** Width of a single index record, [20 byte sha1][long offset],
+     *  sorted by sha1 after a fan-out table. */
+    private static final int RECORD = SHA1_BYTES + 8;
+
+    /** Size of the fan-out table at the start of an index. */
+    private static final int FANOUT = 256 * 4;
+
+    /** Size of the index header (magic and count). */
+    private static final int IDX_HEADER = 8;
+
+    /** Opens the pack whose index is IDX. */
+    Pack(File idx) {
+        _idxFile = idx;
+        String name = idx.getName();
+        _packFile = new File(idx.getParentFile(),
+                name.substring(0, name.length() - ".idx".length()) + ".pack");
+        try (RandomAccessFile raf = new RandomAccessFile(idx, "r")) {
+            _idx = raf.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    0, raf.length());
+        } catch (IOException excp) {
+            throw Utils.error("Cannot open pack index %s.", name);
+        }
+        if (_idx.getInt(0) != IDX_MAGIC) {
+            throw Utils.error("Corrupt pack index %s.", name);
+        }
+        _count = _idx.getInt(4);
+    }
+
+    /** Returns the number of objects in this pack. */
+    int size() {
+        return _count;
+    }
+
+    /** Returns the index file backing this pack. */
+    File idxFile() {
+        return _idxFile;
+    }
+
+    /** Returns the pack file backing this pack. */
+    File packFile() {
+        return _packFile;
+    }
+
+    /** Returns the index position of the raw sha1 KEY, or -1 if it is
+     *  not in this pack. */
+    int find(byte[] key) {
+        int first = key[0] & 0xff;
+        int lo = first == 0 ? 0 : _idx.getInt(IDX_HEADER + (first - 1) * 4);
+        int hi = _idx.getInt(IDX_HEADER + first * 4) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareAt(mid, key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Compares the sha1 of record POS with KEY. */
+    private int compareAt(int pos, byte[] key) {
+        int base = recordOffset(pos);
+        for (int i = 0; i < SHA1_BYTES; i += 1) {
+            int a = _idx.get(base + i) & 0xff;
+            int b = key[i] & 0xff;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the hex sha1 of record POS. */
+    String idAt(int pos) {
+        byte[] raw = new byte[SHA1_BYTES];
+        ByteBuffer view = _idx.duplicate();
+        view.position(recordOffset(pos));
+        view.get(raw);
+        return ObjectStore.hex(raw);
+    }
+
+    /** Returns the type of the entry at index position POS. */
+    byte typeAt(int pos) {
+        return header(pos).get(0);
+    }
+
+    /** Returns the length of the data of the entry at index position
+     *  POS. */
+    int lengthAt(int pos) {
+        return header(pos).getInt(1);
+    }
+
+    /** Returns the data of the entry at index position POS. */
+    byte[] read(int pos) {
+        ByteBuffer head = header(pos);
+        byte[] data = new byte[head.getInt(1)];
+        readFully(ByteBuffer.wrap(data), entryOffset(pos) + 5);
+        return data;
+    }
+
+    /** Returns at most the first N bytes of the data of the entry at
+     *  index position POS. */
+    byte[] read(int pos, int n) {
+        ByteBuffer head = header(pos);
+        byte[] data = new byte[Math.min(n, head.getInt(1))];
+        readFully(ByteBuffer.wrap(data), entryOffset(pos) + 5);
+        return data;
+    }
+
+    /** Returns the five byte entry header for index position POS. */
+    private ByteBuffer header(int pos) {
+        ByteBuffer head = ByteBuffer.allocate(5);
+        readFully(head, entryOffset(pos));
+        return head;
+    }
+
+    /** Fills BUF from the pack starting at offset POS. */
+    private void readFully(ByteBuffer buf, long pos) {
+        try {
+            while (buf.hasRemaining()) {
+                int n = channel().read(buf, pos);
+                if (n < 0) {
+                    throw Utils.error("Pack %s is truncated.",
+                            _packFile.getName());
+                }
+                pos += n;
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read pack %s.", _packFile.getName());
+        }
+    }
+
+    /** Returns the pack offset of index position POS. */
+    private long entryOffset(int pos) {
+        return _idx.getLong(recordOffset(pos) + SHA1_BYTES);
+    }
+
+    /** Returns the index offset of record POS. */
+    private static int recordOffset(int pos) {
+        return IDX_HEADER + FANOUT + pos * RECORD;
+    }
+
+    /** Returns the lazily opened channel on the pack file. */
+    private synchronized FileChannel channel() throws IOException {
+        if (_pack == null) {
+            _pack = new RandomAccessFile(_packFile, "r").getChannel();
+        }
+        return _pack;
+    }
+
+    /** Releases the pack file handle. */
+    synchronized void close() {
+        if (_pack != null) {
+            try {
+                _pack.close();
+            } catch (IOException excp) {
+                /* Nothing useful to do. */
+            }
+            _pack = null;
+        }
+    }
+
+    /** Writes OBJECTS, a map from hex sha1 to typed entry, as a new pack
+     *  in directory DIR and returns it. Each entry is read only when its
+     *  turn comes and both files are streamed, so only one object is held
+     *  in memory at a time. The index is written last and renamed into
+     *  place so a partially written pack is never visible. */
+    static Pack write(File dir, TreeMap<String, Entry> objects) {
+        String name = "pack-" + Utils.sha1(
+                String.join("", objects.keySet()));
+        File packFile = Utils.join(dir, name + ".pack");
+        File idxFile = Utils.join(dir, name + ".idx");
+        if (idxFile.exists()) {
+            return new Pack(idxFile);
+        }
+        long[] offsets = new long[objects.size()];
+        try (FileOutputStream file = new FileOutputStream(packFile);
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(file))) {
+            out.writeInt(PACK_MAGIC);
+            long offset = 4;
+            int i = 0;
+            for (Entry entry : objects.values()) {
+                byte[] data = entry.data();
+                offsets[i++] = offset;
+                out.writeByte(entry.type());
+                out.writeInt(data.length);
+                out.write(data);
+                offset += 5 + data.length;
+            }
+            out.flush();
+            file.getFD().sync();
+            Stats.wrote(offset);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write pack %s.", name);
+        }
+
+        int[] fanout = new int[256];
+        for (String id : objects.keySet()) {
+            fanout[Integer.parseInt(id.substring(0, 2), 16)] += 1;
+        }
+        File tmp;
+        try {
+            tmp = File.createTempFile("idx-", null, dir);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write pack %s.", name);
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(IDX_MAGIC);
+            out.writeInt(objects.size());
+            int running = 0;
+            for (int count : fanout) {
+                running += count;
+                out.writeInt(running);
+            }
+            int i = 0;
+            for (String id : objects.keySet()) {
+                out.write(ObjectStore.unhex(id));
+                out.writeLong(offsets[i++]);
+            }
+        } catch (IOException excp) {
+            tmp.delete();
+            throw Utils.error("Cannot write pack %s.", name);
+        }
+        Stats.wrote(tmp.length());
+        Durable.move(tmp, idxFile);
+        return new Pack(idxFile);
+    }
+
+    /** Returns the packs whose indices live in DIR, largest first. */
+    static ArrayList<Pack> openAll(File dir) {
+        ArrayList<Pack> result = new ArrayList<>();
+        String[] names = dir.list();
+        Stats.count(Stats.Counter.DIRS_LISTED, 1);
+        if (names == null) {
+            return result;
+        }
+        Arrays.sort(names);
+        for (String name : names) {
+            if (name.endsWith(".idx")) {
+                result.add(new Pack(Utils.join(dir, name)));
+                Stats.count(Stats.Counter.FILES_OPENED, 1);
+            }
+        }
+        result.sort((a, b) -> b.size() - a.size());
+        return result;
+    }
+
+    /** A typed object to be stored in a pack, whose stored bytes are
+     *  read when they are asked for. */
+    static class Entry {
+
+        /** An entry of type TYPE whose stored bytes come from DATA. */
+        Entry(byte type, Supplier<byte[]> data) {
+            _type = type;
+            _data = data;
+        }
+
+        /** Returns the type of this entry. */
+        byte type() {
+            return _type;
+        }
+
+        /** Reads and returns the stored bytes of this entry. */
+        byte[] data() {
+            return _data.get();
+        }
+
+        /** Type of this entry. */
+        private byte _type;
+
+        /** Where the stored bytes of this entry come from. */
+        private Supplier<byte[]> _data;
+    }
+
+    /** The index file. */
+    private File _idxFile;
+
+    /** The pack file. */
+    private File _packFile;
+
+    /** The memory-mapped index. */
+    private MappedByteBuffer _idx;
+
+    /** Number of objects in this pack. */
+    private int _count;
+
+    /** Channel on the pack file, opened on first read. */
+    private FileChannel _pack;
+}
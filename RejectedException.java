@@ -0,0 +1,16 @@
+package gitlet;
+
+/** Thrown when a command cannot be carried out in the repository's
+ *  current state, such as a commit with nothing staged or a merge with
+ *  uncommitted changes. Nothing has been changed.
+ *  @author Super Stressed McSad */
+public class RejectedException extends GitletException {
+
+    /** Version of the serialized form. */
+    private static final long serialVersionUID = 1L;
+
+    /** An exception with the message MSG. */
+    RejectedException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,151 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Builds synthetic, seeded repositories in the working directory to
+ *  benchmark against, with branches that edit their own share of the
+ *  files and merge each other without conflicts.
+ *  @author Super Stressed McSad */
+class RepoGenerator {
+
+    /** The folder the generated files are written under. */
+    static final String ROOT = "gen";
+
+    /** Number of folders the files are spread over. */
+    private static final int FOLDERS = 16;
+
+    /** A generator of repositories of FILES files of about SIZE bytes
+     *  each, with COMMITS commits after the base spread over BRANCHES
+     *  branches, master included, merging another branch after a commit
+     *  MERGEPERCENT times in a hundred, drawn from the seed SEED. */
+    RepoGenerator(int files, int size, int commits, int branches,
+                  int mergePercent, long seed) {
+        if (files < 1 || size < 1 || commits < 0 || branches < 1
+                || mergePercent < 0 || mergePercent > 100) {
+            throw Utils.error("Incorrect operands.");
+        }
+        _files = files;
+        _size = size;
+        _commits = commits;
+        _mergePercent = mergePercent;
+        _random = new Random(seed);
+        _branches.add("master");
+        for (int b = 1; b < branches; b += 1) {
+            _branches.add("branch" + b);
+        }
+    }
+
+    /** Creates the repository in the working directory, leaving master
+     *  checked out. Returns the number of merge commits made. */
+    int generate() {
+        Commands.init();
+        for (int i = 0; i < _files; i += 1) {
+            ArrayList<String> lines = new ArrayList<>();
+            int total = 0;
+            while (total < _size) {
+                String line = "line " + lines.size() + " of file " + i
+                        + " is " + Long.toHexString(_random.nextLong());
+                lines.add(line);
+                total += line.length() + 1;
+            }
+            Utils.join(Main.CWD, path(i)).getParentFile().mkdirs();
+            Utils.writeContents(Utils.join(Main.CWD, path(i)),
+                    String.join("\n", lines) + "\n");
+        }
+        Commands.add(ROOT);
+        Commands.commit("generated base", null, null);
+        for (String branch : _branches.subList(1, _branches.size())) {
+            Commands.branch(branch);
+        }
+
+        int merges = 0;
+        String current = "master";
+        for (int c = 0; c < _commits; c += 1) {
+            int slice = c % _branches.size();
+            if (!_branches.get(slice).equals(current)) {
+                current = _branches.get(slice);
+                Commands.checkoutBranch(current);
+            }
+            commit(slice, "generated commit " + c);
+            if (_branches.size() > 1
+                    && _random.nextInt(100) < _mergePercent) {
+                int other = (slice + 1 + _random.nextInt(
+                        _branches.size() - 1)) % _branches.size();
+                if (Commands.merge(_branches.get(other))
+                        == MergeResult.MERGED) {
+                    merges += 1;
+                }
+            }
+        }
+        if (!current.equals("master")) {
+            Commands.checkoutBranch("master");
+        }
+        return merges;
+    }
+
+    /** Returns the branches, master first. */
+    List<String> branches() {
+        return _branches;
+    }
+
+    /** Edits about one file in a hundred of the share of the files owned
+     *  by the branch numbered SLICE, changing a line in each, and returns
+     *  their paths. */
+    String[] edit(int slice) {
+        int owned = (_files - slice + _branches.size() - 1)
+                / _branches.size();
+        if (owned <= 0) {
+            slice = 0;
+            owned = (_files + _branches.size() - 1) / _branches.size();
+        }
+        String[] paths = new String[Math.max(1, _files / 100)];
+        for (int k = 0; k < paths.length; k += 1) {
+            int i = slice + _random.nextInt(owned) * _branches.size();
+            paths[k] = path(i);
+            edit(Utils.join(Main.CWD, paths[k]));
+        }
+        return paths;
+    }
+
+    /** Edits and stages files owned by the branch numbered SLICE, and
+     *  commits them with the message MSG. */
+    void commit(int slice, String msg) {
+        Commands.add(edit(slice));
+        Commands.commit(msg, null, null);
+    }
+
+    /** Replaces a line of FILE picked at random. */
+    private void edit(File file) {
+        String[] lines = Utils.readContentsAsString(file).split("\n");
+        int line = _random.nextInt(lines.length);
+        lines[line] = "line " + line + " edited to "
+                + Long.toHexString(_random.nextLong());
+        Utils.writeContents(file, String.join("\n", lines) + "\n");
+    }
+
+    /** Returns the path of file number I. */
+    private static String path(int i) {
+        return ROOT + "/d" + (i % FOLDERS) + "/f" + i + ".txt";
+    }
+
+    /** Number of files. */
+    private final int _files;
+
+    /** Size of each file, in bytes. */
+    private final int _size;
+
+    /** Commits made after the base. */
+    private final int _commits;
+
+    /** Chance in a hundred of a merge after each commit. */
+    private final int _mergePercent;
+
+    /** The source of every choice. */
+    private final Random _random;
+
+    /** The branches, master first. */
+    private final ArrayList<String> _branches = new ArrayList<>();
+}
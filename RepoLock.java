@@ -0,0 +1,234 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** Multi-reader, single-writer locking of a repository, shared between
+ *  processes through locks on .gitlet/lock. A waiting writer holds a
+ *  gate that keeps new readers out, and within a process the lock may
+ *  be taken again by the thread that holds it.
+ *  @author Super Stressed McSad */
+class RepoLock implements AutoCloseable {
+
+    /** Default time, in milliseconds, to wait for a lock. */
+    static final long DEFAULT_WAIT = 10000;
+
+    /** Longest pause, in milliseconds, between tries for a lock. */
+    private static final long MAX_PAUSE = 20;
+
+    /** Offset of the gate region in the lock file. */
+    private static final long GATE = 0;
+
+    /** Offset of the data region in the lock file. */
+    private static final long DATA = 1;
+
+    /** The file locked. */
+    private static File lockFile = Utils.join(Main.CWD, ".gitlet", "lock");
+
+    /** Takes a shared lock on the repository and returns it. */
+    static RepoLock shared() {
+        return acquire(true);
+    }
+
+    /** Takes an exclusive lock on the repository and returns it. */
+    static RepoLock exclusive() {
+        return acquire(false);
+    }
+
+    /** Returns true if the current thread holds a shared lock on the
+     *  repository and no exclusive one, so must not change it. */
+    static boolean isShared() {
+        return LOCAL.isHeldByCurrentThread() && _data != null
+                && _data.isShared();
+    }
+
+    /** Takes a lock on the repository, shared if SHARED, and returns it.
+     *  Throws a RejectedException if it cannot be had in time. */
+    private static RepoLock acquire(boolean shared) {
+        long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(_wait);
+        try {
+            if (!LOCAL.tryLock(remaining(deadline), TimeUnit.NANOSECONDS)) {
+                throw busy();
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw busy();
+        }
+        try {
+            if (LOCAL.getHoldCount() == 1) {
+                take(shared, deadline);
+            } else if (!shared && _data.isShared()) {
+                throw new IllegalStateException(
+                        "Cannot turn a shared lock into an exclusive one.");
+            }
+        } catch (RuntimeException | Error excp) {
+            if (LOCAL.getHoldCount() == 1) {
+                release();
+            }
+            LOCAL.unlock();
+            throw excp;
+        }
+        return new RepoLock();
+    }
+
+    /** Locks the file, shared if SHARED, giving up at DEADLINE. A journal
+     *  left behind by a crash is replayed first, under an exclusive lock,
+     *  and the stage is read afresh, since another process may have
+     *  changed it. */
+    private static void take(boolean shared, long deadline) {
+        try {
+            _channel = FileChannel.open(lockFile.toPath(),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot lock the repository.");
+        }
+        lockRegions(shared, deadline);
+        while (shared && Durable.unfinished()) {
+            unlockRegions();
+            lockRegions(false, deadline);
+            Durable.recover();
+            unlockRegions();
+            lockRegions(true, deadline);
+        }
+        if (!shared) {
+            Durable.recover();
+        }
+        Stage.reload();
+    }
+
+    /** Locks the data region, shared if SHARED, giving up at DEADLINE.
+     *  A writer keeps the gate, and a reader lets it go once in. */
+    private static void lockRegions(boolean shared, long deadline) {
+        FileLock gate = poll(GATE, shared, deadline);
+        try {
+            _data = poll(DATA, shared, deadline);
+        } catch (RuntimeException excp) {
+            unlock(gate);
+            throw excp;
+        }
+        if (shared) {
+            unlock(gate);
+        } else {
+            _gate = gate;
+        }
+    }
+
+    /** Lets go of the regions held. */
+    private static void unlockRegions() {
+        unlock(_gate);
+        unlock(_data);
+        _gate = null;
+        _data = null;
+    }
+
+    /** Returns a lock on the byte at POSITION, shared if SHARED, trying
+     *  again after a pause that doubles each time until DEADLINE. */
+    private static FileLock poll(long position, boolean shared,
+                                 long deadline) {
+        long pause = 1;
+        while (true) {
+            try {
+                FileLock lock = _channel.tryLock(position, 1, shared);
+                if (lock != null) {
+                    return lock;
+                }
+            } catch (IOException excp) {
+                throw Utils.error("Cannot lock the repository.");
+            }
+            long left = remaining(deadline);
+            if (left == 0) {
+                throw busy();
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.min(left,
+                        TimeUnit.MILLISECONDS.toNanos(pause)));
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                throw busy();
+            }
+            pause = Math.min(pause * 2, MAX_PAUSE);
+        }
+    }
+
+    /** Lets go of LOCK, if there is one. */
+    private static void unlock(FileLock lock) {
+        if (lock != null) {
+            try {
+                lock.release();
+            } catch (IOException excp) {
+                /* Closing the channel lets go of it anyway. */
+            }
+        }
+    }
+
+    /** Lets go of the file and closes it. */
+    private static void release() {
+        unlockRegions();
+        if (_channel != null) {
+            try {
+                _channel.close();
+            } catch (IOException excp) {
+                /* The locks die with the channel either way. */
+            }
+            _channel = null;
+        }
+    }
+
+    /** Returns the nanoseconds left until DEADLINE, or 0 if it has
+     *  passed. */
+    private static long remaining(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    /** Returns the error for a lock not had in time. */
+    private static RejectedException busy() {
+        return new RejectedException(
+                "Timed out waiting for another gitlet command to finish.");
+    }
+
+    /** A lock held by the current thread. */
+    private RepoLock() {
+    }
+
+    /** Lets go of this lock, and of the file once the thread holds no
+     *  other. Does nothing if it has already been let go. */
+    @Override
+    public void close() {
+        if (_closed) {
+            return;
+        }
+        _closed = true;
+        if (LOCAL.getHoldCount() == 1) {
+            release();
+        }
+        LOCAL.unlock();
+    }
+
+    /** Keeps threads in this process out of each other's way, since a
+     *  process cannot take overlapping locks on a file. */
+    private static final ReentrantLock LOCAL = new ReentrantLock(true);
+
+    /** Time to wait for a lock, in milliseconds, set by the
+     *  gitlet.lockwait property. */
+    private static long _wait = Long.getLong("gitlet.lockwait",
+            DEFAULT_WAIT);
+
+    /** The open lock file while a lock is held. */
+    private static FileChannel _channel;
+
+    /** The gate, while an exclusive lock is held. */
+    private static FileLock _gate;
+
+    /** The data region while a lock is held. */
+    private static FileLock _data;
+
+    /** Whether this lock has been let go. */
+    private boolean _closed;
+}
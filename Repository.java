@@ -0,0 +1,262 @@
+package gitlet;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.List;
+
+/** A gitlet repository that Java code can drive, where each method
+ *  carries out one command under the repository lock and returns its
+ *  result instead of printing it. It must be used by one thread at a
+ *  time.
+ *  @author Super Stressed McSad */
+public class Repository implements AutoCloseable {
+
+    /** Creates a repository in the working directory and returns it. */
+    public static Repository init() {
+        Commands.init();
+        return new Repository();
+    }
+
+    /** Returns the repository in the working directory. */
+    public static Repository open() {
+        if (!Utils.join(Main.CWD, ".gitlet").isDirectory()) {
+            throw new NotFoundException(
+                    "Not in an initialized gitlet directory.");
+        }
+        if (Durable.unfinished()) {
+            RepoLock.exclusive().close();
+        }
+        return new Repository();
+    }
+
+    /** A handle on the repository in the working directory. */
+    private Repository() {
+    }
+
+    /** Stages the files PATHS, each a file or a directory whose files are
+     *  all staged. */
+    public void add(String... paths) {
+        RepoLock lock = RepoLock.exclusive();
+        try {
+            Commands.add(paths);
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Commits the staged files with the message MSG and returns the new
+     *  commit's sha1. */
+    public String commit(String msg) {
+        RepoLock lock = RepoLock.exclusive();
+        try {
+            return Commands.commit(msg, null, null);
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Stages the file NAME for removal. */
+    public void rm(String name) {
+        RepoLock lock = RepoLock.exclusive();
+        try {
+            Commands.rm(name);
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Checks out the branch BRANCH. */
+    public void checkout(String branch) {
+        RepoLock lock = RepoLock.exclusive();
+        try {
+            Commands.checkoutBranch(branch);
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Overwrites the working file NAME with its version in the commit
+     *  whose id starts with ID, or in the current commit if ID is
+     *  null. */
+    public void checkoutFile(String name, String id) {
+        RepoLock lock = RepoLock.exclusive();
+        try {
+            Commands.checkoutFile(name, id);
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Checks out the commit whose id starts with ID on the current
+     *  branch. */
+    public void reset(String id) {
+        RepoLock lock = RepoLock.exclusive();
+        try {
+            Commands.reset(id);
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Creates the branch NAME at the current commit. */
+    public void branch(String name) {
+        RepoLock lock = RepoLock.exclusive();
+        try {
+            Commands.branch(name);
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Deletes the branch NAME. */
+    public void rmBranch(String name) {
+        RepoLock lock = RepoLock.exclusive();
+        try {
+            Commands.rmBranch(name);
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Merges the branch BRANCH into the current branch and returns how
+     *  the merge ended. */
+    public MergeResult merge(String branch) {
+        RepoLock lock = RepoLock.exclusive();
+        try {
+            return Commands.merge(branch);
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Returns the commits of the current branch, newest first. */
+    public List<LogEntry> log() {
+        RepoLock lock = RepoLock.shared();
+        try {
+            return Commands.log();
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Returns every commit in the repository. */
+    public List<LogEntry> globalLog() {
+        RepoLock lock = RepoLock.shared();
+        try {
+            return Commands.gloablLog();
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Returns the ids of the commits whose message is MSG. */
+    public List<String> find(String msg) {
+        RepoLock lock = RepoLock.shared();
+        try {
+            return Commands.find(msg);
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Returns the ids of the commits whose message contains WORD,
+     *  ignoring case. */
+    public List<String> findWord(String word) {
+        RepoLock lock = RepoLock.shared();
+        try {
+            return Commands.findWord(word);
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Writes unified diffs of the working files against the stage, or
+     *  against the current commit for files not staged, onto OUT. */
+    public void diff(OutputStream out) {
+        RepoLock lock = RepoLock.shared();
+        try {
+            Commands.diffWorking(out);
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Writes unified diffs of the stage against the current commit onto
+     *  OUT. */
+    public void diffStaged(OutputStream out) {
+        RepoLock lock = RepoLock.shared();
+        try {
+            Commands.diffStaged(out);
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Writes unified diffs from the commit whose id starts with FROM to
+     *  the one whose id starts with TO onto OUT. */
+    public void diff(String from, String to, OutputStream out) {
+        RepoLock lock = RepoLock.shared();
+        try {
+            Commands.diffCommits(from, to, out);
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Returns the status of the branches, the staging area and the
+     *  working directory. */
+    public Status status() {
+        RepoLock lock = RepoLock.shared();
+        try {
+            return Commands.status();
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Removes the loose objects that nothing refers to and that were
+     *  written more than GRACE milliseconds ago, or only reports what
+     *  would go if DRYRUN, and returns what was removed. */
+    public GcReport gc(long grace, boolean dryRun) {
+        RepoLock lock = RepoLock.exclusive();
+        try {
+            return Gc.collect(grace, dryRun);
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Checks every stored object, or with INCREMENTAL only those
+     *  written since the last clean check, and returns what was
+     *  found. */
+    public FsckReport fsck(boolean incremental) {
+        RepoLock lock = RepoLock.shared();
+        try {
+            return Fsck.run(incremental);
+        } finally {
+            lock.close();
+        }
+    }
+
+    /** Returns the working directory of this repository. */
+    public File getDir() {
+        return Main.CWD;
+    }
+
+    /** Writes the stat cache back and syncs whatever is still waiting to
+     *  be synced, under an exclusive lock so that neither runs into
+     *  another process's command. */
+    @Override
+    public void close() {
+        if (!StatCache.isDirty() && !Durable.hasPending()) {
+            return;
+        }
+        RepoLock lock = RepoLock.exclusive();
+        try {
+            StatCache.save();
+            Durable.sync();
+        } finally {
+            lock.close();
+        }
+    }
+}
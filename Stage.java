@@ -0,0 +1,209 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** The staging area in .gitlet/staging, read once per command and
+ *  written back whole by save. A stage kept in the older .gitlet/stage
+ *  folder is converted when first read.
+ *  @author Super Stressed McSad */
+class Stage {
+
+    /** The staging file. */
+    private static File staging = Utils.join(Main.CWD, ".gitlet", "staging");
+
+    /** The folder the stage was kept in before the staging file. */
+    private static File legacy = Utils.join(Main.CWD, ".gitlet", "stage");
+
+    /** Magic number at the start of the staging file, followed by
+     *  [addition count][name, raw sha1 pairs][removal count][names]. */
+    private static final int MAGIC = 0x47535447;
+
+    /** Returns the files staged for addition mapped to their blobs, in
+     *  sorted order. The result must not be changed. */
+    static TreeMap<String, String> additions() {
+        load();
+        return _additions;
+    }
+
+    /** Returns the files staged for removal, in sorted order. The result
+     *  must not be changed. */
+    static TreeSet<String> removals() {
+        load();
+        return _removals;
+    }
+
+    /** Returns true if nothing is staged. */
+    static boolean isEmpty() {
+        return additions().isEmpty() && removals().isEmpty();
+    }
+
+    /** Returns the blob staged for NAME, or null if it is not staged. */
+    static String staged(String name) {
+        return additions().get(name);
+    }
+
+    /** Stages the blob ID as NAME. */
+    static void add(String name, String id) {
+        if (!id.equals(additions().put(name, id))) {
+            _dirty = true;
+        }
+    }
+
+    /** Unstages the addition of NAME. */
+    static void unstage(String name) {
+        if (additions().remove(name) != null) {
+            _dirty = true;
+        }
+    }
+
+    /** Stages NAME for removal. */
+    static void remove(String name) {
+        if (removals().add(name)) {
+            _dirty = true;
+        }
+    }
+
+    /** Unstages the removal of NAME. */
+    static void unremove(String name) {
+        if (removals().remove(name)) {
+            _dirty = true;
+        }
+    }
+
+    /** Unstages everything. */
+    static void clear() {
+        if (!isEmpty()) {
+            _additions.clear();
+            _removals.clear();
+            _dirty = true;
+        }
+    }
+
+    /** Writes the staging file back if anything changed. */
+    static void save() {
+        Durable.Update update = new Durable.Update();
+        save(update);
+        update.commit();
+    }
+
+    /** Adds writing the staging file back, if anything changed, to
+     *  UPDATE, so that it is made along with the other changes there. */
+    static void save(Durable.Update update) {
+        if (!_dirty) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(_additions.size());
+            for (Map.Entry<String, String> entry : _additions.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.write(ObjectStore.unhex(entry.getValue()));
+            }
+            out.writeInt(_removals.size());
+            for (String name : _removals) {
+                out.writeUTF(name);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write the staging area.");
+        }
+        update.put(staging, bytes.toByteArray());
+        update.then(() -> {
+            _loadedFrom = staging.lastModified();
+            _dirty = false;
+        });
+    }
+
+    /** Forgets the stage read so far, so that the next use reads the
+     *  staging file again. */
+    static void reload() {
+        _additions = null;
+        _removals = null;
+        _dirty = false;
+    }
+
+    /** Reads the staging file unless it has already been read and has not
+     *  changed since. */
+    private static void load() {
+        if (_additions != null && _loadedFrom == staging.lastModified()) {
+            return;
+        }
+        _additions = new TreeMap<>();
+        _removals = new TreeSet<>();
+        _dirty = false;
+        _loadedFrom = staging.lastModified();
+        if (legacy.isDirectory()) {
+            convert();
+        } else if (staging.isFile()) {
+            read();
+        }
+    }
+
+    /** Reads the staging file into _additions and _removals. */
+    private static void read() {
+        Stats.read(staging.length());
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(staging)))) {
+            if (in.readInt() != MAGIC) {
+                throw Utils.error("Corrupt staging area.");
+            }
+            byte[] raw = new byte[Pack.SHA1_BYTES];
+            for (int count = in.readInt(); count > 0; count -= 1) {
+                String name = in.readUTF();
+                in.readFully(raw);
+                _additions.put(name, ObjectStore.hex(raw));
+            }
+            for (int count = in.readInt(); count > 0; count -= 1) {
+                _removals.add(in.readUTF());
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read the staging area.");
+        }
+    }
+
+    /** Moves a stage kept in the old folder, and the removals kept in
+     *  HEAD, into the staging file. */
+    private static void convert() {
+        File[] files = legacy.listFiles();
+        for (File file : files) {
+            _additions.put(file.getName(),
+                    Stats.readObject(file, String.class));
+        }
+        File head = Utils.join(Main.CWD, ".gitlet", "HEAD");
+        Commit current = CommitCodec.read(head);
+        _removals.addAll(current.getRms());
+        _dirty = true;
+        save();
+        if (!current.getRms().isEmpty()) {
+            current.getRms().clear();
+            byte[] encoded = CommitCodec.encode(current);
+            Utils.writeContents(head, encoded);
+            Stats.wrote(encoded.length);
+        }
+        for (File file : files) {
+            file.delete();
+        }
+        legacy.delete();
+    }
+
+    /** Files staged for addition, or null before the stage is read. */
+    private static TreeMap<String, String> _additions;
+
+    /** Files staged for removal, or null before the stage is read. */
+    private static TreeSet<String> _removals;
+
+    /** Modification time of the staging file when it was read. */
+    private static long _loadedFrom;
+
+    /** True if the stage has changed since it was read. */
+    private static boolean _dirty;
+}
@@ -0,0 +1,259 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** The index in .gitlet/index, which remembers the stat and sha1 of
+ *  files in the working directory so that unchanged files are not read
+ *  again.
+ *  @author Super Stressed McSad */
+class StatCache {
+
+    /** The index file. */
+    private static File index = Utils.join(Main.CWD, ".gitlet", "index");
+
+    /** Magic number at the start of the index. */
+    private static final int MAGIC = 0x47535431;
+
+    /** Entries modified less than this many nanoseconds before the index
+     *  was written are racy. Covers file systems with coarse times. */
+    private static final long RACY_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    /** Returns the sha1 of the working file NAME, hashing it only if its
+     *  stat no longer matches the index. */
+    static String sha1(String name) {
+        String cached = cached(name);
+        if (cached != null) {
+            return cached;
+        }
+        String sha1 = Hashing.sha1(Utils.join(Main.CWD, name));
+        record(name, sha1);
+        return sha1;
+    }
+
+    /** Returns the sha1 the index holds for the working file NAME, or
+     *  null if the file has changed since or the entry is racy. */
+    static String cached(String name) {
+        Entry entry = entries().get(name);
+        if (entry == null || entry.mtime() >= _savedAt - RACY_NANOS) {
+            return null;
+        }
+        Entry now = stat(name, entry.sha1());
+        if (now == null || !now.sameStat(entry)) {
+            return null;
+        }
+        return entry.sha1();
+    }
+
+    /** Records SHA1 as the contents of the working file NAME. */
+    static void record(String name, String sha1) {
+        Entry entry = stat(name, sha1);
+        if (entry != null) {
+            entries().put(name, entry);
+            _dirty = true;
+        }
+    }
+
+    /** Drops the entry for the working file NAME. */
+    static void forget(String name) {
+        if (entries().remove(name) != null) {
+            _dirty = true;
+        }
+    }
+
+    /** Returns true if the index has changed since it was read or
+     *  written. */
+    static boolean isDirty() {
+        return _dirty;
+    }
+
+    /** Writes the index back if anything changed, dropping entries for
+     *  files that are gone. Each writer uses a temporary file of its own,
+     *  so commands reading side by side can both save it. */
+    static void save() {
+        if (!_dirty || !index.getParentFile().isDirectory()) {
+            return;
+        }
+        Iterator<Map.Entry<String, Entry>> all =
+                _entries.entrySet().iterator();
+        while (all.hasNext()) {
+            if (!Utils.join(Main.CWD, all.next().getKey()).isFile()) {
+                all.remove();
+            }
+        }
+        long now = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        File tmp;
+        try {
+            tmp = File.createTempFile("index-", null, index.getParentFile());
+        } catch (IOException excp) {
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(now);
+            out.writeInt(_entries.size());
+            for (Map.Entry<String, Entry> e : _entries.entrySet()) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(entry.size());
+                out.writeLong(entry.mtime());
+                out.writeUTF(entry.key());
+                out.write(ObjectStore.unhex(entry.sha1()));
+            }
+        } catch (IOException excp) {
+            tmp.delete();
+            return;
+        }
+        try {
+            Files.move(tmp.toPath(), index.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            tmp.delete();
+            return;
+        }
+        Stats.wrote(index.length());
+        _savedAt = now;
+        _loadedFrom = index.lastModified();
+        _dirty = false;
+    }
+
+    /** Returns the entries of the index, reading it on first use. Reads
+     *  may come from several threads at once, but changes only from
+     *  one. */
+    private static synchronized HashMap<String, Entry> entries() {
+        if (_entries == null || _loadedFrom != index.lastModified()) {
+            _entries = new HashMap<>();
+            _savedAt = 0;
+            _dirty = false;
+            _loadedFrom = index.lastModified();
+            if (index.isFile()) {
+                load();
+            }
+        }
+        return _entries;
+    }
+
+    /** Reads the index file into _entries. A damaged index is treated
+     *  as an empty one. */
+    private static void load() {
+        Stats.read(index.length());
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(index)))) {
+            if (in.readInt() != MAGIC) {
+                return;
+            }
+            long savedAt = in.readLong();
+            int count = in.readInt();
+            byte[] raw = new byte[Pack.SHA1_BYTES];
+            for (int i = 0; i < count; i += 1) {
+                String name = in.readUTF();
+                long size = in.readLong();
+                long mtime = in.readLong();
+                String key = in.readUTF();
+                in.readFully(raw);
+                _entries.put(name, new Entry(size, mtime, key,
+                        ObjectStore.hex(raw)));
+            }
+            _savedAt = savedAt;
+        } catch (IOException excp) {
+            _entries.clear();
+        }
+    }
+
+    /** Returns an entry holding the current stat of the working file
+     *  NAME and SHA1, or null if it is not a regular file. */
+    private static Entry stat(String name, String sha1) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(
+                    Utils.join(Main.CWD, name).toPath(),
+                    BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) {
+                return null;
+            }
+            Object key = attrs.fileKey();
+            return new Entry(attrs.size(),
+                    attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                    key == null ? "" : key.toString(), sha1);
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** The cached stat and sha1 of one working file. */
+    private static class Entry {
+
+        /** An entry for a file of SIZE bytes last modified at MTIME
+         *  nanoseconds, with file key KEY and contents SHA1. */
+        Entry(long size, long mtime, String key, String sha1) {
+            _size = size;
+            _mtime = mtime;
+            _key = key;
+            _sha1 = sha1;
+        }
+
+        /** Returns true if OTHER has the same stat as this entry. */
+        boolean sameStat(Entry other) {
+            return _size == other._size && _mtime == other._mtime
+                    && _key.equals(other._key);
+        }
+
+        /** Returns the size of the file. */
+        long size() {
+            return _size;
+        }
+
+        /** Returns the modification time of the file in nanoseconds. */
+        long mtime() {
+            return _mtime;
+        }
+
+        /** Returns the file key, usually the device and inode. */
+        String key() {
+            return _key;
+        }
+
+        /** Returns the sha1 of the contents of the file. */
+        String sha1() {
+            return _sha1;
+        }
+
+        /** Size of the file. */
+        private long _size;
+
+        /** Modification time of the file in nanoseconds. */
+        private long _mtime;
+
+        /** File key of the file. */
+        private String _key;
+
+        /** Sha1 of the contents of the file. */
+        private String _sha1;
+    }
+
+    /** Entries of the index, or null before it is read. */
+    private static HashMap<String, Entry> _entries;
+
+    /** Time, in nanoseconds, at which the loaded index was written. */
+    private static long _savedAt;
+
+    /** Modification time of the index file when it was read. */
+    private static long _loadedFrom;
+
+    /** True if _entries has changed since it was read. */
+    private static boolean _dirty;
+}
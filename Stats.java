@@ -0,0 +1,319 @@
+package gitlet;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Instrumentation of a single command: the time it spends in each
+ *  phase and the I/O and work it does. Nothing is counted unless the
+ *  command is started with stats on, and results can be printed,
+ *  written as JSON or recorded as Flight Recorder events.
+ *  @author Super Stressed McSad */
+class Stats {
+
+    /** The things counted. */
+    enum Counter {
+        /** Bytes read from files. */
+        BYTES_READ("bytes read"),
+        /** Bytes written to files. */
+        BYTES_WRITTEN("bytes written"),
+        /** Files opened for reading or writing. */
+        FILES_OPENED("files opened"),
+        /** Commits and trees decoded from their stored form. */
+        OBJECTS_DECODED("objects decoded"),
+        /** Sha1 hashes computed. */
+        HASHES("hashes"),
+        /** Directories listed. */
+        DIRS_LISTED("dirs listed");
+
+        /** A counter described as LABEL. */
+        Counter(String label) {
+            _label = label;
+        }
+
+        /** Returns the description of this counter. */
+        String label() {
+            return _label;
+        }
+
+        /** Returns the name of this counter in a metrics file. */
+        String key() {
+            return name().toLowerCase();
+        }
+
+        /** The description of this counter. */
+        private final String _label;
+    }
+
+    /** A phase being timed, which ends when it is closed. */
+    static class Phase implements AutoCloseable {
+
+        /** The phase NAME, starting now. */
+        Phase(String name) {
+            _name = name;
+            _start = System.nanoTime();
+            _event = new PhaseEvent();
+            _event.name = name;
+            _event.begin();
+            synchronized (PHASES) {
+                PHASES.computeIfAbsent(name, n -> new long[2]);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (_name == null) {
+                return;
+            }
+            long elapsed = System.nanoTime() - _start;
+            _event.end();
+            _event.commit();
+            synchronized (PHASES) {
+                PHASES.get(_name)[0] += elapsed;
+                PHASES.get(_name)[1] += 1;
+            }
+        }
+
+        /** The phase that times nothing, used while stats are off. */
+        private Phase() {
+            _name = null;
+            _start = 0;
+            _event = null;
+        }
+
+        /** Name of this phase, or null if it is not timed. */
+        private final String _name;
+
+        /** When this phase started, in nanoseconds. */
+        private final long _start;
+
+        /** The Flight Recorder event for this phase. */
+        private final PhaseEvent _event;
+    }
+
+    /** A Flight Recorder event for one phase of a command. */
+    @Name("gitlet.Phase")
+    @Label("Gitlet Phase")
+    @Category("Gitlet")
+    @Description("One phase of a gitlet command.")
+    static class PhaseEvent extends Event {
+        /** The name of the phase. */
+        @Label("Phase")
+        String name;
+    }
+
+    /** A Flight Recorder event for a whole command. */
+    @Name("gitlet.Command")
+    @Label("Gitlet Command")
+    @Category("Gitlet")
+    @Description("A gitlet command and the I/O and work it did.")
+    static class CommandEvent extends Event {
+        /** The command run. */
+        @Label("Command")
+        String command;
+
+        /** Bytes read from files. */
+        @Label("Bytes Read")
+        @DataAmount
+        long bytesRead;
+
+        /** Bytes written to files. */
+        @Label("Bytes Written")
+        @DataAmount
+        long bytesWritten;
+
+        /** Files opened. */
+        @Label("Files Opened")
+        long filesOpened;
+
+        /** Commits and trees decoded. */
+        @Label("Objects Decoded")
+        long objectsDecoded;
+
+        /** Sha1 hashes computed. */
+        @Label("Hashes")
+        long hashes;
+
+        /** Directories listed. */
+        @Label("Directories Listed")
+        long dirsListed;
+    }
+
+    /** Starts counting for the command COMMAND if PRINT, if METRICS is
+     *  not null or if Flight Recorder is recording gitlet events. At the
+     *  end, the summary is printed if PRINT and the metrics written to
+     *  METRICS unless it is null. */
+    static void start(String command, boolean print, File metrics) {
+        _command = command;
+        _print = print;
+        _metrics = metrics;
+        _on = print || metrics != null
+                || new CommandEvent().isEnabled();
+        if (_on) {
+            for (LongAdder counter : COUNTERS) {
+                counter.reset();
+            }
+            synchronized (PHASES) {
+                PHASES.clear();
+            }
+            _event = new CommandEvent();
+            _event.command = command;
+            _event.begin();
+            _start = System.nanoTime();
+        }
+    }
+
+    /** Ends counting for the command being run and reports the results
+     *  as asked when it started. */
+    static void finish() {
+        if (!_on) {
+            return;
+        }
+        _on = false;
+        long elapsed = System.nanoTime() - _start;
+        _event.end();
+        _event.bytesRead = get(Counter.BYTES_READ);
+        _event.bytesWritten = get(Counter.BYTES_WRITTEN);
+        _event.filesOpened = get(Counter.FILES_OPENED);
+        _event.objectsDecoded = get(Counter.OBJECTS_DECODED);
+        _event.hashes = get(Counter.HASHES);
+        _event.dirsListed = get(Counter.DIRS_LISTED);
+        _event.commit();
+        if (_print) {
+            print(System.out, elapsed);
+        }
+        if (_metrics != null) {
+            Utils.writeContents(_metrics, json(elapsed));
+        }
+    }
+
+    /** Adds N to COUNTER. */
+    static void count(Counter counter, long n) {
+        if (_on) {
+            COUNTERS[counter.ordinal()].add(n);
+        }
+    }
+
+    /** Counts a file opened and BYTES read from it. */
+    static void read(long bytes) {
+        if (_on) {
+            COUNTERS[Counter.FILES_OPENED.ordinal()].increment();
+            COUNTERS[Counter.BYTES_READ.ordinal()].add(bytes);
+        }
+    }
+
+    /** Counts a file opened and BYTES written to it. */
+    static void wrote(long bytes) {
+        if (_on) {
+            COUNTERS[Counter.FILES_OPENED.ordinal()].increment();
+            COUNTERS[Counter.BYTES_WRITTEN.ordinal()].add(bytes);
+        }
+    }
+
+    /** Returns the object of class TYPE stored in FILE, such as a ref,
+     *  counting the read. */
+    static <T extends Serializable> T readObject(File file, Class<T> type) {
+        T result = Utils.readObject(file, type);
+        if (_on) {
+            read(file.length());
+        }
+        return result;
+    }
+
+    /** Returns the phase NAME, starting now, to be closed when it ends.
+     *  The time of a phase is added to any earlier ones of the same
+     *  name, and phases may nest. */
+    static Phase phase(String name) {
+        return _on ? new Phase(name) : OFF;
+    }
+
+    /** Returns the count of COUNTER so far. */
+    static long get(Counter counter) {
+        return COUNTERS[counter.ordinal()].sum();
+    }
+
+    /** Prints the summary of a command that took ELAPSED nanoseconds
+     *  on OUT. */
+    private static void print(PrintStream out, long elapsed) {
+        out.printf("=== Stats: %s, %.3f ms ===%n", _command, elapsed / 1e6);
+        synchronized (PHASES) {
+            for (Map.Entry<String, long[]> phase : PHASES.entrySet()) {
+                out.printf("%-16s %12.3f ms  x%d%n", phase.getKey(),
+                        phase.getValue()[0] / 1e6, phase.getValue()[1]);
+            }
+        }
+        for (Counter counter : Counter.values()) {
+            out.printf("%-16s %12d%n", counter.label(), get(counter));
+        }
+    }
+
+    /** Returns the metrics of a command that took ELAPSED nanoseconds,
+     *  as JSON. */
+    private static String json(long elapsed) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"command\": \"").append(_command.replace("\\", "\\\\")
+                .replace("\"", "\\\"")).append("\", ");
+        json.append(String.format("\"ms\": %.3f, ", elapsed / 1e6));
+        for (Counter counter : Counter.values()) {
+            json.append('"').append(counter.key()).append("\": ")
+                    .append(get(counter)).append(", ");
+        }
+        json.append("\"phases\": {");
+        String sep = "";
+        synchronized (PHASES) {
+            for (Map.Entry<String, long[]> phase : PHASES.entrySet()) {
+                json.append(sep).append(String.format(
+                        "\"%s\": {\"ms\": %.3f, \"count\": %d}",
+                        phase.getKey(), phase.getValue()[0] / 1e6,
+                        phase.getValue()[1]));
+                sep = ", ";
+            }
+        }
+        return json.append("}}\n").toString();
+    }
+
+    /** The phase returned while stats are off. */
+    private static final Phase OFF = new Phase();
+
+    /** The counters, by ordinal. */
+    private static final LongAdder[] COUNTERS =
+            new LongAdder[Counter.values().length];
+
+    static {
+        for (int i = 0; i < COUNTERS.length; i += 1) {
+            COUNTERS[i] = new LongAdder();
+        }
+    }
+
+    /** Total nanoseconds and number of runs of each phase, by name, in
+     *  the order they first started. */
+    private static final LinkedHashMap<String, long[]> PHASES =
+            new LinkedHashMap<>();
+
+    /** Whether stats are being kept. */
+    private static volatile boolean _on;
+
+    /** The command being run. */
+    private static String _command;
+
+    /** Whether to print a summary at the end. */
+    private static boolean _print;
+
+    /** Where to write the metrics at the end, or null. */
+    private static File _metrics;
+
+    /** When the command started, in nanoseconds. */
+    private static long _start;
+
+    /** The Flight Recorder event for the command. */
+    private static CommandEvent _event;
+}
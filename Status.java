@@ -0,0 +1,73 @@
+package gitlet;
+
+import java.util.Collections;
+import java.util.List;
+
+/** The state of the branches, staging area and working directory, as
+ *  reported by status. Every list is sorted and cannot be changed.
+ *  @author Super Stressed McSad */
+public class Status {
+
+    /** The status of a repository on the branch BRANCH out of BRANCHES,
+     *  with STAGED and REMOVED files staged, MODIFIED files changed but
+     *  not staged and UNTRACKED files untracked. */
+    Status(String branch, List<String> branches, List<String> staged,
+           List<String> removed, List<String> modified,
+           List<String> untracked) {
+        _branch = branch;
+        _branches = Collections.unmodifiableList(branches);
+        _staged = Collections.unmodifiableList(staged);
+        _removed = Collections.unmodifiableList(removed);
+        _modified = Collections.unmodifiableList(modified);
+        _untracked = Collections.unmodifiableList(untracked);
+    }
+
+    /** Returns the current branch. */
+    public String getBranch() {
+        return _branch;
+    }
+
+    /** Returns every branch. */
+    public List<String> getBranches() {
+        return _branches;
+    }
+
+    /** Returns the files staged for addition. */
+    public List<String> getStaged() {
+        return _staged;
+    }
+
+    /** Returns the files staged for removal. */
+    public List<String> getRemoved() {
+        return _removed;
+    }
+
+    /** Returns the tracked or staged files whose working copy has changed
+     *  or been deleted without the change being staged. */
+    public List<String> getModified() {
+        return _modified;
+    }
+
+    /** Returns the working files that are neither tracked nor staged. */
+    public List<String> getUntracked() {
+        return _untracked;
+    }
+
+    /** Current branch. */
+    private final String _branch;
+
+    /** All branches. */
+    private final List<String> _branches;
+
+    /** Files staged for addition. */
+    private final List<String> _staged;
+
+    /** Files staged for removal. */
+    private final List<String> _removed;
+
+    /** Modifications not staged for commit. */
+    private final List<String> _modified;
+
+    /** Untracked files. */
+    private final List<String> _untracked;
+}
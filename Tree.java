@@ -0,0 +1,202 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Content addressed tree objects, one per directory, mapping each name
+ *  to the sha1 of a blob or, for names ending in '/', of a subtree.
+ *  Equal directories have equal ids, so commits share them.
+ *  @author Super Stressed McSad */
+class Tree {
+
+    /** Magic number at the start of every tree, followed by the entry
+     *  count and each entry's name and raw sha1 in sorted order. */
+    private static final int MAGIC = 0x47545231;
+
+    /** Sha1 of the tree of an empty directory, which is never stored. */
+    static final String EMPTY = Utils.sha1(encode(new TreeMap<>()));
+
+    /** Returns the root tree of COMMIT, storing trees for it first if it
+     *  was made before trees existed. */
+    static String of(Commit commit) {
+        if (commit.getTree() != null) {
+            return commit.getTree();
+        }
+        return update(EMPTY, commit.getBlobs());
+    }
+
+    /** Returns the entries of the tree ID. */
+    static TreeMap<String, String> read(String id) {
+        if (id.equals(EMPTY)) {
+            return new TreeMap<>();
+        }
+        return decode(id, ObjectStore.readTree(id));
+    }
+
+    /** Returns the entries of the tree ID stored as DATA. */
+    static TreeMap<String, String> decode(String id, byte[] data) {
+        Stats.count(Stats.Counter.OBJECTS_DECODED, 1);
+        TreeMap<String, String> entries = new TreeMap<>();
+        ByteBuffer in = ByteBuffer.wrap(data);
+        if (data.length < 8 || in.getInt() != MAGIC) {
+            throw Utils.error("Corrupt tree %s.", id);
+        }
+        for (int count = in.getInt(); count > 0; count -= 1) {
+            int length = in.remaining() < 4 ? -1 : in.getInt();
+            if (length < 0 || length + Pack.SHA1_BYTES > in.remaining()) {
+                throw Utils.error("Corrupt tree %s.", id);
+            }
+            byte[] name = new byte[length];
+            in.get(name);
+            byte[] raw = new byte[Pack.SHA1_BYTES];
+            in.get(raw);
+            entries.put(new String(name, StandardCharsets.UTF_8),
+                    ObjectStore.hex(raw));
+        }
+        return entries;
+    }
+
+    /** Stores the tree holding ENTRIES if it is not stored yet and
+     *  returns its sha1. */
+    static String write(TreeMap<String, String> entries) {
+        byte[] data = encode(entries);
+        Stats.count(Stats.Counter.HASHES, 1);
+        String id = Utils.sha1(data);
+        if (!id.equals(EMPTY) && !ObjectStore.hasTree(id)) {
+            ObjectStore.writeTree(id, data);
+        }
+        return id;
+    }
+
+    /** Returns the sha1 of the blob at PATH under the tree ROOT, or null
+     *  if there is none. */
+    static String blob(String root, String path) {
+        String id = root;
+        int start = 0;
+        for (int slash = path.indexOf('/'); slash >= 0;
+             slash = path.indexOf('/', start)) {
+            id = read(id).get(path.substring(start, slash + 1));
+            if (id == null) {
+                return null;
+            }
+            start = slash + 1;
+        }
+        return read(id).get(path.substring(start));
+    }
+
+    /** Returns every path under the tree ROOT mapped to its blob. */
+    static HashMap<String, String> flatten(String root) {
+        HashMap<String, String> result = new HashMap<>();
+        flatten(root, "", result);
+        return result;
+    }
+
+    /** Adds each path under the tree ID to RESULT, prefixed by PREFIX. */
+    private static void flatten(String id, String prefix,
+                                HashMap<String, String> result) {
+        for (Map.Entry<String, String> entry : read(id).entrySet()) {
+            if (entry.getKey().endsWith("/")) {
+                flatten(entry.getValue(), prefix + entry.getKey(), result);
+            } else {
+                result.put(prefix + entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /** Returns the sha1 of the tree ROOT after setting each path in
+     *  CHANGES to its blob, or removing it where the blob is null.
+     *  Only the trees on the way to a changed path are written, and
+     *  directories left empty are dropped. */
+    static String update(String root, Map<String, String> changes) {
+        if (changes.isEmpty()) {
+            return root;
+        }
+        TreeMap<String, String> entries = read(root);
+        HashMap<String, HashMap<String, String>> below = new HashMap<>();
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            String path = change.getKey();
+            int slash = path.indexOf('/');
+            if (slash >= 0) {
+                below.computeIfAbsent(path.substring(0, slash + 1),
+                    k -> new HashMap<>()).put(path.substring(slash + 1),
+                        change.getValue());
+            } else if (change.getValue() == null) {
+                entries.remove(path);
+            } else {
+                entries.put(path, change.getValue());
+            }
+        }
+        for (Map.Entry<String, HashMap<String, String>> dir
+                 : below.entrySet()) {
+            String sub = update(entries.getOrDefault(dir.getKey(), EMPTY),
+                    dir.getValue());
+            if (sub.equals(EMPTY)) {
+                entries.remove(dir.getKey());
+            } else {
+                entries.put(dir.getKey(), sub);
+            }
+        }
+        return write(entries);
+    }
+
+    /** Returns every path whose blob differs between the trees FROM and
+     *  TO, mapped to its blob in FROM and in TO, either of which is null
+     *  where the path is missing. Subtrees with equal ids are skipped
+     *  without being read. */
+    static TreeMap<String, String[]> diff(String from, String to) {
+        TreeMap<String, String[]> result = new TreeMap<>();
+        diff(from, to, "", result);
+        return result;
+    }
+
+    /** Adds the paths that differ between the trees FROM and TO, prefixed
+     *  by PREFIX, to RESULT. */
+    private static void diff(String from, String to, String prefix,
+                             TreeMap<String, String[]> result) {
+        if (from.equals(to)) {
+            return;
+        }
+        TreeMap<String, String> a = read(from);
+        TreeMap<String, String> b = read(to);
+        TreeSet<String> names = new TreeSet<>(a.keySet());
+        names.addAll(b.keySet());
+        for (String name : names) {
+            String x = a.get(name);
+            String y = b.get(name);
+            if (x != null && x.equals(y)) {
+                continue;
+            }
+            if (name.endsWith("/")) {
+                diff(x == null ? EMPTY : x, y == null ? EMPTY : y,
+                        prefix + name, result);
+            } else {
+                result.put(prefix + name, new String[] {x, y});
+            }
+        }
+    }
+
+    /** Returns the stored form of a tree holding ENTRIES. */
+    private static byte[] encode(TreeMap<String, String> entries) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(name.length);
+                out.write(name);
+                out.write(ObjectStore.unhex(entry.getValue()));
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Internal error encoding tree.");
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,167 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/** Writes the differences between two versions of a file in unified
+ *  diff format, with up to CONTEXT unchanged lines around each change.
+ *  Binary files, and files longer than LIMIT, are only reported as
+ *  different.
+ *  @author Super Stressed McSad */
+class UnifiedDiff {
+
+    /** Number of unchanged lines shown around each change. */
+    static final int CONTEXT = 3;
+
+    /** Longest file, in bytes, that is compared line by line. Both
+     *  versions are held in memory while they are compared, so this
+     *  bounds the heap a diff needs. */
+    static final long LIMIT = Long.getLong("gitlet.diffLimit", 8L << 20);
+
+    /** Number of bytes looked at to decide whether a file is binary. */
+    private static final int BINARY_PEEK = 8000;
+
+    /** Writes the differences between FROM and TO, the old and new
+     *  contents of the file NAME, onto OUT. FROM or TO is null where the
+     *  file does not exist. */
+    static void write(String name, byte[] from, byte[] to, OutputStream out)
+            throws IOException {
+        byte[] a = from == null ? new byte[0] : from;
+        byte[] b = to == null ? new byte[0] : to;
+        if (binary(a) || binary(b)) {
+            differ(name, from != null, to != null, out);
+            return;
+        }
+        header(name, from != null, to != null, out);
+        HashMap<Diff.Line, Integer> table = new HashMap<>();
+        Diff.Lines x = new Diff.Lines(a, table);
+        Diff.Lines y = new Diff.Lines(b, table);
+        int[] match = Diff.matches(x.ids(), y.ids());
+        print(out, "--- " + label("a/", name, from != null) + "\n");
+        print(out, "+++ " + label("b/", name, to != null) + "\n");
+
+        int n = x.size();
+        int i = 0;
+        int j = 0;
+        int hunkEnd = 0;
+        ArrayList<int[]> changes = new ArrayList<>();
+        while (i < n || j < y.size()) {
+            if (i < n && match[i] == j) {
+                i += 1;
+                j += 1;
+                continue;
+            }
+            int iEnd = i;
+            while (iEnd < n && match[iEnd] < 0) {
+                iEnd += 1;
+            }
+            int jEnd = iEnd < n ? match[iEnd] : y.size();
+            if (!changes.isEmpty() && i - hunkEnd > 2 * CONTEXT) {
+                hunk(out, x, y, changes);
+                changes.clear();
+            }
+            changes.add(new int[] {i, iEnd, j, jEnd});
+            hunkEnd = iEnd;
+            i = iEnd;
+            j = jEnd;
+        }
+        if (!changes.isEmpty()) {
+            hunk(out, x, y, changes);
+        }
+    }
+
+    /** Writes onto OUT that the file NAME differs between its old and
+     *  new versions, without comparing them. BEFORE and AFTER are false
+     *  where the file does not exist. */
+    static void differ(String name, boolean before, boolean after,
+                       OutputStream out) throws IOException {
+        header(name, before, after, out);
+        print(out, "Binary files " + label("a/", name, before) + " and "
+                + label("b/", name, after) + " differ\n");
+    }
+
+    /** Writes the line naming the file NAME onto OUT, followed by a note
+     *  if it is new, as when not BEFORE, or deleted, as when not AFTER. */
+    private static void header(String name, boolean before, boolean after,
+                               OutputStream out) throws IOException {
+        print(out, "diff --git a/" + name + " b/" + name + "\n");
+        if (!before) {
+            print(out, "new file\n");
+        } else if (!after) {
+            print(out, "deleted file\n");
+        }
+    }
+
+    /** Writes one hunk covering the changed stretches CHANGES, each
+     *  {X start, X end, Y start, Y end}, between X and Y onto OUT, with
+     *  context around them. */
+    private static void hunk(OutputStream out, Diff.Lines x, Diff.Lines y,
+                             ArrayList<int[]> changes) throws IOException {
+        int[] head = changes.get(0);
+        int[] tail = changes.get(changes.size() - 1);
+        int first = Math.max(0, head[0] - CONTEXT);
+        int last = Math.min(x.size(), tail[1] + CONTEXT);
+        int yFirst = head[2] - (head[0] - first);
+        int yLast = tail[3] + (last - tail[1]);
+        print(out, "@@ -" + range(first, last - first) + " +"
+                + range(yFirst, yLast - yFirst) + " @@\n");
+        int i = first;
+        for (int[] change : changes) {
+            lines(out, ' ', x, i, change[0]);
+            lines(out, '-', x, change[0], change[1]);
+            lines(out, '+', y, change[2], change[3]);
+            i = change[1];
+        }
+        lines(out, ' ', x, i, last);
+    }
+
+    /** Writes lines FROM up to TO of FILE onto OUT, each prefixed by
+     *  PREFIX. */
+    private static void lines(OutputStream out, char prefix, Diff.Lines file,
+                              int from, int to) throws IOException {
+        for (int line = from; line < to; line += 1) {
+            out.write(prefix);
+            file.write(out, line, line + 1);
+            if (line == file.size() - 1 && file.unterminated()) {
+                print(out, "\n\\ No newline at end of file\n");
+            }
+        }
+    }
+
+    /** Returns the hunk header range of COUNT lines from line START,
+     *  counting from 0. */
+    private static String range(int start, int count) {
+        if (count == 0) {
+            return start + ",0";
+        } else if (count == 1) {
+            return Integer.toString(start + 1);
+        }
+        return (start + 1) + "," + count;
+    }
+
+    /** Returns the name shown for NAME on the side with prefix PREFIX,
+     *  which is /dev/null unless the file EXISTS there. */
+    private static String label(String prefix, String name,
+                                boolean exists) {
+        return exists ? prefix + name : "/dev/null";
+    }
+
+    /** Returns true if DATA holds a NUL byte near its start. */
+    private static boolean binary(byte[] data) {
+        for (int i = 0; i < Math.min(data.length, BINARY_PEEK); i += 1) {
+            if (data[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Writes TEXT onto OUT. */
+    private static void print(OutputStream out, String text)
+            throws IOException {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -3,7 +3,23 @@ package gitlet;
 import ucb.junit.textui;
 import org.junit.Test;
 import static org.junit.Assert.*;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 /** The suite of all JUnit tests for the gitlet package.
  *  @author
@@ -20,9 +36,6 @@ public class UnitTest {
      * the commits that have been made. */
     private static File commits = Utils.join(gitlet, "commits");
 
-    /** The staging folder. */
-    private static File stage = Utils.join(gitlet, "stage");
-
     /** The current branch. */
     private static File headRef = Utils.join(gitlet, "HEAD_REF");
 
@@ -36,6 +49,45 @@ public class UnitTest {
     /** The folder containing all of the blobs that have ever been staged. */
     private static File blobs = Utils.join(gitlet, "blobs");
 
+    /** The contents of wug.txt in the legacy commits. */
+    private static final String LEGACY_WUG = "This is wug.\nline2 of wug\n";
+
+    /** The blob of LEGACY_WUG. */
+    private static final String LEGACY_WUG_ID =
+            "cb1cca19a76890fc91ffc10d8dd234ce89bc83ca";
+
+    /** A commit tracking wug.txt on top of the initial commit, as Java
+     *  serialization wrote it before commits had trees. */
+    private static final String LEGACY_COMMIT = "rO0ABXNyAA1naXRsZXQuQ29"
+            + "tbWl01oD32F9DqbYCAAhMAAdfYXV0aG9ydAASTGphdmEvbGFuZy9TdHJp"
+            + "bmc7TAAGX2Jsb2JzdAATTGphdmEvdXRpbC9IYXNoTWFwO0wAB19icmFuY2"
+            + "hxAH4AAUwABV9kYXRldAAQTGphdmEvdXRpbC9EYXRlO0wABF9tc2dxAH4A"
+            + "AUwACF9wYXJlbnQxcQB+AAFMAAhfcGFyZW50MnEAfgABTAAEX3Jtc3QAE0"
+            + "xqYXZhL3V0aWwvSGFzaFNldDt4cHQAAk1Qc3IAEWphdmEudXRpbC5IYXNo"
+            + "TWFwBQfawcMWYNEDAAJGAApsb2FkRmFjdG9ySQAJdGhyZXNob2xkeHA/QA"
+            + "AAAAAADHcIAAAAEAAAAAF0AAd3dWcudHh0dAAoY2IxY2NhMTlhNzY4OTBm"
+            + "YzkxZmZjMTBkOGRkMjM0Y2U4OWJjODNjYXh0AAZtYXN0ZXJzcgAOamF2YS"
+            + "51dGlsLkRhdGVoaoEBS1l0GQMAAHhwdwgAAAF0h26AAHh0AAZsZWdhY3l0"
+            + "ACg3MjViNDUxOWVmY2RjNDllYzYwOTExNjhlNTA2NGQ5N2UxNzY5NGEwcH"
+            + "NyABFqYXZhLnV0aWwuSGFzaFNldLpEhZWWuLc0AwAAeHB3DAAAABA/QAAA"
+            + "AAAAAHg=";
+
+    /** The same commit as LEGACY_COMMIT as Java serialization wrote it
+     *  to HEAD once commits had trees. */
+    private static final String LEGACY_HEAD = "rO0ABXNyAA1naXRsZXQuQ29tb"
+            + "Wl01oD32F9DqbYCAAlMAAdfYXV0aG9ydAASTGphdmEvbGFuZy9TdHJpbm"
+            + "c7TAAGX2Jsb2JzdAATTGphdmEvdXRpbC9IYXNoTWFwO0wAB19icmFuY2hx"
+            + "AH4AAUwABV9kYXRldAAQTGphdmEvdXRpbC9EYXRlO0wABF9tc2dxAH4AAU"
+            + "wACF9wYXJlbnQxcQB+AAFMAAhfcGFyZW50MnEAfgABTAAEX3Jtc3QAE0xq"
+            + "YXZhL3V0aWwvSGFzaFNldDtMAAVfdHJlZXEAfgABeHB0AAJNUHNyABFqYX"
+            + "ZhLnV0aWwuSGFzaE1hcAUH2sHDFmDRAwACRgAKbG9hZEZhY3RvckkACXRo"
+            + "cmVzaG9sZHhwP0AAAAAAAAx3CAAAABAAAAABdAAHd3VnLnR4dHQAKGNiMW"
+            + "NjYTE5YTc2ODkwZmM5MWZmYzEwZDhkZDIzNGNlODliYzgzY2F4dAAGbWFz"
+            + "dGVyc3IADmphdmEudXRpbC5EYXRlaGqBAUtZdBkDAAB4cHcIAAABdIdugA"
+            + "B4dAAGbGVnYWN5dAAoNzI1YjQ1MTllZmNkYzQ5ZWM2MDkxMTY4ZTUwNjRk"
+            + "OTdlMTc2OTRhMHBzcgARamF2YS51dGlsLkhhc2hTZXS6RIWVlri3NAMAAH"
+            + "hwdwwAAAAQP0AAAAAAAAB4cA==";
+
     /** Run the JUnit tests in the loa package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
@@ -124,8 +176,8 @@ public class UnitTest {
         Main.main("commit", "added wug1");
         String sha1one = Utils.sha1(Utils.readContentsAsString(
                 Utils.join(CWD, "wug.txt")));
-        String sha1commit1 = Utils.sha1(Utils.serialize(
-                Utils.readObject(head, Commit.class)));
+        String sha1commit1 = CommitCodec.sha1(
+                CommitCodec.read(head));
         Main.main("branch", "cool-beans");
         Main.main("checkout", "cool-beans");
         Utils.writeContents(Utils.join(CWD, "wug.txt"),
@@ -134,13 +186,13 @@ public class UnitTest {
         Main.main("commit", "added wug2");
         String sha1three = Utils.sha1(Utils.readContentsAsString(
                 Utils.join(CWD, "wug.txt")));
-        String sha1commit3 = Utils.sha1(Utils.serialize(
-                Utils.readObject(head, Commit.class)));
+        String sha1commit3 = CommitCodec.sha1(
+                CommitCodec.read(head));
         Main.main("checkout", "master");
         String sha1two = Utils.sha1(Utils.readContentsAsString(Utils.join(
                 CWD, "wug.txt")));
-        String sha1commit2 = Utils.sha1(Utils.serialize(
-                Utils.readObject(head, Commit.class)));
+        String sha1commit2 = CommitCodec.sha1(
+                CommitCodec.read(head));
 
         assertEquals(sha1one, sha1two);
         assertEquals(sha1commit1, sha1commit2);
@@ -153,8 +205,8 @@ public class UnitTest {
         Main.main("checkout", "cool-beans");
         String sha1four = Utils.sha1(Utils.readContentsAsString(
                 Utils.join(CWD, "wug.txt")));
-        String sha1commit4 = Utils.sha1(Utils.serialize(
-                Utils.readObject(head, Commit.class)));
+        String sha1commit4 = CommitCodec.sha1(
+                CommitCodec.read(head));
 
         assertEquals(sha1three, sha1four);
         assertEquals(sha1commit4, sha1commit3);
@@ -186,15 +238,247 @@ public class UnitTest {
         Main.main("rm", "wug.txt");
         Main.main("rm", "wug2.txt");
         assertEquals(1, CWD.list(new Commands.FileCheck()).length);
-        assertEquals(1, stage.list().length);
-        assertEquals(4, blobs.list().length);
-        assertEquals(2, Utils.readObject(head, Commit.class).getRms().size());
+        assertEquals(1, Stage.additions().size());
+        assertEquals(5, blobs.list().length);
+        assertEquals(2, Stage.removals().size());
         Main.main("commit", "set back to just wug.txt");
-        assertEquals(0, Utils.readObject(head, Commit.class).getRms().size());
-        assertEquals(1, Utils.readObject(head,
-                Commit.class).getBlobs().size());
-        assertEquals(4, blobs.list().length);
+        assertEquals(0, Stage.removals().size());
+        assertEquals(1, CommitCodec.read(head).getBlobs().size());
+        assertEquals(5, blobs.list().length);
+
+        gitletReset();
+    }
+
+    @Test
+    public void repackTest() throws IOException {
+        gitletReset();
+        Main.main("init");
+        Utils.writeContents(Utils.join(CWD, "wug.txt"),
+                Utils.readContents(getFile("wug.txt")));
+        Main.main("add", "wug.txt");
+        Main.main("commit", "added wug1");
+        String sha1commit1 = Utils.readObject(Utils.join(refs,
+                Utils.readObject(headRef, String.class)), String.class);
+        Utils.writeContents(Utils.join(CWD, "wug.txt"),
+                Utils.readContents(getFile("wug2.txt")));
+        Main.main("add", "wug.txt");
+        Main.main("commit", "added wug2");
+        Main.main("repack");
+        assertEquals(0, blobs.list().length);
+        assertEquals(0, commits.list().length);
+        Main.main("checkout", sha1commit1, "--", "wug.txt");
+        assertEquals(Utils.readContentsAsString(getFile("wug.txt")),
+                Utils.readContentsAsString(Utils.join(CWD, "wug.txt")));
+        Main.main("reset", sha1commit1.substring(0, 8));
+        assertEquals(sha1commit1, Utils.readObject(Utils.join(refs,
+                Utils.readObject(headRef, String.class)), String.class));
+
+        File packs = Utils.join(gitlet, "packs");
+        Pack pack = Pack.openAll(packs).get(0);
+        try (RandomAccessFile file = new RandomAccessFile(pack.packFile(),
+                "rw")) {
+            file.setLength(file.length() - 1);
+        }
+        try {
+            pack.read(pack.size() - 1);
+            fail("read past the end of a pack");
+        } catch (GitletException excp) {
+            assertTrue(excp.getMessage().endsWith("is truncated."));
+        } finally {
+            pack.close();
+        }
+        gitletReset();
+    }
+
+    @Test
+    public void deltaTest() {
+        byte[] base = Utils.readContents(getFile("wug.txt"));
+        byte[] target = (new String(base) + "one more wug\n").getBytes();
+        assertArrayEquals(target, Delta.apply(base,
+                Delta.create(base, target)));
+        assertArrayEquals(base, Delta.apply(target,
+                Delta.create(target, base)));
+    }
+
+    @Test
+    public void deltaDepthTest() {
+        gitletReset();
+        ObjectStore.setMaxDepth(Integer.MAX_VALUE);
+        File file = Utils.join(CWD, "wug.txt");
+        try (Repository repo = Repository.init()) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 200; i += 1) {
+                text.append("line ").append(i).append(" of wug\n");
+            }
+            String id = null;
+            int longest = 0;
+            for (int v = 0; v <= ObjectStore.MAX_DEPTH + 5; v += 1) {
+                text.append("version ").append(v).append("\n");
+                Utils.writeContents(file, text.toString());
+                repo.add(file.getName());
+                repo.commit("version " + v);
+                id = ObjectStore.readCommit(Utils.readObject(
+                        Utils.join(refs, "master"), String.class))
+                        .blob(file.getName());
+                int chain = 0;
+                for (String base = ObjectStore.looseDeltaBase(id);
+                     base != null;
+                     base = ObjectStore.looseDeltaBase(base)) {
+                    chain += 1;
+                }
+                longest = Math.max(longest, chain);
+            }
+            assertEquals(ObjectStore.MAX_DEPTH, longest);
+            ObjectStore.BLOBS.clear();
+            assertEquals(text.toString(),
+                    new String(ObjectStore.readBlob(id)));
+        } finally {
+            ObjectStore.setMaxDepth(ObjectStore.DEFAULT_DEPTH);
+            file.delete();
+        }
+        gitletReset();
+    }
+
+    @Test
+    public void largeAddTest() throws IOException, InterruptedException {
+        gitletReset();
+        File big = Utils.join(CWD, "wug-big.txt");
+        try (Repository repo = Repository.init()) {
+            byte[] contents = new byte[40 << 20];
+            for (int i = 0; i < contents.length; i += 1) {
+                contents[i] = (byte) ('a' + i % 26);
+            }
+            Utils.writeContents(big, contents);
+            repo.add(big.getName());
+            repo.commit("added a big wug");
+            contents[1000] = '!';
+            Utils.writeContents(big, contents);
+        }
+        try {
+            assertEquals("", gitletProcess(List.of("-Xmx16m"), "add",
+                    big.getName()));
+            try (Repository repo = Repository.open()) {
+                assertEquals(List.of(big.getName()),
+                        repo.status().getStaged());
+            }
+            Stage.reload();
+            String id = Stage.staged(big.getName());
+            assertNull(ObjectStore.looseDeltaBase(id));
+            assertEquals(id, ObjectStore.hashBlob(id));
+        } finally {
+            big.delete();
+        }
+        gitletReset();
+    }
 
+    @Test
+    public void compressibleAddTest() throws IOException,
+            InterruptedException {
+        gitletReset();
+        File big = Utils.join(CWD, "wug-zeros.txt");
+        try (Repository repo = Repository.init()) {
+            try (RandomAccessFile file = new RandomAccessFile(big, "rw")) {
+                file.setLength(64 << 20);
+            }
+            repo.add(big.getName());
+            repo.commit("added a big empty wug");
+        }
+        try {
+            for (int i = 0; i < 2; i += 1) {
+                Utils.writeContents(big, "wug " + i + "\n");
+                assertEquals("", gitletProcess(List.of("-Xmx16m"), "add",
+                        big.getName()));
+                Stage.reload();
+                String id = Stage.staged(big.getName());
+                assertNull(ObjectStore.looseDeltaBase(id));
+                assertEquals(id, ObjectStore.hashBlob(id));
+            }
+        } finally {
+            big.delete();
+        }
+        gitletReset();
+    }
+
+    @Test
+    public void statCacheTest() {
+        gitletReset();
+        Main.main("init");
+        Utils.writeContents(Utils.join(CWD, "wug.txt"),
+                Utils.readContents(getFile("wug.txt")));
+        Main.main("add", "wug.txt");
+        Main.main("commit", "added wug1");
+        Main.main("status");
+        assertTrue(Utils.join(gitlet, "index").exists());
+        String sha1old = StatCache.sha1("wug.txt");
+        Utils.writeContents(Utils.join(CWD, "wug.txt"),
+                Utils.readContents(getFile("notwug.txt")));
+        assertNotEquals(sha1old, StatCache.sha1("wug.txt"));
+        assertEquals(Hashing.sha1(Utils.join(CWD, "wug.txt")),
+                StatCache.sha1("wug.txt"));
+        gitletReset();
+    }
+
+    @Test
+    public void commitGraphTest() {
+        gitletReset();
+        Main.main("init");
+        Utils.writeContents(Utils.join(CWD, "wug.txt"),
+                Utils.readContents(getFile("wug.txt")));
+        Main.main("add", "wug.txt");
+        Main.main("commit", "added wug1");
+        String sha1commit1 = Utils.readObject(Utils.join(refs,
+                Utils.readObject(headRef, String.class)), String.class);
+        assertTrue(Utils.join(gitlet, "commit-graph").exists());
+        int pos = CommitGraph.position(sha1commit1);
+        assertEquals(2, CommitGraph.generation(pos));
+        assertEquals(Commands.SHA1_INITIAL_COMMIT,
+                CommitGraph.id(CommitGraph.parent(pos)));
+        assertEquals(CommitGraph.NONE, CommitGraph.parent2(pos));
+        assertEquals(pos, CommitIds.position(sha1commit1));
+
+        File graph = Utils.join(gitlet, "commit-graph");
+        graph.delete();
+        RepoLock lock = RepoLock.shared();
+        try {
+            List<LogEntry> log = Commands.log();
+            assertEquals(2, log.size());
+            assertEquals(sha1commit1, log.get(0).getId());
+            assertEquals("added wug1", log.get(0).getMsg());
+            assertEquals(Commands.SHA1_INITIAL_COMMIT, log.get(1).getId());
+            assertEquals(CommitGraph.NONE, CommitGraph.find(sha1commit1));
+            assertFalse(graph.exists());
+            try {
+                CommitGraph.position(sha1commit1);
+                fail("added to the graph under a shared lock");
+            } catch (IllegalStateException excp) {
+                assertFalse(graph.exists());
+            }
+        } finally {
+            lock.close();
+        }
+        Main.main("reindex");
+        pos = CommitGraph.find(sha1commit1);
+        assertNotEquals(CommitGraph.NONE, pos);
+        assertEquals(pos, CommitIds.position(sha1commit1));
+        assertEquals(2, CommitGraph.generation(pos));
+        gitletReset();
+    }
+
+    @Test
+    public void commitIdsTest() {
+        gitletReset();
+        Main.main("init");
+        Utils.writeContents(Utils.join(CWD, "wug.txt"),
+                Utils.readContents(getFile("wug.txt")));
+        Main.main("add", "wug.txt");
+        Main.main("commit", "added wug1");
+        String sha1commit1 = Utils.readObject(Utils.join(refs,
+                Utils.readObject(headRef, String.class)), String.class);
+        assertEquals(sha1commit1, CommitIds.matches(
+                sha1commit1.substring(0, 6), 2).get(0));
+        assertEquals(1, CommitIds.matches(sha1commit1, 2).size());
+        assertEquals(2, CommitIds.matches("", 2).size());
+        assertEquals(0, CommitIds.matches("not hex", 2).size());
         gitletReset();
     }
 
@@ -225,6 +509,241 @@ public class UnitTest {
         gitletReset();
     }
 
+    @Test
+    public void commitIndexTest() {
+        gitletReset();
+        Main.main("init");
+        Utils.writeContents(Utils.join(CWD, "wug.txt"),
+                Utils.readContents(getFile("wug.txt")));
+        Main.main("add", "wug.txt");
+        Main.main("commit", "added wug");
+        Utils.writeContents(Utils.join(CWD, "wug.txt"),
+                Utils.readContents(getFile("wug2.txt")));
+        Main.main("add", "wug.txt");
+        Main.main("commit", "Added Wug three");
+        assertEquals(3, CommitIndex.size());
+        assertEquals(1, CommitIndex.exact("added wug").size());
+        assertEquals(2, CommitIndex.word("WUG").size());
+        assertEquals("Added Wug three", CommitIndex.message(
+                CommitIndex.word("three").get(0)));
+        Main.main("reindex");
+        assertEquals(3, CommitIndex.size());
+        assertEquals(2, CommitIndex.word("added").size());
+        gitletReset();
+    }
+
+    @Test
+    public void commitCodecTest() {
+        gitletReset();
+        Main.main("init");
+        Utils.writeContents(Utils.join(CWD, "wug.txt"), LEGACY_WUG);
+        Main.main("add", "wug.txt");
+        Main.main("commit", "added wug");
+        String id = Utils.readObject(Utils.join(refs, "master"),
+                String.class);
+        Commit commit = ObjectStore.readCommit(id);
+        assertEquals(id, CommitCodec.sha1(commit));
+        assertEquals(LEGACY_WUG_ID, commit.getBlobs().get("wug.txt"));
+        Commit decoded = CommitCodec.decode(CommitCodec.encode(commit));
+        assertEquals(commit.getMsg(), decoded.getMsg());
+        assertEquals(commit.getBlobs(), decoded.getBlobs());
+        assertEquals(commit.getParent(), decoded.getParent());
+
+        byte[] legacy = Base64.getDecoder().decode(LEGACY_COMMIT);
+        assertTrue(CommitCodec.isLegacy(legacy));
+        String legacyId = Utils.sha1(legacy);
+        Utils.writeContents(Utils.join(commits, legacyId), legacy);
+        Utils.writeObject(Utils.join(refs, "master"), legacyId);
+        Utils.writeContents(head, Base64.getDecoder().decode(LEGACY_HEAD));
+        Commit oldHead = CommitCodec.read(head);
+        assertEquals("legacy", oldHead.getMsg());
+        assertEquals(LEGACY_WUG_ID, oldHead.getBlobs().get("wug.txt"));
+        assertEquals(1, oldHead.getBlobs().size());
+        assertEquals(Commands.SHA1_INITIAL_COMMIT, oldHead.getParent());
+        Main.main("migrate");
+        assertFalse(CommitCodec.isLegacy(Utils.readContents(head)));
+        assertEquals(Commands.SHA1_INITIAL_COMMIT,
+                CommitCodec.read(head).getParent());
+        String migrated = Utils.readObject(Utils.join(refs, "master"),
+                String.class);
+        assertNotEquals(legacyId, migrated);
+        assertFalse(Utils.join(commits, legacyId).exists());
+        Commit fresh = ObjectStore.readCommit(migrated);
+        assertEquals("legacy", fresh.getMsg());
+        assertEquals(migrated, CommitCodec.sha1(fresh));
+        assertEquals(LEGACY_WUG_ID, fresh.getBlobs().get("wug.txt"));
+        assertEquals(1, fresh.getBlobs().size());
+        assertEquals(1, CommitIndex.exact("legacy").size());
+        gitletReset();
+    }
+
+    @Test
+    public void treeTest() {
+        gitletReset();
+        Main.main("init");
+        HashMap<String, String> changes = new HashMap<>();
+        changes.put("a.txt", Utils.sha1("a"));
+        changes.put("src/b.txt", Utils.sha1("b"));
+        changes.put("src/lib/c.txt", Utils.sha1("c"));
+        changes.put("doc/d.txt", Utils.sha1("d"));
+        String first = Tree.update(Tree.EMPTY, changes);
+        assertEquals(4, Tree.flatten(first).size());
+        assertEquals(Utils.sha1("c"), Tree.blob(first, "src/lib/c.txt"));
+        assertNull(Tree.blob(first, "src/lib/missing.txt"));
+
+        changes.clear();
+        changes.put("src/lib/c.txt", Utils.sha1("c2"));
+        changes.put("doc/d.txt", null);
+        String second = Tree.update(first, changes);
+        assertEquals(Tree.read(first).get("a.txt"),
+                Tree.read(second).get("a.txt"));
+        assertFalse(Tree.read(second).containsKey("doc/"));
+        TreeMap<String, String[]> diff = Tree.diff(first, second);
+        assertEquals(2, diff.size());
+        assertNull(diff.get("doc/d.txt")[1]);
+        assertEquals(Utils.sha1("c2"), diff.get("src/lib/c.txt")[1]);
+        assertEquals(first, Tree.update(Tree.EMPTY, Tree.flatten(first)));
+        gitletReset();
+    }
+
+    @Test
+    public void incrementalCheckoutTest() {
+        gitletReset();
+        Main.main("init");
+        Utils.writeContents(Utils.join(CWD, "wug.txt"),
+                Utils.readContents(getFile("wug.txt")));
+        Utils.writeContents(Utils.join(CWD, "notwug.txt"),
+                Utils.readContents(getFile("notwug.txt")));
+        Main.main("add", "wug.txt");
+        Main.main("add", "notwug.txt");
+        Main.main("commit", "two files");
+        Main.main("branch", "other");
+        Main.main("checkout", "other");
+        Utils.writeContents(Utils.join(CWD, "wug.txt"),
+                Utils.readContents(getFile("wug2.txt")));
+        Main.main("add", "wug.txt");
+        for (int i = 0; i < 10; i += 1) {
+            Utils.writeContents(Utils.join(CWD, "wug" + i + ".txt"), "" + i);
+            Main.main("add", "wug" + i + ".txt");
+        }
+        Main.main("commit", "many files");
+        File untouched = Utils.join(CWD, "notwug.txt");
+        assertTrue(untouched.setLastModified(1000000000000L));
+        Main.main("checkout", "master");
+        assertEquals(1000000000000L, untouched.lastModified());
+        assertEquals(Utils.readContentsAsString(getFile("wug.txt")),
+                Utils.readContentsAsString(Utils.join(CWD, "wug.txt")));
+        for (int i = 0; i < 10; i += 1) {
+            assertFalse(Utils.join(CWD, "wug" + i + ".txt").exists());
+        }
+        Main.main("checkout", "other");
+        assertEquals(1000000000000L, untouched.lastModified());
+        assertEquals("7", Utils.readContentsAsString(Utils.join(CWD,
+                "wug7.txt")));
+        for (int i = 0; i < 10; i += 1) {
+            Utils.join(CWD, "wug" + i + ".txt").delete();
+        }
+        gitletReset();
+    }
+
+    @Test
+    public void checkoutCleanupTest() {
+        gitletReset();
+        Main.main("init");
+        Utils.writeContents(Utils.join(CWD, "wug.txt"),
+                Utils.readContents(getFile("wug.txt")));
+        Main.main("add", "wug.txt");
+        Main.main("commit", "one wug");
+        Main.main("branch", "other");
+        Main.main("checkout", "other");
+        File deep = Utils.join(CWD, "deep");
+        File nested = Utils.join(deep, "er", "wug.txt");
+        nested.getParentFile().mkdirs();
+        Utils.writeContents(nested, "deep wug");
+        Main.main("add", "deep");
+        Main.main("commit", "deep wug");
+        File stale = Utils.join(gitlet, "tmp", "checkout-stale");
+        stale.getParentFile().mkdirs();
+        Utils.writeContents(stale, "left by a crash");
+        Main.main("checkout", "master");
+        assertFalse(deep.exists());
+        assertFalse(stale.exists());
+        Main.main("checkout", "other");
+        assertEquals("deep wug", Utils.readContentsAsString(nested));
+        assertEquals(0, Utils.join(gitlet, "tmp").list().length);
+        assertEquals(0, CWD.list((dir, name) -> name.endsWith(".tmp"))
+                .length);
+        deleteDirectory(deep);
+        gitletReset();
+    }
+
+    @Test
+    public void stageTest() {
+        gitletReset();
+        Main.main("init");
+        Utils.writeContents(Utils.join(CWD, "wug.txt"),
+                Utils.readContents(getFile("wug.txt")));
+        Main.main("add", "wug.txt");
+        Main.main("commit", "added wug");
+        Utils.writeContents(Utils.join(CWD, "notwug.txt"),
+                Utils.readContents(getFile("notwug.txt")));
+        Main.main("add", "notwug.txt");
+        Main.main("rm", "wug.txt");
+        assertEquals(1, Stage.additions().size());
+        assertTrue(Stage.removals().contains("wug.txt"));
+        assertTrue(Utils.join(gitlet, "staging").isFile());
+
+        String notwug = Stage.staged("notwug.txt");
+        Utils.join(gitlet, "staging").delete();
+        File legacy = Utils.join(gitlet, "stage");
+        legacy.mkdirs();
+        Utils.writeObject(Utils.join(legacy, "notwug.txt"), notwug);
+        Commit current = CommitCodec.read(head);
+        current.getRms().add("wug.txt");
+        Utils.writeContents(head, CommitCodec.encode(current));
+        assertEquals(notwug, Stage.staged("notwug.txt"));
+        assertTrue(Stage.removals().contains("wug.txt"));
+        assertFalse(legacy.exists());
+        assertTrue(CommitCodec.read(head).getRms().isEmpty());
+        Main.main("commit", "swapped wug for notwug");
+        assertTrue(Stage.isEmpty());
+        assertEquals(CommitCodec.read(head).getBlobs().keySet(),
+                java.util.Collections.singleton("notwug.txt"));
+        gitletReset();
+    }
+
+    @Test
+    public void bulkAddTest() {
+        gitletReset();
+        Main.main("init");
+        File sub = Utils.join(CWD, "sub");
+        for (int i = 0; i < 40; i += 1) {
+            File file = Utils.join(sub, "d" + (i % 3), "f" + i + ".txt");
+            file.getParentFile().mkdirs();
+            Utils.writeContents(file, "file " + (i % 20));
+        }
+        Utils.writeContents(Utils.join(CWD, "wug.txt"),
+                Utils.readContents(getFile("wug.txt")));
+        Main.main("add", "sub", "wug.txt");
+        assertEquals(41, Stage.additions().size());
+        assertEquals(Utils.sha1("file 7"), Stage.staged("sub/d1/f7.txt"));
+        Main.main("commit", "bulk");
+        Commit commit = CommitCodec.read(head);
+        assertEquals(41, commit.getBlobs().size());
+        assertEquals(Utils.sha1("file 3"), commit.blob("sub/d0/f3.txt"));
+
+        Main.main("branch", "other");
+        Main.main("rm", "sub/d2/f2.txt");
+        Main.main("commit", "one less");
+        Main.main("checkout", "other");
+        assertTrue(Utils.join(sub, "d2", "f2.txt").isFile());
+        Main.main("checkout", "master");
+        assertFalse(Utils.join(sub, "d2", "f2.txt").exists());
+        assertTrue(Utils.join(sub, "d2", "f5.txt").isFile());
+        deleteDirectory(sub);
+        gitletReset();
+    }
+
     @Test
     public void resetTest() {
         gitletReset();
@@ -367,8 +886,844 @@ public class UnitTest {
         gitletReset();
     }
 
+    @Test
+    public void mergeParentsTest() {
+        gitletReset();
+        try (Repository repo = Repository.init()) {
+            Utils.writeContents(Utils.join(CWD, "wug.txt"), "wug\n");
+            repo.add("wug.txt");
+            String base = repo.commit("added wug");
+            repo.branch("other");
+            repo.checkout("other");
+            Utils.writeContents(Utils.join(CWD, "wug2.txt"), "wug2\n");
+            repo.add("wug2.txt");
+            String other = repo.commit("added wug2");
+            repo.checkout("master");
+            Utils.writeContents(Utils.join(CWD, "wug3.txt"), "wug3\n");
+            repo.add("wug3.txt");
+            String master = repo.commit("added wug3");
+
+            assertEquals(MergeResult.MERGED, repo.merge("other"));
+            String merged = repo.log().get(0).getId();
+            Commit commit = ObjectStore.readCommit(merged);
+            assertEquals(master, commit.getParent());
+            assertEquals(other, commit.getParent2());
+            int pos = CommitGraph.position(merged);
+            assertEquals(master, CommitGraph.id(CommitGraph.parent(pos)));
+            assertEquals(other, CommitGraph.id(CommitGraph.parent2(pos)));
+            assertEquals(List.of(merged),
+                    CommitIds.matches(merged.substring(0, 10), 2));
+            assertEquals(List.of(other), MergeBase.of(merged, other));
+            assertEquals(List.of(base), MergeBase.of(master, other));
+
+            assertEquals(MergeResult.ANCESTOR, repo.merge("other"));
+            assertEquals(merged, repo.log().get(0).getId());
+        }
+        gitletReset();
+    }
+
+    @Test
+    public void objectCacheTest() {
+        ObjectCache<byte[]> cache = new ObjectCache<>(10, b -> b.length);
+        int[] loads = new int[1];
+        Function<String, byte[]> loader = id -> {
+            loads[0] += 1;
+            return new byte[id.length()];
+        };
+        byte[] a = cache.get("aaaa", loader);
+        assertTrue(a == cache.get("aaaa", loader));
+        cache.get("bbbb", loader);
+        assertEquals(2, loads[0]);
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals(8, cache.weight());
+        cache.get("aaaa", loader);
+        cache.get("ccc", loader);
+        assertEquals(2, cache.size());
+        cache.get("aaaa", loader);
+        assertEquals(3, loads[0]);
+        cache.get("bbbb", loader);
+        assertEquals(4, loads[0]);
+        cache.get("way too long", loader);
+        assertTrue(cache.weight() <= 10);
+        cache.remove("bbbb");
+        cache.get("bbbb", loader);
+        assertEquals(6, loads[0]);
+
+        gitletReset();
+        Main.main("init");
+        String id = Commands.SHA1_INITIAL_COMMIT;
+        long misses = ObjectStore.COMMITS.misses();
+        Commit first = ObjectStore.readCommit(id);
+        assertTrue(first == ObjectStore.readCommit(id));
+        assertTrue(ObjectStore.COMMITS.misses() - misses <= 1);
+        gitletReset();
+    }
+
+    @Test
+    public void mergeBaseTest() {
+        /* 0 <- 1 <- 2 and 0 <- 3 <- 4, then the criss-cross merges
+         * 5 = 2 + 4 and 6 = 4 + 2, so 5 and 6 have both 2 and 4 as best
+         * common ancestors. */
+        SyntheticGraph cross = new SyntheticGraph(
+                new int[] {-1, 0, 1, 0, 3, 2, 4},
+                new int[] {-1, -1, -1, -1, -1, 4, 2});
+        assertEquals(List.of(4, 2), MergeBase.of(cross, 5, 6));
+        assertEquals(List.of(0), MergeBase.of(cross, 2, 4));
+        assertEquals(List.of(2), MergeBase.of(cross, 2, 5));
+        assertEquals(List.of(3), MergeBase.of(cross, 3, 3));
+
+        int size = 100000;
+        Random random = new Random(61);
+        int[] parents = new int[size];
+        int[] parents2 = new int[size];
+        parents[0] = parents2[0] = -1;
+        for (int i = 1; i < size; i += 1) {
+            parents[i] = Math.max(0, i - 1 - random.nextInt(8));
+            parents2[i] = random.nextInt(4) == 0
+                    ? Math.max(0, i - 1 - random.nextInt(64)) : -1;
+        }
+        SyntheticGraph dag = new SyntheticGraph(parents, parents2);
+        for (int trial = 0; trial < 20; trial += 1) {
+            int a = random.nextInt(size);
+            int b = random.nextInt(size);
+            assertEquals(new TreeSet<>(dag.bestCommon(a, b)),
+                    new TreeSet<>(MergeBase.of(dag, a, b)));
+        }
+    }
+
+    /** A commit graph given by arrays of parent positions, where every
+     *  commit is made one millisecond after the one before it. */
+    private static class SyntheticGraph implements MergeBase.Graph {
+
+        /** The graph with the parents PARENTS and PARENTS2. */
+        SyntheticGraph(int[] parents, int[] parents2) {
+            _parents = parents;
+            _parents2 = parents2;
+            _generations = new int[parents.length];
+            for (int i = 0; i < parents.length; i += 1) {
+                _generations[i] = 1 + Math.max(gen(parents[i]),
+                        gen(parents2[i]));
+            }
+        }
+
+        /** Returns the generation of POS, or 0 if it is -1. */
+        private int gen(int pos) {
+            return pos < 0 ? 0 : _generations[pos];
+        }
+
+        @Override
+        public int size() {
+            return _parents.length;
+        }
+
+        @Override
+        public int parent(int pos) {
+            return _parents[pos];
+        }
+
+        @Override
+        public int parent2(int pos) {
+            return _parents2[pos];
+        }
+
+        @Override
+        public int generation(int pos) {
+            return _generations[pos];
+        }
+
+        @Override
+        public long timestamp(int pos) {
+            return pos;
+        }
+
+        /** Returns the best common ancestors of A and B by marking every
+         *  ancestor of each. */
+        ArrayList<Integer> bestCommon(int a, int b) {
+            BitSet common = ancestors(a);
+            common.and(ancestors(b));
+            BitSet covered = new BitSet();
+            for (int pos = size() - 1; pos >= 0; pos -= 1) {
+                if (common.get(pos) || covered.get(pos)) {
+                    markParents(covered, pos);
+                }
+            }
+            common.andNot(covered);
+            ArrayList<Integer> result = new ArrayList<>();
+            common.stream().forEach(result::add);
+            return result;
+        }
+
+        /** Returns POS and all of its ancestors. */
+        private BitSet ancestors(int pos) {
+            BitSet seen = new BitSet();
+            seen.set(pos);
+            for (int i = pos; i >= 0; i -= 1) {
+                if (seen.get(i)) {
+                    markParents(seen, i);
+                }
+            }
+            return seen;
+        }
+
+        /** Adds the parents of POS to SEEN. */
+        private void markParents(BitSet seen, int pos) {
+            if (_parents[pos] >= 0) {
+                seen.set(_parents[pos]);
+            }
+            if (_parents2[pos] >= 0) {
+                seen.set(_parents2[pos]);
+            }
+        }
+
+        /** First parents. */
+        private final int[] _parents;
+
+        /** Second parents. */
+        private final int[] _parents2;
+
+        /** Generations. */
+        private final int[] _generations;
+    }
+
+    @Test
+    public void diffTest() {
+        Random random = new Random(17);
+        for (int trial = 0; trial < 200; trial += 1) {
+            int[] a = new int[random.nextInt(40)];
+            int[] b = new int[random.nextInt(40)];
+            for (int i = 0; i < a.length; i += 1) {
+                a[i] = random.nextInt(6);
+            }
+            for (int i = 0; i < b.length; i += 1) {
+                b[i] = random.nextInt(6);
+            }
+            int[] match = Diff.matches(a, b);
+            int matched = 0;
+            int last = -1;
+            for (int i = 0; i < a.length; i += 1) {
+                if (match[i] >= 0) {
+                    assertEquals(a[i], b[match[i]]);
+                    assertTrue(match[i] > last);
+                    last = match[i];
+                    matched += 1;
+                }
+            }
+            assertEquals(lcs(a, b), matched);
+        }
+    }
+
+    /** Returns the length of the longest common subsequence of A and B. */
+    private static int lcs(int[] a, int[] b) {
+        int[][] table = new int[a.length + 1][b.length + 1];
+        for (int i = a.length - 1; i >= 0; i -= 1) {
+            for (int j = b.length - 1; j >= 0; j -= 1) {
+                table[i][j] = a[i] == b[j] ? table[i + 1][j + 1] + 1
+                        : Math.max(table[i + 1][j], table[i][j + 1]);
+            }
+        }
+        return table[0][0];
+    }
+
+    @Test
+    public void merge3Test() throws IOException {
+        String base = "one\ntwo\nthree\nfour\nfive\n";
+        assertEquals("ONE\ntwo\nthree\nfour\nFIVE\n",
+                merge3(base, "ONE\ntwo\nthree\nfour\nfive\n",
+                        "one\ntwo\nthree\nfour\nFIVE\n", false));
+        assertEquals("one\ntwo\n3\nthree\nfour\n",
+                merge3(base, "one\ntwo\n3\nthree\nfour\nfive\n",
+                        "one\ntwo\nthree\nfour\n", false));
+        assertEquals("one\nTWO\nthree\nfour\nfive\n",
+                merge3(base, "one\nTWO\nthree\nfour\nfive\n",
+                        "one\nTWO\nthree\nfour\nfive\n", false));
+        assertEquals("one\n<<<<<<< HEAD\nTWO\n=======\n2\n>>>>>>>\n"
+                + "three\nfour\nFIVE\n",
+                merge3(base, "one\nTWO\nthree\nfour\nfive\n",
+                        "one\n2\nthree\nfour\nFIVE\n", true));
+        assertEquals("<<<<<<< HEAD\nThis is wug.\n=======\n>>>>>>>\n",
+                merge3("This is a wug.\n", "This is wug.\n", "", true));
+        assertEquals("<<<<<<< HEAD\nmine\n=======\nyours\n>>>>>>>\n",
+                merge3("", "mine", "yours", true));
+    }
+
+    /** Returns the merge of OURS and THEIRS from BASE, checking that it
+     *  has conflicts exactly if CONFLICT. */
+    private static String merge3(String base, String ours, String theirs,
+                                 boolean conflict) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(conflict, Merge3.merge(base.getBytes(), ours.getBytes(),
+                theirs.getBytes(), out));
+        return out.toString();
+    }
+
+    @Test
+    public void diffCommandTest() {
+        gitletReset();
+        try (Repository repo = Repository.init()) {
+            Utils.writeContents(Utils.join(CWD, "wug.txt"),
+                    "one\ntwo\nthree\n");
+            Utils.writeContents(Utils.join(CWD, "wug2.txt"), "same\n");
+            repo.add("wug.txt", "wug2.txt");
+            String first = repo.commit("two wugs");
+            Utils.writeContents(Utils.join(CWD, "wug.txt"),
+                    "one\n2\nthree\n");
+            String unstaged = "diff --git a/wug.txt b/wug.txt\n"
+                    + "--- a/wug.txt\n+++ b/wug.txt\n@@ -1,3 +1,3 @@\n"
+                    + " one\n-two\n+2\n three\n";
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            repo.diff(out);
+            assertEquals(unstaged, out.toString());
+            out.reset();
+            repo.diffStaged(out);
+            assertEquals("", out.toString());
+
+            repo.add("wug.txt");
+            repo.rm("wug2.txt");
+            out.reset();
+            repo.diff(out);
+            assertEquals("", out.toString());
+            out.reset();
+            repo.diffStaged(out);
+            String staged = unstaged + "diff --git a/wug2.txt b/wug2.txt\n"
+                    + "deleted file\n--- a/wug2.txt\n+++ /dev/null\n"
+                    + "@@ -1 +0,0 @@\n-same\n";
+            assertEquals(staged, out.toString());
+            String second = repo.commit("changed");
+            out.reset();
+            repo.diff(first.substring(0, 8), second, out);
+            assertEquals(staged, out.toString());
+        }
+        gitletReset();
+    }
+
+    @Test
+    public void largeDiffTest() throws IOException, InterruptedException {
+        gitletReset();
+        File big = Utils.join(CWD, "wug-zeros.txt");
+        try (Repository repo = Repository.init()) {
+            try (RandomAccessFile file = new RandomAccessFile(big, "rw")) {
+                file.setLength(64 << 20);
+            }
+            repo.add(big.getName());
+            repo.commit("added a big empty wug");
+        }
+        try {
+            try (RandomAccessFile file = new RandomAccessFile(big, "rw")) {
+                file.seek(file.length());
+                file.write("wug\n".getBytes());
+            }
+            String differ = "diff --git a/wug-zeros.txt b/wug-zeros.txt\n"
+                    + "Binary files a/wug-zeros.txt and b/wug-zeros.txt "
+                    + "differ\n";
+            assertEquals(differ, gitletProcess(List.of("-Xmx16m"), "diff"));
+            assertEquals("", gitletProcess(List.of("-Xmx16m"), "add",
+                    big.getName()));
+            assertEquals(differ, gitletProcess(List.of("-Xmx16m"), "diff",
+                    "--staged"));
+        } finally {
+            big.delete();
+        }
+        gitletReset();
+    }
+
+    @Test
+    public void repositoryTest() {
+        gitletReset();
+        try (Repository repo = Repository.init()) {
+            Utils.writeContents(Utils.join(CWD, "wug.txt"),
+                    Utils.readContents(getFile("wug.txt")));
+            repo.add("wug.txt");
+            assertEquals(List.of("wug.txt"), repo.status().getStaged());
+            String id = repo.commit("added wug");
+            assertEquals(id, repo.log().get(0).getId());
+            assertEquals("added wug", repo.log().get(0).getMsg());
+            assertEquals(2, repo.log().size());
+            assertEquals(List.of(id), repo.find("added wug"));
+            assertTrue(repo.find("no such message").isEmpty());
+
+            repo.branch("other");
+            assertEquals(MergeResult.ANCESTOR, repo.merge("other"));
+            repo.checkout("other");
+            Utils.writeContents(Utils.join(CWD, "wug2.txt"),
+                    Utils.readContents(getFile("wug2.txt")));
+            repo.add("wug2.txt");
+            String other = repo.commit("added wug2");
+            repo.checkout("master");
+            assertFalse(Utils.join(CWD, "wug2.txt").exists());
+            assertEquals(MergeResult.FAST_FORWARD, repo.merge("other"));
+            assertEquals(other, repo.log().get(0).getId());
+            assertTrue(Utils.join(CWD, "wug2.txt").isFile());
+
+            Utils.writeContents(Utils.join(CWD, "wug3.txt"), "untracked");
+            Status status = repo.status();
+            assertEquals("master", status.getBranch());
+            assertEquals(List.of("master", "other"), status.getBranches());
+            assertEquals(List.of("wug3.txt"), status.getUntracked());
+            Utils.join(CWD, "wug3.txt").delete();
 
+            try {
+                repo.checkout("missing");
+                fail("checked out a missing branch");
+            } catch (NotFoundException excp) {
+                assertEquals("No such branch exists.", excp.getMessage());
+            }
+            try {
+                repo.commit("nothing");
+                fail("committed with nothing staged");
+            } catch (RejectedException excp) {
+                assertEquals("No changes added to the commit.",
+                        excp.getMessage());
+            }
+        }
+        gitletReset();
+    }
 
+    @Test
+    public void gcTest() throws InterruptedException {
+        gitletReset();
+        try (Repository repo = Repository.init()) {
+            File wug = Utils.join(CWD, "wug.txt");
+            Utils.writeContents(wug, "first\n");
+            repo.add("wug.txt");
+            String replaced = Utils.sha1("first\n");
+            Utils.writeContents(wug, "second\n");
+            repo.add("wug.txt");
+            assertTrue(ObjectStore.hasBlob(replaced));
+            repo.commit("second wug");
+
+            repo.branch("other");
+            repo.checkout("other");
+            Utils.writeContents(Utils.join(CWD, "wug2.txt"), "other\n");
+            repo.add("wug2.txt");
+            String other = repo.commit("added wug2");
+            repo.checkout("master");
+            repo.rmBranch("other");
+            Utils.writeContents(wug, "staged\n");
+            repo.add("wug.txt");
+
+            GcReport kept = repo.gc(Gc.DEFAULT_GRACE, false);
+            assertEquals(0, kept.getCommits() + kept.getTrees()
+                    + kept.getBlobs());
+            Thread.sleep(20);
+            GcReport dry = repo.gc(0, true);
+            assertTrue(dry.isDryRun());
+            assertEquals(1, dry.getCommits());
+            assertEquals(1, dry.getTrees());
+            assertEquals(2, dry.getBlobs());
+            assertTrue(dry.getBytes() > 0);
+            assertTrue(ObjectStore.hasCommit(other));
+            assertTrue(ObjectStore.hasBlob(replaced));
+
+            GcReport done = repo.gc(0, false);
+            assertEquals(dry.getBytes(), done.getBytes());
+            assertEquals(2, done.getBlobs());
+            assertFalse(ObjectStore.hasCommit(other));
+            assertFalse(ObjectStore.hasBlob(replaced));
+            assertTrue(ObjectStore.hasBlob(Utils.sha1("staged\n")));
+            assertEquals(2, repo.globalLog().size());
+            repo.commit("staged wug");
+            repo.checkoutFile("wug.txt", repo.log().get(1).getId());
+            assertEquals("second\n", Utils.readContentsAsString(wug));
+            assertEquals(0, repo.gc(0, true).getBlobs());
+        }
+        gitletReset();
+    }
+
+    @Test
+    public void gcGraphTest() throws InterruptedException {
+        gitletReset();
+        try (Repository repo = Repository.init()) {
+            File wug = Utils.join(CWD, "wug.txt");
+            Utils.writeContents(wug, "first\n");
+            repo.add("wug.txt");
+            repo.commit("first wug");
+            repo.branch("other");
+            repo.checkout("other");
+            Utils.writeContents(Utils.join(CWD, "wug2.txt"), "other\n");
+            repo.add("wug2.txt");
+            String other = repo.commit("added wug2");
+            repo.checkout("master");
+            repo.rmBranch("other");
+            Utils.writeContents(wug, "second\n");
+            repo.add("wug.txt");
+            String second = repo.commit("second wug");
+            Utils.join(gitlet, "commit-graph").delete();
+
+            Thread.sleep(20);
+            repo.gc(0, true);
+            assertEquals(0, CommitGraph.size());
+            assertEquals(1, repo.gc(0, false).getCommits());
+            assertEquals(CommitGraph.NONE, CommitGraph.find(other));
+            assertEquals(3, CommitGraph.size());
+
+            List<LogEntry> log = repo.log();
+            assertEquals(3, log.size());
+            assertEquals(second, log.get(0).getId());
+            repo.branch("side");
+            repo.checkout("side");
+            Utils.writeContents(Utils.join(CWD, "wug3.txt"), "side\n");
+            repo.add("wug3.txt");
+            repo.commit("added wug3");
+            repo.checkout("master");
+            Utils.writeContents(wug, "third\n");
+            repo.add("wug.txt");
+            repo.commit("third wug");
+            repo.merge("side");
+            assertEquals("side\n", Utils.readContentsAsString(
+                    Utils.join(CWD, "wug3.txt")));
+            assertEquals(5, repo.log().size());
+            Utils.join(CWD, "wug3.txt").delete();
+        }
+        gitletReset();
+    }
+
+    @Test
+    public void fsckTest() throws InterruptedException {
+        gitletReset();
+        try (Repository repo = Repository.init()) {
+            File wug = Utils.join(CWD, "wug.txt");
+            Utils.writeContents(wug, "first\n");
+            repo.add("wug.txt");
+            Utils.writeContents(wug, "second\n");
+            repo.add("wug.txt");
+            String id = repo.commit("second wug");
+            FsckReport full = repo.fsck(false);
+            assertTrue(full.isClean());
+            assertFalse(full.isIncremental());
+            assertEquals(List.of("blob " + Utils.sha1("first\n")),
+                    full.getDangling());
+            int checked = full.getChecked();
+            ObjectStore.repack();
+            assertEquals(checked, repo.fsck(false).getChecked());
+
+            Thread.sleep(20);
+            Utils.writeContents(Utils.join(CWD, "wug2.txt"), "other\n");
+            repo.add("wug2.txt");
+            String next = repo.commit("added wug2");
+            FsckReport since = repo.fsck(true);
+            assertTrue(since.isIncremental());
+            assertTrue(since.isClean());
+            assertEquals(3, since.getChecked());
+
+            String blob = Utils.sha1("other\n");
+            File stored = Utils.join(CWD, ".gitlet", "blobs", blob);
+            Utils.writeContents(stored, "rotten");
+            String tree = ObjectStore.readCommit(next).getTree();
+            Utils.join(CWD, ".gitlet", "trees", tree).delete();
+            FsckReport broken = repo.fsck(false);
+            assertFalse(broken.isClean());
+            assertEquals(List.of("blob " + blob), broken.getCorrupt());
+            assertEquals(List.of("tree " + tree + " (in commit " + next
+                    + ")"), broken.getMissing());
+            assertFalse(repo.fsck(true).isClean());
+            assertTrue(ObjectStore.hasCommit(id));
+        }
+        gitletReset();
+    }
+
+    @Test
+    public void batchSyncTest() {
+        gitletReset();
+        Main.main("init");
+        Durable.setMode(Durable.Mode.BATCH);
+        Durable.sync();
+        long syncs = Durable.syncs();
+        File file = Utils.join(gitlet, "wug-synced");
+        Durable.write(file, "wug".getBytes());
+        assertEquals(syncs + 1, Durable.syncs());
+        assertTrue(Durable.hasPending());
+        Durable.sync();
+        assertEquals(syncs + 2, Durable.syncs());
+        assertFalse(Durable.hasPending());
+        file.delete();
+        gitletReset();
+    }
+
+    @Test
+    public void crashTest() {
+        int steps = 0;
+        int recovered = 0;
+        for (boolean crashed = true; crashed; steps += 1) {
+            gitletReset();
+            String before;
+            try (Repository repo = Repository.init()) {
+                Utils.writeContents(Utils.join(CWD, "wug.txt"), "one\n");
+                repo.add("wug.txt");
+                before = repo.commit("one");
+                Utils.writeContents(Utils.join(CWD, "wug2.txt"), "two\n");
+                repo.add("wug2.txt");
+            }
+            crashed = false;
+            Durable.crashAfter(steps + 1);
+            Repository dying = Repository.open();
+            try {
+                dying.commit("two");
+            } catch (Durable.Crash excp) {
+                crashed = true;
+            }
+            Durable.crashAfter(0);
+            Stage.reload();
+            try (Repository repo = Repository.open()) {
+                assertFalse(Utils.join(gitlet, "journal").exists());
+                String tip = Utils.readObject(Utils.join(refs, "master"),
+                        String.class);
+                assertEquals(tip, CommitCodec.sha1(CommitCodec.read(head)));
+                if (tip.equals(before)) {
+                    assertEquals(List.of("wug2.txt"),
+                            repo.status().getStaged());
+                } else {
+                    assertEquals("two", repo.log().get(0).getMsg());
+                    assertTrue(repo.status().getStaged().isEmpty());
+                    recovered += crashed ? 1 : 0;
+                }
+                assertTrue(repo.fsck(false).isClean());
+            }
+        }
+        assertTrue(steps > 3);
+        assertTrue(recovered > 0);
+
+        Utils.writeContents(Utils.join(gitlet, "journal"), "torn");
+        try (Repository repo = Repository.open()) {
+            assertFalse(Utils.join(gitlet, "journal").exists());
+            assertEquals("two", repo.log().get(0).getMsg());
+        }
+        gitletReset();
+    }
+
+    @Test
+    public void lockStressTest() throws Exception {
+        gitletReset();
+        Repository.init().close();
+        int writers = 3;
+        int rounds = 2;
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(writers + 2);
+        ArrayList<Future<Integer>> commits = new ArrayList<>();
+        for (int w = 0; w < writers; w += 1) {
+            int writer = w;
+            commits.add(pool.submit(() -> {
+                int made = 0;
+                for (int r = 0; r < rounds; r += 1) {
+                    String name = "lock" + writer + "-" + r + ".txt";
+                    Utils.writeContents(Utils.join(CWD, name), name);
+                    assertEquals("", gitletProcess("add", name));
+                    String out = gitletProcess("commit", name);
+                    if (out.isEmpty()) {
+                        made += 1;
+                    } else {
+                        assertEquals("No changes added to the commit.\n",
+                                out);
+                    }
+                }
+                return made;
+            }));
+        }
+        ArrayList<Future<Integer>> reads = new ArrayList<>();
+        for (String command : List.of("log", "status")) {
+            reads.add(pool.submit(() -> {
+                int runs = 0;
+                while (!done.get()) {
+                    assertTrue(gitletProcess(command).startsWith("==="));
+                    runs += 1;
+                }
+                return runs;
+            }));
+        }
+        int made = 0;
+        try {
+            for (Future<Integer> writer : commits) {
+                made += writer.get();
+            }
+        } finally {
+            done.set(true);
+            pool.shutdown();
+        }
+        for (Future<Integer> reader : reads) {
+            assertTrue(reader.get() > 0);
+        }
+
+        try (Repository repo = Repository.open()) {
+            assertTrue(made > 0);
+            assertEquals(made + 1, repo.log().size());
+            Status status = repo.status();
+            assertTrue(status.getStaged().isEmpty());
+            for (int w = 0; w < writers; w += 1) {
+                for (int r = 0; r < rounds; r += 1) {
+                    String name = "lock" + w + "-" + r + ".txt";
+                    assertFalse(status.getUntracked().contains(name));
+                    Utils.join(CWD, name).delete();
+                }
+            }
+            assertTrue(repo.fsck(false).isClean());
+        }
+        RepoLock lock = RepoLock.shared();
+        try {
+            assertTrue(gitletProcess("log").startsWith("==="));
+            assertEquals("Timed out waiting for another gitlet command "
+                    + "to finish.\n", gitletProcess(100, "branch", "x"));
+            assertEquals("Timed out waiting for another gitlet command "
+                    + "to finish.\n", gitletProcess(100, "checkout", "--",
+                    "lock0-0.txt"));
+        } finally {
+            lock.close();
+        }
+        assertFalse(Utils.join(CWD, "lock0-0.txt").exists());
+        try (Repository repo = Repository.open()) {
+            assertFalse(repo.status().getBranches().contains("x"));
+        }
+        gitletReset();
+    }
+
+    @Test
+    public void generatorTest() {
+        ArrayList<String> trees = new ArrayList<>();
+        for (long seed : new long[] {7, 7, 8}) {
+            gitletReset();
+            RepoGenerator gen = new RepoGenerator(40, 200, 12, 3, 50, seed);
+            int merges = gen.generate();
+            assertEquals(List.of("master", "branch1", "branch2"),
+                    gen.branches());
+            try (Repository repo = Repository.open()) {
+                assertEquals("master", repo.status().getBranch());
+                assertTrue(repo.status().getUntracked().isEmpty());
+                assertEquals(14 + merges, repo.globalLog().size());
+                int twoParents = 0;
+                for (LogEntry entry : repo.globalLog()) {
+                    if (ObjectStore.readCommit(entry.getId())
+                            .getParent2() != null) {
+                        twoParents += 1;
+                    }
+                }
+                assertTrue(merges > 0);
+                assertEquals(merges, twoParents);
+                assertTrue(repo.fsck(false).isClean());
+            }
+            trees.add(CommitCodec.read(head).getTree());
+            Benchmark.delete(Utils.join(CWD, RepoGenerator.ROOT));
+        }
+        assertEquals(trees.get(0), trees.get(1));
+        assertNotEquals(trees.get(0), trees.get(2));
+        gitletReset();
+    }
+
+    @Test
+    public void statsTest() {
+        gitletReset();
+        File metrics = Utils.join(CWD, "wug-metrics.json");
+        try (Repository repo = Repository.init()) {
+            Utils.writeContents(Utils.join(CWD, "wug.txt"), "wug\n");
+            repo.add("wug.txt");
+            repo.commit("added wug");
+            repo.status();
+            assertEquals(0, Stats.get(Stats.Counter.HASHES));
+
+            Utils.writeContents(Utils.join(CWD, "wug2.txt"), "wug2\n");
+            Stats.start("status", false, metrics);
+            try {
+                repo.status();
+                assertTrue(Stats.get(Stats.Counter.DIRS_LISTED) > 0);
+                assertTrue(Stats.get(Stats.Counter.BYTES_READ) > 0);
+            } finally {
+                Stats.finish();
+            }
+            String json = Utils.readContentsAsString(metrics);
+            assertTrue(json.startsWith("{\"command\": \"status\""));
+            for (Stats.Counter counter : Stats.Counter.values()) {
+                assertTrue(json.contains("\"" + counter.key() + "\": "));
+            }
+            assertTrue(json.contains("\"walk\": {"));
+            assertTrue(json.contains("\"compare\": {"));
+
+            long hashes = Stats.get(Stats.Counter.HASHES);
+            repo.add("wug2.txt");
+            assertEquals(hashes, Stats.get(Stats.Counter.HASHES));
+
+            File gitlet = Utils.join(CWD, ".gitlet");
+            Stats.start("branch", false, metrics);
+            try {
+                Commands.branch("counted");
+                assertEquals(Utils.join(gitlet, "HEAD_REF").length()
+                        + Utils.join(gitlet, "refs", "master").length(),
+                        Stats.get(Stats.Counter.BYTES_READ));
+            } finally {
+                Stats.finish();
+            }
+        } finally {
+            metrics.delete();
+        }
+        gitletReset();
+    }
+
+    @Test
+    public void batchTest() {
+        gitletReset();
+        File script = Utils.join(CWD, "wug-batch.in");
+        try {
+            Utils.writeContents(script, String.join("\n",
+                    "# A script in the format of the .in tests.",
+                    "> init", "<<<",
+                    "+ wug.txt wug.txt",
+                    "add wug.txt",
+                    "> commit \"added wug\"", "<<<",
+                    "> log", "===", "commit ([a-f0-9]+)", ".*", "<<<*",
+                    "D WUG \"${1}\"",
+                    "+ wug.txt notwug.txt",
+                    "> checkout ${WUG} -- wug.txt", "<<<",
+                    "= wug.txt wug.txt",
+                    "> find \"added wug\"", "${WUG}", "<<<",
+                    "E wug.txt", "* wug2.txt", ""));
+            String src = "--src=" + Utils.join("testing", "src").getPath();
+            assertEquals(0, Batch.run(src, script.getPath()));
+
+            Utils.writeContents(script, String.join("\n",
+                    "> branch other", "<<<", "> rm-branch other",
+                    "A branch with that name does not exist.", "<<<",
+                    "E wug2.txt", ""));
+            assertEquals(2, Batch.run(src, script.getPath()));
+        } finally {
+            script.delete();
+        }
+
+        long[] sorted = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        assertEquals(5, Batch.percentile(sorted, 50));
+        assertEquals(9, Batch.percentile(sorted, 90));
+        assertEquals(10, Batch.percentile(sorted, 99));
+        assertEquals(1, Batch.percentile(new long[] {1}, 50));
+        gitletReset();
+    }
+
+    /** Runs gitlet with ARGS in a process of its own and returns what it
+     *  printed. */
+    private String gitletProcess(String... args)
+        throws IOException, InterruptedException {
+        return gitletProcess(60000, args);
+    }
+
+    /** Runs gitlet with ARGS in a process of its own that waits up to
+     *  WAIT milliseconds for a lock, and returns what it printed. */
+    private String gitletProcess(long wait, String... args)
+        throws IOException, InterruptedException {
+        return gitletProcess(List.of("-Dgitlet.lockwait=" + wait), args);
+    }
+
+    /** Runs gitlet with ARGS in a process of its own started with the
+     *  JVM OPTIONS, and returns what it printed. */
+    private String gitletProcess(List<String> options, String... args)
+        throws IOException, InterruptedException {
+        ArrayList<String> command = new ArrayList<>(List.of(
+                Utils.join(System.getProperty("java.home"), "bin", "java")
+                        .getPath(),
+                "-cp", System.getProperty("java.class.path")));
+        command.addAll(options);
+        command.add("gitlet.Main");
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true).start();
+        String out = new String(process.getInputStream().readAllBytes());
+        assertEquals(0, process.waitFor());
+        return out;
+    }
 
     private File getFile(String name) {
         return Utils.join(Utils.join(Utils.join(new File(
@@ -0,0 +1,15 @@
+package gitlet;
+
+/** Thrown when a command would overwrite or delete a working file that
+ *  the current commit does not track. Nothing has been changed.
+ *  @author Super Stressed McSad */
+public class UntrackedFileException extends GitletException {
+
+    /** Version of the serialized form. */
+    private static final long serialVersionUID = 1L;
+
+    /** An exception with the message MSG. */
+    UntrackedFileException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,237 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/** Walks and hashes the working directory on a work-stealing pool,
+ *  naming files relative to it with '/' between directories. The
+ *  .gitlet folder is never walked.
+ *  @author Super Stressed McSad */
+class WorkingTree {
+
+    /** Default number of threads used to walk and hash. */
+    static final int DEFAULT_THREADS = Math.max(1,
+            Runtime.getRuntime().availableProcessors());
+
+    /** Files hashed by a single task before it splits its share. */
+    private static final int BATCH = 16;
+
+    /** Sets the number of threads used to walk and hash to THREADS. */
+    static void setThreads(int threads) {
+        _threads = Math.max(1, threads);
+    }
+
+    /** Returns the name of PATH relative to the working directory, or
+     *  null if PATH is outside it. The working directory itself is "". */
+    static String name(String path) {
+        Path normal = Paths.get(path).normalize();
+        if (normal.isAbsolute()) {
+            normal = Main.CWD.toPath().toAbsolutePath().normalize()
+                    .relativize(normal);
+        }
+        String result = normal.toString().replace(File.separatorChar, '/');
+        if (result.equals("..") || result.startsWith("../")) {
+            return null;
+        }
+        return result;
+    }
+
+    /** Returns the files named by NAMES, each a file or a directory whose
+     *  files are all included, in sorted order without repeats. */
+    static ArrayList<String> walk(String... names) {
+        Stats.Phase phase = Stats.phase("walk");
+        try {
+            ArrayList<String> files = new ArrayList<>();
+            ArrayList<String> dirs = new ArrayList<>();
+            for (String name : names) {
+                if (Utils.join(Main.CWD, name).isDirectory()) {
+                    dirs.add(name);
+                } else {
+                    files.add(name);
+                }
+            }
+            if (!dirs.isEmpty()) {
+                ForkJoinPool pool = new ForkJoinPool(_threads);
+                try {
+                    for (String dir : dirs) {
+                        files.addAll(pool.invoke(new Walk(dir, null)));
+                    }
+                } finally {
+                    pool.shutdown();
+                }
+            }
+            return new ArrayList<>(new TreeSet<>(files));
+        } finally {
+            phase.close();
+        }
+    }
+
+    /** Returns the files in the working directory, descending only into
+     *  the directories that hold one of the names in TRACKED. */
+    static ArrayList<String> files(Collection<String> tracked) {
+        Stats.Phase phase = Stats.phase("walk");
+        try {
+            HashSet<String> dirs = new HashSet<>();
+            for (String name : tracked) {
+                for (int slash = name.indexOf('/'); slash >= 0;
+                     slash = name.indexOf('/', slash + 1)) {
+                    dirs.add(name.substring(0, slash));
+                }
+            }
+            ArrayList<String> result = new Walk("", dirs).compute();
+            result.sort(null);
+            return result;
+        } finally {
+            phase.close();
+        }
+    }
+
+    /** Returns the sha1 of each file in NAMES, in the same order, storing
+     *  every blob that is not stored yet. BASES maps names to the blob
+     *  they were last committed as, which new blobs may be stored as a
+     *  delta against. */
+    static String[] store(List<String> names, Map<String, String> bases) {
+        Stats.Phase phase = Stats.phase("hash");
+        try {
+            String[] result = new String[names.size()];
+            Store all = new Store(names, bases, result, 0, names.size());
+            if (names.size() <= BATCH || _threads == 1) {
+                all.compute();
+            } else {
+                ForkJoinPool pool = new ForkJoinPool(_threads);
+                try {
+                    pool.invoke(all);
+                } finally {
+                    pool.shutdown();
+                }
+            }
+            return result;
+        } finally {
+            phase.close();
+        }
+    }
+
+    /** Returns the sha1 of the working file NAME, storing it as a blob if
+     *  it is not stored yet, as a delta against BASE where that pays. */
+    private static String store(String name, String base) {
+        String id = StatCache.cached(name);
+        if (id == null || !ObjectStore.hasBlob(id)) {
+            id = ObjectStore.writeBlob(Utils.join(Main.CWD, name), base);
+        }
+        return id;
+    }
+
+    /** Lists the files under one directory, forking a task for each of
+     *  its subdirectories. */
+    private static class Walk extends RecursiveTask<ArrayList<String>> {
+
+        /** Version of the serialized form. */
+        private static final long serialVersionUID = 1L;
+
+        /** Lists the directory DIR, entering only the subdirectories in
+         *  ONLY, or every subdirectory if ONLY is null. */
+        Walk(String dir, HashSet<String> only) {
+            _dir = dir;
+            _only = only;
+        }
+
+        @Override
+        protected ArrayList<String> compute() {
+            ArrayList<String> result = new ArrayList<>();
+            String prefix = _dir.isEmpty() ? "" : _dir + "/";
+            String[] children = Utils.join(Main.CWD, _dir).list();
+            Stats.count(Stats.Counter.DIRS_LISTED, 1);
+            if (children == null) {
+                return result;
+            }
+            Arrays.sort(children);
+            ArrayList<Walk> subdirs = new ArrayList<>();
+            for (String child : children) {
+                String name = prefix + child;
+                File file = Utils.join(Main.CWD, name);
+                if (file.isFile()) {
+                    result.add(name);
+                } else if (file.isDirectory() && !name.equals(".gitlet")
+                        && (_only == null || _only.contains(name))) {
+                    Walk walk = new Walk(name, _only);
+                    if (_only == null) {
+                        walk.fork();
+                    }
+                    subdirs.add(walk);
+                }
+            }
+            for (Walk walk : subdirs) {
+                result.addAll(_only == null ? walk.join() : walk.compute());
+            }
+            return result;
+        }
+
+        /** The directory listed. */
+        private String _dir;
+
+        /** The only subdirectories entered, or null for all of them. */
+        private HashSet<String> _only;
+    }
+
+    /** Stores a range of files, splitting it in half while it is larger
+     *  than BATCH so idle threads can steal the other half. */
+    private static class Store extends RecursiveAction {
+
+        /** Version of the serialized form. */
+        private static final long serialVersionUID = 1L;
+
+        /** Stores NAMES from LO up to HI with the delta bases BASES and
+         *  puts their sha1s into the same places in RESULT. */
+        Store(List<String> names, Map<String, String> bases, String[] result,
+              int lo, int hi) {
+            _names = names;
+            _bases = bases;
+            _result = result;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > BATCH && getPool() != null) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Store(_names, _bases, _result, _lo, mid),
+                        new Store(_names, _bases, _result, mid, _hi));
+                return;
+            }
+            for (int i = _lo; i < _hi; i += 1) {
+                String name = _names.get(i);
+                _result[i] = store(name, _bases.get(name));
+            }
+        }
+
+        /** All of the files being stored. */
+        private List<String> _names;
+
+        /** Delta bases of the files. */
+        private Map<String, String> _bases;
+
+        /** Sha1s of the files. */
+        private String[] _result;
+
+        /** First file of this range. */
+        private int _lo;
+
+        /** End of this range. */
+        private int _hi;
+    }
+
+    /** Number of threads used to walk and hash. */
+    private static int _threads = DEFAULT_THREADS;
+}